@@ -0,0 +1,881 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmarks of the compiler.
+ * Usage: java -cp bin Benchmark name [input-file]
+ * Without an input file, a program of about 10 MB is generated.
+ */
+public class Benchmark {
+
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    interface Task {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String name = args.length > 0 ? args[0] : "lexer";
+        SourceText text = (args.length > 1) ? SourceText.map(args[1]) : generate(250000);
+        System.out.printf("input: %.1f MB%n", text.length() / 1e6);
+        switch (name) {
+            case "lexer":
+                lexer(text);
+                break;
+            case "parallel":
+                parallel(text);
+                if (args.length <= 1) {
+                    SourceText large = generate(1000000);
+                    System.out.printf("input: %.1f MB%n", large.length() / 1e6);
+                    parallel(large);
+                }
+                break;
+            case "frontend":
+                frontend(text);
+                break;
+            case "rules":
+                rules(text);
+                break;
+            case "incremental":
+                incremental(text);
+                break;
+            case "ast":
+                ast(text);
+                break;
+            case "reparse":
+                reparse(text);
+                break;
+            case "concurrent":
+                concurrent();
+                break;
+            case "parser":
+                parser();
+                break;
+            case "tree":
+                tree(text);
+                break;
+            case "descent":
+                descent(text);
+                break;
+            case "deep":
+                deep();
+                break;
+            case "expression":
+                expression();
+                break;
+            case "variables":
+                variables();
+                break;
+            case "codegen":
+                codegen();
+                break;
+            case "optimize":
+                optimize();
+                break;
+            default:
+                System.out.println("Unknown benchmark: " + name);
+        }
+    }
+
+    /**
+     * Lexer throughput: a Symbol per token with eager lines and columns,
+     * against a token buffer recording offsets only,
+     * for the generated lexer and the hand-written one.
+     */
+    private static void lexer(SourceText text) throws Exception {
+        TokenBuffer tokens = new TokenBuffer();
+        measure("Lexer.nextToken()", text.length(), "MB", () -> {
+            Lexer lexer = new Lexer(text.reader());
+            while (lexer.nextToken().getType() != LexicalUnit.EOS) {}
+        });
+        measure("Lexer.tokenize()", text.length(), "MB", () -> {
+            tokens.reset(text, new NameTable());
+            new Lexer(text.reader()).tokenize(tokens);
+        });
+        measure("FastLexer.nextToken()", text.length(), "MB", () -> {
+            FastLexer lexer = new FastLexer(text);
+            while (lexer.nextToken().getType() != LexicalUnit.EOS) {}
+        });
+        measure("FastLexer.tokenize()", text.length(), "MB", () -> {
+            tokens.reset(text, new NameTable());
+            new FastLexer(text).tokenize(tokens);
+        });
+    }
+
+    /**
+     * Scaling of the parallel lexer from 1 thread to the number of available cores,
+     * against the sequential hand-written lexer.
+     * Without an input file, it also runs on a generated program of about 50 MB.
+     */
+    private static void parallel(SourceText text) throws Exception {
+        TokenBuffer tokens = new TokenBuffer();
+        measure("FastLexer.tokenize()", text.length(), "MB", () -> {
+            tokens.reset(text, new NameTable());
+            new FastLexer(text).tokenize(tokens);
+        });
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            measure("ParallelLexer(" + threads + ")", text.length(), "MB", () -> {
+                tokens.reset(text, new NameTable());
+                new ParallelLexer(text, pool).tokenize(tokens);
+            });
+            pool.shutdown();
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Latency of the front end, from the source to the parse tree:
+     * the parser pulling tokens from the generated lexer as it goes, the parser reading
+     * a token buffer filled beforehand, and the parser reading tokens from a lexer thread.
+     */
+    private static void frontend(SourceText text) throws Exception {
+        measure("Lexer, Parser", text.length(), "MB", () -> {
+            buildParseTree(new Parser(new Lexer(text.reader())));
+        });
+        measure("FastLexer, then Parser", text.length(), "MB", () -> {
+            TokenBuffer tokens = new TokenBuffer();
+            tokens.reset(text, new NameTable());
+            new FastLexer(text).tokenize(tokens);
+            buildParseTree(new Parser(tokens));
+        });
+        measure("TokenPipe, Parser", text.length(), "MB", () -> {
+            TokenPipe pipe = new TokenPipe(text, new NameTable());
+            pipe.start();
+            buildParseTree(new Parser(pipe));
+        });
+    }
+
+    private static void buildParseTree(Parser parser) throws Exception {
+        if (!parser.buildParseTree()) {
+            throw new IllegalStateException("The input was not parsed entirely");
+        }
+    }
+
+    /**
+     * Building the instructions from a token buffer: the parse tree and the passes of Ast.create,
+     * against the instructions built directly by the parser.
+     * The bytes allocated per line of source are reported before the times.
+     */
+    private static void ast(SourceText text) throws Exception {
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new FastLexer(text).tokenize(tokens);
+        int lines = new LineMap(text).getLine(text.length()) + 1;
+        Task[] tasks = new Task[2];
+        for (int i = 0; i < tasks.length; ++i) {
+            boolean keepParseTree = i == 0;
+            tasks[i] = () -> {
+                tokens.rewind();
+                Parser parser = new Parser(tokens);
+                parser.setKeepParseTree(keepParseTree);
+                parser.createAst();
+            };
+        }
+        String[] labels = {"ParseTree, Ast.create()", "AstBuilder"};
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < tasks.length; ++i) {
+            tasks[i].run(); // loads the classes
+            long before = threads.getCurrentThreadAllocatedBytes();
+            tasks[i].run();
+            long bytes = threads.getCurrentThreadAllocatedBytes() - before;
+            System.out.printf("%-24s %9.0f bytes/line%n", labels[i], (double) bytes / lines);
+        }
+        for (int i = 0; i < tasks.length; ++i) {
+            measure(labels[i], text.length(), "MB", tasks[i]);
+        }
+    }
+
+    /**
+     * Building the instructions of a program of 500000 top-level statements:
+     * the sequential parser against the parallel parser, from 1 thread up to the number of cores.
+     * Each parse is timed once, after a first run, as the input is large.
+     */
+    private static void parser() throws Exception {
+        StringBuilder program = new StringBuilder("BEGIN Statements\n");
+        Random random = new Random(42);
+        for (int i = 0; i < 500000; ++i) {
+            if (i % 100 == 0) {
+                statement(program, random, 1);
+            } else {
+                program.append("v").append(i % 100).append(" := ").append(expression(random)).append(" ,\n");
+            }
+        }
+        program.append("END\n");
+        SourceText text = SourceText.read(new StringReader(program.toString()));
+        program = null;
+        System.out.printf("input: %.1f MB%n", text.length() / 1e6);
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new FastLexer(text).tokenize(tokens);
+        measureOnce("Parser.createAst", text.length(), "MB", () -> {
+            tokens.rewind();
+            new Parser(tokens).createAst();
+        });
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            measureOnce("ParallelParser(" + threads + ")", text.length(), "MB", () -> {
+                new ParallelParser(tokens, pool).createAst();
+            });
+            pool.shutdown();
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * The parse tree of the input as ParseTree objects, against the arena of a CompactTree.
+     * The heap they hold is reported per node,
+     * then the times to build them and to walk them, visiting every node.
+     */
+    private static void tree(SourceText text) throws Exception {
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new FastLexer(text).tokenize(tokens);
+        long before = usedHeap();
+        Parser parser = new Parser(tokens);
+        parser.buildParseTree();
+        ParseTree parseTree = parser.getParseTree();
+        parser = null;
+        long parseTreeBytes = usedHeap() - before;
+        tokens.rewind();
+        before = usedHeap();
+        CompactTree compactTree = new CompactTree();
+        new Parser(tokens).buildCompactTree(compactTree);
+        long compactTreeBytes = usedHeap() - before;
+        int nodes = compactTree.size();
+        System.out.printf("nodes: %d%n", nodes);
+        System.out.printf("%-24s %9.1f bytes/node%n", "ParseTree", (double) parseTreeBytes / nodes);
+        System.out.printf("%-24s %9.1f bytes/node%n", "CompactTree", (double) compactTreeBytes / nodes);
+        parseTree = null;
+
+        measure("Parser.buildParseTree", text.length(), "MB", () -> {
+            tokens.rewind();
+            new Parser(tokens).buildParseTree();
+        });
+        measure("Parser.buildCompactTree", text.length(), "MB", () -> {
+            tokens.rewind();
+            new Parser(tokens).buildCompactTree(compactTree);
+        });
+        tokens.rewind();
+        Parser treeParser = new Parser(tokens);
+        treeParser.buildParseTree();
+        ParseTree tree = treeParser.getParseTree();
+        int[] leaves = new int[1];
+        measure("walk ParseTree", nodes, "M nodes", () -> {
+            ArrayDeque<ParseTree> pending = new ArrayDeque<ParseTree>();
+            pending.push(tree);
+            while (!pending.isEmpty()) {
+                ParseTree node = pending.pop();
+                if (node.isLeaf()) {
+                    ++leaves[0];
+                }
+                for (int i = node.numChildren() - 1; i >= 0; --i) {
+                    pending.push(node.get(i));
+                }
+            }
+        });
+        measure("walk CompactTree", nodes, "M nodes", () -> {
+            int[] pending = new int[64];
+            int top = 0;
+            pending[top++] = compactTree.root();
+            while (top > 0) {
+                int node = pending[--top];
+                if (compactTree.getNextSibling(node) != CompactTree.NONE) {
+                    pending[top++] = compactTree.getNextSibling(node);
+                }
+                if (compactTree.isLeaf(node)) {
+                    ++leaves[0];
+                } else {
+                    if (top == pending.length) {
+                        pending = Arrays.copyOf(pending, top * 2);
+                    }
+                    pending[top++] = compactTree.getFirstChild(node);
+                }
+            }
+        });
+        System.out.println("leaves: " + leaves[0]);
+    }
+
+    /*
+        Heap used by live objects, after a garbage collection.
+    */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Building the instructions from a token buffer with the table-driven parser,
+     * against the recursive descent parser generated from the grammar.
+     * They are timed again with a builder which keeps nothing, to leave the cost of parsing alone.
+     */
+    private static void descent(SourceText text) throws Exception {
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new FastLexer(text).tokenize(tokens);
+        measure("Parser.buildAst", text.length(), "MB", () -> {
+            tokens.rewind();
+            new Parser(tokens).buildAst(new AstBuilder());
+        });
+        measure("RecursiveDescentParser", text.length(), "MB", () -> {
+            tokens.rewind();
+            new RecursiveDescentParser(tokens, new AstBuilder()).parse();
+        });
+        measure("Parser, no builder", text.length(), "MB", () -> {
+            tokens.rewind();
+            new Parser(tokens).buildAst(new NullBuilder());
+        });
+        measure("Generated, no builder", text.length(), "MB", () -> {
+            tokens.rewind();
+            new RecursiveDescentParser(tokens, new NullBuilder()).parse();
+        });
+    }
+
+    /*
+        A builder which drops what the parser gives it.
+    */
+    private static class NullBuilder extends AstBuilder {
+        @Override
+        public void shift(Symbol symbol) {}
+
+        @Override
+        public void beginBlock() {}
+
+        @Override
+        public void endBlock() {}
+
+        @Override
+        public void expression(ParseTree tree) {}
+
+        @Override
+        public void reduce(Rule rule) {}
+    }
+
+    /**
+     * Whole compilations of programs that used to overflow the thread stack:
+     * a program of a million statements, and loops and conditions nested ten thousand deep.
+     * They run on the main thread, with its default stack, and the generated code is dropped.
+     * Timings are of a single run, as these are stress tests more than benchmarks.
+     */
+    private static void deep() throws Exception {
+        StringBuilder program = new StringBuilder("BEGIN Long\nv := 0 ,\n");
+        for (int i = 0; i < 1000000; ++i) {
+            program.append(i % 3 == 0 ? "PRINT(v) ,\n" : "v := v + " + i % 100 + " ,\n");
+        }
+        program.append("END\n");
+        compile("1000000 statements", program);
+        program = new StringBuilder("BEGIN Deep\nv := 0 ,\n");
+        for (int i = 0; i < 10000; ++i) {
+            program.append(i % 2 == 0 ? "WHILE (v < " + i + ") DO\n" : "IF (v > " + i + ") THEN\n");
+        }
+        program.append("v := v + 1 ,\n");
+        for (int i = 10000 - 1; i >= 0; --i) {
+            program.append(i % 2 == 0 ? "END ,\n" : "ELSE PRINT(v) , END ,\n");
+        }
+        program.append("END\n");
+        compile("10000 levels of nesting", program);
+    }
+
+    /**
+     * Whole compilations of a single expression of growing length, with the parse tree kept
+     * and its expression rebuilt by ExprArithHandler, and with the expression parsed directly.
+     * Both must grow linearly with the number of terms.
+     */
+    private static void expression() throws Exception {
+        Random random = new Random(42);
+        for (int terms = 25000; terms <= 200000; terms *= 2) {
+            StringBuilder program = new StringBuilder("BEGIN Expression\na := 3 ,\nb := 1");
+            for (int i = 1; i < terms; ++i) {
+                program.append(" ").append("+-*/".charAt(random.nextInt(4))).append(" ");
+                program.append(random.nextBoolean() ? "a" : "(a - " + random.nextInt(10) + ")");
+            }
+            program.append(" ,\nPRINT(b) ,\nEND\n");
+            compile(terms + " terms, parse tree", program, true);
+            compile(terms + " terms", program, false);
+        }
+    }
+
+    /**
+     * Code generation of a program of 100000 assignments of 16 terms each, mixing variables,
+     * numbers, minus signs and parentheses, lowered and printed one instruction at a time as without passes.
+     * Each run parses the program again in a new compilation,
+     * and only the generation of the code of the instructions is timed.
+     */
+    private static void codegen() throws Exception {
+        Random random = new Random(42);
+        StringBuilder program = new StringBuilder("BEGIN Codegen\na := 1 ,\nb := 2 ,\nc := 3 ,\nd := 4 ,\n");
+        int terms = 0;
+        for (int i = 0; i < 100000; ++i) {
+            program.append("abcd".charAt(random.nextInt(4))).append(" := ");
+            for (int j = 0; j < 16; ++j) {
+                if (j > 0) {
+                    program.append(" ").append("+-*/".charAt(random.nextInt(4))).append(" ");
+                }
+                switch (random.nextInt(4)) {
+                    case 0:
+                        program.append(random.nextInt(100));
+                        break;
+                    case 1:
+                        program.append("-").append("abcd".charAt(random.nextInt(4)));
+                        break;
+                    case 2:
+                        program.append("(").append("abcd".charAt(random.nextInt(4))).append(" - ").append(random.nextInt(10)).append(")");
+                        ++terms;
+                        break;
+                    default:
+                        program.append("abcd".charAt(random.nextInt(4)));
+                        break;
+                }
+                ++terms;
+            }
+            program.append(" ,\n");
+        }
+        program.append("END\n");
+        SourceText text = SourceText.read(new StringReader(program.toString()));
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new FastLexer(text).tokenize(tokens);
+        long[] times = new long[RUNS];
+        long length = 0;
+        for (int i = -WARMUP; i < RUNS; ++i) {
+            tokens.rewind();
+            Parser parser = new Parser(tokens);
+            Ast ast = parser.createAst();
+            LlvmGenerator generator = new LlvmGenerator(parser.getContext(), null);
+            long start = System.nanoTime();
+            StringBuilder code = new StringBuilder();
+            for (Instruction instruction : ast.getRoot().getThenList()) {
+                generator.generate(instruction, code);
+            }
+            length = code.length();
+            if (i >= 0) {
+                times[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(times);
+        double millis = times[RUNS / 2] / 1e6;
+        System.out.printf("%-24s %9.1f ms %9.1f Mterms/s %6.1f MB of code%n",
+                "code generation", millis, terms / 1e3 / millis, length / 1e6);
+    }
+
+    /**
+     * Code generation of a program of 25000 top-level statements through the intermediate representation
+     * at each optimization level: the instructions of the program before and after the passes,
+     * and the time of each pass in the last run. A statement is an assignment, a print,
+     * a condition on a variable, or a loop of ten iterations whose body computes constants and values
+     * not changing in the loop. The generation is timed from the parsed instructions to the printed code.
+     */
+    private static void optimize() throws Exception {
+        StringBuilder program = new StringBuilder("BEGIN Optimize\n");
+        Random random = new Random(42);
+        for (int i = 0; i < 25000; ++i) {
+            String variable = "v" + random.nextInt(100);
+            switch (random.nextInt(4)) {
+                case 0:
+                    program.append(variable).append(" := ").append(expression(random)).append(" ,\n");
+                    break;
+                case 1:
+                    program.append("PRINT(").append(variable).append(") ,\n");
+                    break;
+                case 2:
+                    program.append("IF (").append(variable).append(" < ").append(expression(random)).append(") THEN\n");
+                    program.append("  ").append(variable).append(" := ").append(expression(random)).append(" ,\n");
+                    program.append("ELSE\n  PRINT(").append(variable).append(") ,\nEND ,\n");
+                    break;
+                default:
+                    String counter = "i" + random.nextInt(10);
+                    program.append(counter).append(" := 0 ,\n");
+                    program.append("WHILE (").append(counter).append(" < 10) DO\n");
+                    program.append("  ").append(variable).append(" := ").append(variable).append(" + ")
+                            .append(expression(random)).append(" * (").append(random.nextInt(10)).append(" + 2) ,\n");
+                    program.append("  ").append(counter).append(" := ").append(counter).append(" + 1 ,\nEND ,\n");
+                    break;
+            }
+        }
+        program.append("END\n");
+        SourceText text = SourceText.read(new StringReader(program.toString()));
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new FastLexer(text).tokenize(tokens);
+        for (int level = 0; level <= 2; ++level) {
+            PassManager passes = null;
+            long[] times = new long[RUNS];
+            int[] sizes = new int[2];
+            long length = 0;
+            for (int i = -WARMUP; i < RUNS; ++i) {
+                tokens.rewind();
+                Parser parser = new Parser(tokens);
+                Ast ast = parser.createAst();
+                long start = System.nanoTime();
+                ControlFlowGraph cfg = new ControlFlowGraph(parser.getContext().getSymbolTable());
+                IrBuilder builder = new IrBuilder(cfg, parser.getContext());
+                for (Instruction instruction : ast.getRoot().getThenList()) {
+                    builder.lower(instruction);
+                }
+                builder.ret();
+                sizes[0] = cfg.size();
+                passes = PassManager.forLevel(level);
+                passes.run(cfg);
+                sizes[1] = cfg.size();
+                StringBuilder code = new StringBuilder();
+                new LlvmGenerator(parser.getContext(), null).print(cfg, code);
+                length = code.length();
+                if (i >= 0) {
+                    times[i] = System.nanoTime() - start;
+                }
+            }
+            Arrays.sort(times);
+            System.out.printf("-O%d %9.1f ms %8d instructions lowered %8d printed %6.1f MB of code%n",
+                    level, times[RUNS / 2] / 1e6, sizes[0], sizes[1], length / 1e6);
+            if (level > 0) {
+                passes.printTimes(System.out);
+            }
+        }
+    }
+
+    /**
+     * Whole compilations of programs with 25000 up to 200000 distinct variables: half of them
+     * stored from a number, the others from the sum of two of the first ones, and printed.
+     * The time per variable must stay flat.
+     */
+    private static void variables() throws Exception {
+        for (int count = 12500; count <= 100000; count *= 2) {
+            StringBuilder program = new StringBuilder("BEGIN Variables\n");
+            for (int i = 0; i < count; ++i) {
+                program.append("v").append(i).append(" := ").append(i).append(" ,\n");
+            }
+            for (int i = 0; i < count; ++i) {
+                program.append("w").append(i).append(" := v").append(i).append(" + v").append((i * 7) % count).append(" ,\n");
+                program.append("PRINT(w").append(i).append(") ,\n");
+            }
+            program.append("END\n");
+            SourceText text = SourceText.read(new StringReader(program.toString()));
+            double millis = measure(2 * count + " variables", program.length(), "MB", () -> {
+                TokenBuffer tokens = new TokenBuffer();
+                tokens.reset(text, new NameTable());
+                new FastLexer(text).tokenize(tokens);
+                new Parser(tokens).parse(new PrintStream(OutputStream.nullOutputStream()));
+            });
+            System.out.printf("%-24s %9.2f us%n", "per variable", millis * 1e3 / (2 * count));
+        }
+    }
+
+    private static void compile(String label, CharSequence program) throws Exception {
+        compile(label, program, false);
+    }
+
+    private static void compile(String label, CharSequence program, boolean keepParseTree) throws Exception {
+        SourceText text = SourceText.read(new StringReader(program.toString()));
+        PrintStream out = System.out;
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        long start = System.nanoTime();
+        new FastLexer(text).tokenize(tokens);
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Parser parser = new Parser(tokens);
+            parser.setKeepParseTree(keepParseTree);
+            parser.parse();
+        } finally {
+            System.setOut(out);
+        }
+        System.out.printf("%-24s %9.1f ms%n", label, (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Rule selection of the parser: the hand-written action table, searched for each expansion,
+     * against the generated parse table, where each selection is a single array load.
+     * The lookups are those of a parse of the input.
+     */
+    private static void rules(SourceText text) throws Exception {
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new FastLexer(text).tokenize(tokens);
+        // the variable expanded and the next token of each rule selection, recorded during a parse
+        Grammar grammar = new Grammar();
+        GrammarUnit[] variableUnits = new GrammarUnit[Variable.values().length];
+        for (Variable variable : Variable.values()) {
+            variableUnits[variable.ordinal()] = new GrammarUnit(variable);
+        }
+        List<GrammarUnit> variables = new ArrayList<GrammarUnit>();
+        List<LexicalUnit> units = new ArrayList<LexicalUnit>();
+        int[] stack = new int[1024]; // ordinals of variables to expand, -1 for a token to match
+        int top = 0;
+        stack[top++] = Variable.PROGRAM.ordinal();
+        int position = 0;
+        while (top > 0) {
+            Variable variable = Variable.values()[stack[--top]];
+            LexicalUnit unit = tokens.getType(position);
+            variables.add(variableUnits[variable.ordinal()]);
+            units.add(unit);
+            GrammarUnit[] right = grammar.getRule(ParseTable.RULES[variable.ordinal()][unit.ordinal()]).getRight();
+            for (int i = right.length - 1; i >= 0; --i) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                if (right[i].isVariable()) {
+                    stack[top++] = right[i].getVariable().ordinal();
+                } else if (right[i].getType() != LexicalUnit.EPSILON) {
+                    stack[top++] = -1;
+                }
+            }
+            while (top > 0 && stack[top - 1] < 0) {
+                --top;
+                ++position;
+            }
+        }
+        GrammarUnit[] lookupVariables = variables.toArray(new GrammarUnit[0]);
+        LexicalUnit[] lookupUnits = units.toArray(new LexicalUnit[0]);
+        ActionTable actionTable = new ActionTable(grammar);
+        int[] checksum = new int[1];
+        measure("ActionTable", lookupUnits.length, "M rules", () -> {
+            for (int i = 0; i < lookupUnits.length; ++i) {
+                checksum[0] += actionTable.getCorrespondingRule(lookupUnits[i], lookupVariables[i]).idx();
+            }
+        });
+        measure("ParseTable", lookupUnits.length, "M rules", () -> {
+            for (int i = 0; i < lookupUnits.length; ++i) {
+                Variable variable = lookupVariables[i].getVariable();
+                checksum[0] += grammar.getRule(ParseTable.RULES[variable.ordinal()][lookupUnits[i].ordinal()]).idx();
+            }
+        });
+        System.out.println("rule selections: " + lookupUnits.length + " (checksum " + checksum[0] + ")");
+    }
+
+    /**
+     * Lexing after a small edit: the whole edited source against an incremental relex
+     * of the tokens of the original source. The edit inserts a statement in the middle of the source.
+     */
+    private static void incremental(SourceText text) throws Exception {
+        TokenBuffer previous = new TokenBuffer();
+        previous.reset(text, new NameTable());
+        new FastLexer(text).tokenize(previous);
+        int offset = text.indexOf('\n', text.length() / 2) + 1;
+        String inserted = "edited := edited + 1 ,\n";
+        SourceText edited = text.replace(offset, 0, inserted);
+        IncrementalLexer lexer = new IncrementalLexer();
+        TokenBuffer relexed = lexer.relex(previous, offset, 0, inserted);
+        System.out.printf("reused tokens: %d of %d%n", lexer.getReusedTokens(), relexed.size());
+        TokenBuffer tokens = new TokenBuffer();
+        measure("FastLexer.tokenize()", edited.length(), "MB", () -> {
+            tokens.reset(edited, new NameTable());
+            new FastLexer(edited).tokenize(tokens);
+        });
+        measure("IncrementalLexer.relex()", edited.length(), "MB", () -> {
+            lexer.relex(previous, offset, 0, inserted);
+        });
+    }
+
+    /**
+     * Compiling after a small edit: a whole compilation of the edited source against the incremental parser,
+     * which parses again the statements the edit touches and takes back the code of the others.
+     * The edits change a number, insert a top-level statement and insert a statement in a block,
+     * in the middle of the source.
+     * The statements and pieces of code taken back are reported, then the median time
+     * from the edit to the code, each edit being undone after it is timed.
+     */
+    private static void reparse(SourceText text) throws Exception {
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new FastLexer(text).tokenize(tokens);
+        IncrementalParser parser = new IncrementalParser(tokens);
+        parser.compile();
+        int middle = text.indexOf('\n', text.length() / 2) + 1;
+        int number = middle;
+        while (!Character.isDigit(text.charAt(number)) || text.charAt(number - 1) != ' ') {
+            ++number;
+        }
+        int nested = middle; // an assignment in a block, indented twice
+        while (!text.subSequence(nested, nested + 5).toString().equals("    v")) {
+            nested = text.indexOf('\n', nested) + 1;
+        }
+        String[] labels = {"number", "statement", "nested statement"};
+        int[] offsets = {number, middle, nested};
+        int[] removed = {1, 0, 0};
+        String[] inserted = {text.charAt(number) == '9' ? "8" : "9", "edited := edited + 1 ,\n", "    edited := 1 ,\n"};
+        measure("Parser.parse()", text.length(), "MB", () -> {
+            compile(text);
+        });
+        for (int i = 0; i < labels.length; ++i) {
+            String original = text.subSequence(offsets[i], offsets[i] + removed[i]).toString();
+            parser.edit(offsets[i], removed[i], inserted[i]);
+            System.out.printf("%-24s statements: %d reused, %d parsed; code: %d reused, %d generated%n", labels[i],
+                    parser.getReusedStatements(), parser.getReparsedStatements(),
+                    parser.getReusedFragments(), parser.getGeneratedFragments());
+            parser.edit(offsets[i], inserted[i].length(), original);
+            long[] times = new long[RUNS];
+            for (int run = 0; run < RUNS; ++run) {
+                parser.edit(offsets[i], removed[i], inserted[i]);
+                times[run] = parser.getLatency();
+                parser.edit(offsets[i], inserted[i].length(), original);
+            }
+            Arrays.sort(times);
+            System.out.printf("%-24s %9.1f ms%n", "IncrementalParser.edit()", times[RUNS / 2] / 1e6);
+        }
+    }
+
+    /**
+     * Compilations running at the same time: 400 generated programs compiled on a pool of threads,
+     * each compilation with its own context.
+     * The time of the compilations one after the other is compared with the time on the pool.
+     */
+    private static void concurrent() throws Exception {
+        int count = 400;
+        int threads = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+        List<SourceText> programs = new ArrayList<SourceText>();
+        long size = 0;
+        for (int i = 0; i < count; ++i) {
+            Random random = new Random(i);
+            StringBuilder program = new StringBuilder("BEGIN Concurrent\n");
+            for (int j = 50 + random.nextInt(200); j > 0; --j) {
+                statement(program, random, 1);
+            }
+            program.append("END\n");
+            programs.add(SourceText.read(new StringReader(program.toString())));
+            size += program.length();
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+        for (SourceText program : programs) {
+            tasks.add(() -> compile(program));
+        }
+        measure("one after the other", size, "MB", () -> {
+            for (SourceText program : programs) {
+                compile(program);
+            }
+        });
+        measure(threads + " threads", size, "MB", () -> {
+            for (Future<String> result : pool.invokeAll(tasks)) {
+                result.get();
+            }
+        });
+        pool.shutdown();
+    }
+
+    /*
+        The code of a whole compilation of a source, as Parser.parse prints it.
+    */
+    private static String compile(SourceText text) throws Exception {
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new FastLexer(text).tokenize(tokens);
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        new Parser(tokens).parse(new PrintStream(code));
+        return code.toString();
+    }
+
+    /**
+     * Runs a task a few times to warm up, then reports the median time of the next runs.
+     * @param label: the name of the task
+     * @param size: number of characters, or other items, processed by a run
+     * @param unit: what millions of items are called in the report
+     * @param task: the task to measure
+     * @return the median time in milliseconds
+     */
+    private static double measure(String label, long size, String unit, Task task) throws Exception {
+        for (int i = 0; i < WARMUP; ++i) {
+            task.run();
+        }
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; ++i) {
+            long start = System.nanoTime();
+            task.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        double millis = times[RUNS / 2] / 1e6;
+        System.out.printf("%-24s %9.1f ms %9.1f %s/s%n", label, millis, size / 1e3 / millis, unit);
+        return millis;
+    }
+
+    /**
+     * Time a task once, after a first run, as measure does with more runs.
+     */
+    private static void measureOnce(String label, long size, String unit, Task task) throws Exception {
+        task.run();
+        long start = System.nanoTime();
+        task.run();
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%-24s %9.1f ms %9.1f %s/s%n", label, millis, size / 1e3 / millis, unit);
+    }
+
+    /**
+     * Generate a program made of assignments, conditions, loops, prints and comments.
+     * It is written to a temporary file which is mapped, as with -mmap.
+     * @param statements: number of top-level statements
+     */
+    static SourceText generate(int statements) throws IOException {
+        Random random = new Random(42);
+        StringBuilder program = new StringBuilder("BEGIN Benchmark\n");
+        for (int i = 0; i < statements; ++i) {
+            statement(program, random, 1);
+        }
+        program.append("END\n");
+        Path file = Files.createTempFile("benchmark", ".fs");
+        file.toFile().deleteOnExit();
+        Files.write(file, program.toString().getBytes(StandardCharsets.US_ASCII));
+        return SourceText.map(file.toString());
+    }
+
+    private static void statement(StringBuilder program, Random random, int depth) {
+        String indent = "  ".repeat(depth);
+        int kind = depth > 2 ? 0 : random.nextInt(10);
+        String variable = "v" + random.nextInt(100);
+        if (kind < 6) {
+            program.append(indent).append(variable).append(" := ").append(expression(random)).append(" ,");
+            if (random.nextInt(8) == 0) {
+                program.append(" :: update ").append(variable);
+            }
+            program.append('\n');
+        } else if (kind == 6) {
+            program.append(indent).append("%% block comment\n").append(indent).append("   over two lines %%\n");
+            program.append(indent).append("PRINT(").append(variable).append(") ,\n");
+        } else if (kind == 7) {
+            program.append(indent).append("READ(").append(variable).append(") ,\n");
+        } else {
+            String keyword = (kind == 8) ? "IF" : "WHILE";
+            program.append(indent).append(keyword).append(" (").append(expression(random)).append(" < ")
+                    .append(expression(random)).append(kind == 8 ? ") THEN\n" : ") DO\n");
+            for (int i = random.nextInt(3); i >= 0; --i) {
+                statement(program, random, depth + 1);
+            }
+            program.append(indent).append("END ,\n");
+        }
+    }
+
+    private static String expression(Random random) {
+        StringBuilder expression = new StringBuilder();
+        for (int i = random.nextInt(4); i >= 0; --i) {
+            expression.append(random.nextBoolean() ? "v" + random.nextInt(100) : String.valueOf(random.nextInt(1000)));
+            if (i > 0) {
+                expression.append(" ").append("+-*".charAt(random.nextInt(3))).append(" ");
+            }
+        }
+        return expression.toString();
+    }
+}
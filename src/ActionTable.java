@@ -2,7 +2,9 @@ import java.util.Map;
 import java.util.HashMap;
 
 /**
- * This class represents the action table for the parser.
+ * This class represents the action table for the parser, written by hand.
+ * The parser uses ParseTable, generated from the grammar file, instead.
+ * This table is kept as a reference the generated one is checked against.
  */
 public class ActionTable {
 
@@ -40,7 +42,7 @@ public class ActionTable {
     public ActionTable(Grammar grammar) {
         this.grammar = grammar;
         actionTable.put(Variable.PROGRAM, new MatchingRule[] {
-                new MatchingRule(LexicalUnit.PROGNAME, 0)
+                new MatchingRule(LexicalUnit.BEGIN, 0)
         });
 
         actionTable.put(Variable.CODE, new MatchingRule[] {
@@ -153,9 +155,16 @@ public class ActionTable {
      * Given the current symbol and the unit from a rule, returns the rule to apply.
      */
     Rule getCorrespondingRule(Symbol s, GrammarUnit unit) {
+        return getCorrespondingRule(s.getType(), unit);
+    }
+
+    /**
+     * Given the type of the current symbol and the unit from a rule, returns the rule to apply.
+     */
+    Rule getCorrespondingRule(LexicalUnit type, GrammarUnit unit) {
         MatchingRule[] matchingRules = getRules(unit);
         for (int i = 0; i < matchingRules.length; ++i) {
-            if (matchingRules[i].getType() == s.getType()) {
+            if (matchingRules[i].getType() == type) {
                 return matchingRules[i].getRule();
             }
         }
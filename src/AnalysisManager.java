@@ -0,0 +1,50 @@
+/**
+ * The analyses of a control flow graph, computed when a pass first asks for them
+ * and kept until a pass changes the graph.
+ */
+public class AnalysisManager {
+
+    private final ControlFlowGraph cfg;
+    private DominatorTree dominators = null;
+    private LoopNest loops = null;
+    private int computed = 0; // number of analyses computed
+
+    /**
+     * @param cfg: the graph the analyses are about
+     */
+    public AnalysisManager(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+    }
+
+    public DominatorTree getDominatorTree() {
+        if (dominators == null) {
+            dominators = new DominatorTree(cfg);
+            ++computed;
+        }
+        return dominators;
+    }
+
+    public LoopNest getLoopNest() {
+        if (loops == null) {
+            loops = new LoopNest(cfg, getDominatorTree());
+            ++computed;
+        }
+        return loops;
+    }
+
+    /**
+     * Drop the analyses after a change of the graph, whose edges are computed again.
+     */
+    public void invalidate() {
+        cfg.updateEdges();
+        dominators = null;
+        loops = null;
+    }
+
+    /**
+     * Number of analyses computed so far: the ones taken back from the cache are not counted.
+     */
+    public int getComputedCount() {
+        return computed;
+    }
+}
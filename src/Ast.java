@@ -1,5 +1,5 @@
+import java.util.ArrayDeque;
 import java.util.List;
-import java.util.ArrayList;
 
 /**
  * The abstract syntax tree.
@@ -15,52 +15,67 @@ public class Ast {
         this.root = new Instruction(tree);
     }
 
+    /**
+     * The Ast of instructions built by the parser directly, which need no create.
+     */
+    public Ast(Instruction root) {
+        this.root = root;
+    }
+
     public Instruction getRoot() {
         return this.root;
     }
 
-    private Instruction instanciateInstruction(ParseTree tree) {
-        Variable type = tree.getLabel().getVariable();
-        switch (type) {
-            case ASSIGN:
-                return new Assign(tree);
-            case IF:
-                return new If(tree);
-            case WHILE:
-                return new While(tree);
-            case PRINT:
-                return new Print(tree);
-            case READ:
-                return new Read(tree);
-            default:
-                return new Instruction(tree);
+    /*
+        A node of the parse tree whose children are being visited,
+        with the index of the next child and whether it is in an else block.
+    */
+    private static class Visit {
+        final ParseTree breach;
+        int next = 0;
+        boolean isElse;
+
+        Visit(ParseTree breach, boolean isElse) {
+            this.breach = breach;
+            this.isElse = isElse;
         }
     }
 
     /**
      * Goes through the codes and add an instruction in the tree when encounteres a new instruction.
+     * The code nodes are visited depth first with an explicit stack, as the chain of codes
+     * is as long as the block.
      * @param node: the current layer
      * @param breach: the visitor layer
      * @param isElse: are we in an else block
      */
     public void aggregateInstructions(ParseTree breach, Instruction node, boolean isElse) {
-        for (int i = 0; i < breach.numChildren(); ++i) {
-            ParseTree e = breach.getChildren().get(i);
+        ArrayDeque<Visit> stack = new ArrayDeque<Visit>();
+        stack.push(new Visit(breach, isElse));
+        while (!stack.isEmpty()) {
+            Visit visit = stack.peek();
+            if (visit.next == visit.breach.numChildren()) {
+                stack.pop();
+                continue;
+            }
+            int i = visit.next++;
+            ParseTree e = visit.breach.get(i);
 
             if (e.isInstruction()) {
 
-                List<Instruction> recipient = (isElse) ? node.getElseList() : node.getThenList();
-                recipient.add(instanciateInstruction(e.get(0))); // add the operation
+                List<Instruction> recipient = (visit.isElse) ? node.getElseList() : node.getThenList();
+                recipient.add(Instruction.of(e.get(0).getLabel().getVariable(), e.get(0))); // add the operation
             }
             if (e.isIfSeq()) {
                 if (e.numChildren() != 1) {
                     e = e.get(1); // the <Code> in instruction 
-                    isElse = true;
+                    visit.isElse = true;
                 }
             }
             if (!e.isLeaf() && e.isCode()) {
-                breach.remove(i--); // remove now useless code node from the tree
-                aggregateInstructions(e, node, isElse); // visit another code node
+                visit.breach.remove(i); // remove now useless code node from the tree
+                --visit.next;
+                stack.push(new Visit(e, visit.isElse)); // visit another code node
             }
         }
     }
@@ -72,32 +87,46 @@ public class Ast {
      */
     private void detachFromMainTree(ParseTree breach, Instruction node) {
         aggregateInstructions(breach, node, false);
-        for (Instruction n: node.getThenList()) { // do the same on freshly added layers n+1 operations
-            detachFromMainTree(n.getTree(), n);
-        }
-        for (Instruction n: node.getElseList()) { // do the same on freshly added layers n+1 operations
-            detachFromMainTree(n.getTree(), n);
+        ArrayDeque<Instruction> pending = new ArrayDeque<Instruction>(node.getThenList());
+        pending.addAll(node.getElseList());
+        while (!pending.isEmpty()) { // do the same on freshly added layers n+1 operations
+            Instruction n = pending.pop();
+            aggregateInstructions(n.getTree(), n, false);
+            pending.addAll(n.getThenList());
+            pending.addAll(n.getElseList());
         }
     }
 
     /**
-     * Simplify the tree by removing useless nodes
+     * Simplify the tree by removing useless nodes.
+     * Instructions are simplified in post order, deeper layers first,
+     * as the expression handler keeps state from one expression to the next.
      */
-    private void simplify(Instruction instruction) {
-        for (Instruction n: instruction.getThenList()) {
-            simplify(n);
+    private void simplify(Instruction instruction, CompilationContext context) {
+        ArrayDeque<Instruction> pending = new ArrayDeque<Instruction>();
+        ArrayDeque<Instruction> order = new ArrayDeque<Instruction>(); // reverse post order
+        pending.push(instruction);
+        while (!pending.isEmpty()) {
+            Instruction n = pending.pop();
+            order.push(n);
+            for (Instruction child : n.getThenList()) {
+                pending.push(child);
+            }
+            for (Instruction child : n.getElseList()) {
+                pending.push(child);
+            }
         }
-        for (Instruction n: instruction.getElseList()) {
-            simplify(n);
+        while (!order.isEmpty()) {
+            order.pop().simplify(context);
         }
-        instruction.simplify();
     }
 
     /**
      * Create the instruction tree from the parse tree
+     * @param context: the compilation, whose expression handler simplifies the expressions
      */
-    public void create() {
+    public void create(CompilationContext context) {
         this.detachFromMainTree(root.getTree(), root);
-        this.simplify(root);
+        this.simplify(root, context);
     }
 }
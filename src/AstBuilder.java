@@ -0,0 +1,183 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the instruction tree while the input is parsed, without a parse tree.
+ * The parser gives it each token it reads and each rule it completes, and the builder
+ * keeps the values of the grammar units of the rules being parsed on a stack:
+ * the tokens, the trees of the expressions and the instructions.
+ * Instructions get the trees their simplify method would have made from the parse tree,
+ * and expressions come parsed by an ExpressionParser, as ExprArithHandler.simplifyExprArith parses them,
+ * so the generated code is the same. The instructions must not be simplified again.
+ */
+public class AstBuilder {
+
+    private final ArrayList<Object> values = new ArrayList<Object>();
+    private final ArrayDeque<List<Instruction>> blocks = new ArrayDeque<List<Instruction>>();
+    private LlvmGenerator generator = null;
+    private Instruction root = null;
+
+    public AstBuilder() {}
+
+    /**
+     * A builder which does not keep the top-level instructions:
+     * the code of each one is printed as soon as it is complete.
+     * @param generator: the generator to print the code with
+     */
+    public AstBuilder(LlvmGenerator generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * The instruction of the whole program, once it is parsed.
+     * Its then list holds the top-level instructions, unless they were printed.
+     */
+    public Instruction getRoot() {
+        return root;
+    }
+
+    /**
+     * The block completed last, when the parser was only given a <Code>.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Instruction> takeBlock() {
+        return (List<Instruction>) pop();
+    }
+
+    /**
+     * A token was read. Commas end instructions and carry nothing.
+     */
+    public void shift(Symbol symbol) {
+        if (symbol.getType() != LexicalUnit.COMMA) {
+            values.add(symbol);
+        }
+    }
+
+    /**
+     * An <ExprArith> was parsed by an ExpressionParser: its tree is its value.
+     */
+    public void expression(ParseTree tree) {
+        values.add(tree);
+    }
+
+    /**
+     * A <Code> starts: the instructions completed until its end are put in a new block.
+     */
+    public void beginBlock() {
+        blocks.push(new ArrayList<Instruction>());
+    }
+
+    /**
+     * The <Code> ends: its block becomes its value.
+     */
+    public void endBlock() {
+        values.add(blocks.pop());
+    }
+
+    /**
+     * A rule is complete: the values of its right hand side are replaced by the value of its variable.
+     * The rules of <Code> have no value and are not reduced.
+     */
+    @SuppressWarnings("unchecked")
+    public void reduce(Rule rule) {
+        GrammarUnit first = rule.getRight()[0];
+        switch (rule.getLeftHandSide().getVariable()) {
+            case PROGRAM: { // BEGIN [ProgName] <Code> END
+                pop();
+                List<Instruction> block = (List<Instruction>) pop();
+                pop();
+                pop();
+                root = new Instruction(null);
+                root.getThenList().addAll(block);
+                break;
+            }
+            case INSTRUCTION: {
+                Instruction instruction = (Instruction) pop();
+                if (generator != null && blocks.size() == 1) {
+                    generator.generate(instruction);
+                } else {
+                    blocks.peek().add(instruction);
+                }
+                break;
+            }
+            case ASSIGN: { // [VarName] := <ExprArith>
+                ParseTree expr = (ParseTree) pop();
+                Symbol assign = (Symbol) pop();
+                ParseTree name = leaf((Symbol) pop());
+                values.add(Instruction.of(Variable.ASSIGN, node(assign, name, expr)));
+                break;
+            }
+            case IF: { // IF ( <Cond> ) THEN <Code> <IfSeq>
+                List<Instruction> elseBlock = (List<Instruction>) pop();
+                List<Instruction> thenBlock = (List<Instruction>) pop();
+                pop();
+                pop();
+                ParseTree cond = (ParseTree) pop();
+                pop();
+                pop();
+                Instruction instruction = Instruction.of(Variable.IF, cond);
+                instruction.getThenList().addAll(thenBlock);
+                instruction.getElseList().addAll(elseBlock);
+                values.add(instruction);
+                break;
+            }
+            case IFSEQ: // END or ELSE <Code> END
+                pop();
+                if (first.getType() == LexicalUnit.ELSE) {
+                    List<Instruction> block = (List<Instruction>) pop();
+                    pop();
+                    values.add(block);
+                } else {
+                    values.add(new ArrayList<Instruction>());
+                }
+                break;
+            case COND: { // <ExprArith> <Comp> <ExprArith>
+                ParseTree right = (ParseTree) pop();
+                Symbol comp = (Symbol) pop();
+                ParseTree left = (ParseTree) pop();
+                values.add(node(comp, left, right));
+                break;
+            }
+            case WHILE: { // WHILE ( <Cond> ) DO <Code> END
+                pop();
+                List<Instruction> block = (List<Instruction>) pop();
+                pop();
+                pop();
+                ParseTree cond = (ParseTree) pop();
+                pop();
+                pop();
+                Instruction instruction = Instruction.of(Variable.WHILE, cond);
+                instruction.getThenList().addAll(block);
+                values.add(instruction);
+                break;
+            }
+            case PRINT: // PRINT ( [VarName] )
+            case READ: { // READ ( [VarName] )
+                pop();
+                ParseTree name = leaf((Symbol) pop());
+                pop();
+                pop();
+                values.add(Instruction.of(rule.getLeftHandSide().getVariable(), name));
+                break;
+            }
+            default: // <Comp>: the comparison token is its own value
+                break;
+        }
+    }
+
+    private Object pop() {
+        return values.remove(values.size() - 1);
+    }
+
+    private static ParseTree leaf(Symbol symbol) {
+        return new ParseTree(new GrammarUnit(symbol));
+    }
+
+    private static ParseTree node(Symbol symbol, ParseTree left, ParseTree right) {
+        List<ParseTree> children = new ArrayList<ParseTree>(2);
+        children.add(left);
+        children.add(right);
+        return new ParseTree(new GrammarUnit(symbol), children);
+    }
+}
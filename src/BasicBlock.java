@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A basic block of the intermediate representation: a label and a list of instructions
+ * run one after the other, the last one being a branch to the successors of the block.
+ * The last block of a piece of code lowered alone, as the code of one top-level instruction,
+ * has no branch: the code following it continues the block.
+ * Successors and predecessors are computed from the branches by ControlFlowGraph.updateEdges.
+ */
+public class BasicBlock {
+
+    private final String label;
+    private final List<IrInstruction> instructions = new ArrayList<IrInstruction>();
+    private final List<BasicBlock> successors = new ArrayList<BasicBlock>(2);
+    private final List<BasicBlock> predecessors = new ArrayList<BasicBlock>(2);
+    private int index = -1; // position of the block in the layout of its graph
+
+    /**
+     * @param label: the label of the block in the code
+     */
+    public BasicBlock(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public List<IrInstruction> getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * Add an instruction at the end of the block.
+     */
+    public void add(IrInstruction instruction) {
+        instructions.add(instruction);
+    }
+
+    /**
+     * The branch ending the block, null if it has none.
+     */
+    public IrInstruction getTerminator() {
+        if (instructions.isEmpty()) {
+            return null;
+        }
+        IrInstruction last = instructions.get(instructions.size() - 1);
+        return last.isTerminator() ? last : null;
+    }
+
+    /**
+     * Add an instruction before the branch ending the block.
+     */
+    public void addBeforeTerminator(IrInstruction instruction) {
+        int idx = (getTerminator() == null) ? instructions.size() : instructions.size() - 1;
+        instructions.add(idx, instruction);
+    }
+
+    /**
+     * Number of phis, at the top of the block.
+     */
+    public int getPhiCount() {
+        int count = 0;
+        while (count < instructions.size() && instructions.get(count).isPhi()) {
+            ++count;
+        }
+        return count;
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        return successors;
+    }
+
+    public List<BasicBlock> getPredecessors() {
+        return predecessors;
+    }
+
+    /**
+     * Position of the block in the layout of its graph, the entry being 0.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
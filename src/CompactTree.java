@@ -0,0 +1,317 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A parse tree stored in an arena of primitive arrays instead of one ParseTree per node.
+ * A node is an index in the arrays, which hold its kind, its first child, its next sibling
+ * and the index of its token in the token buffer the tree was parsed from.
+ * The children of a node are allocated together, one after the other.
+ * Nodes have the same shape as the nodes of a ParseTree built by the parser:
+ * a variable has the units of its rule as children, none for an empty rule,
+ * and a lexical unit has one child, the leaf of the token it matched.
+ * The navigation methods are the ones of ParseTree, with the node as first parameter.
+ * A tree can be cleared and reused for another parse, keeping its arrays.
+ */
+public class CompactTree {
+
+    /**
+     * No node: the first child of a leaf, the next sibling of a last child.
+     */
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Variable[] VARIABLES = Variable.values();
+    private static final LexicalUnit[] UNITS = LexicalUnit.values();
+
+    /* Kinds of nodes, besides the ordinals of variables */
+    private static final int UNIT = VARIABLES.length; // plus the ordinal of the lexical unit of the grammar
+    private static final int TOKEN = UNIT + UNITS.length; // plus the ordinal of the lexical unit of the token
+
+    private byte[] kinds;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] tokenIndexes; // index of the token of a token leaf in the buffer, NONE for other nodes
+    private int size = 0;
+    private TokenBuffer tokens = null;
+
+    public CompactTree() {
+        this.kinds = new byte[INITIAL_CAPACITY];
+        this.firstChildren = new int[INITIAL_CAPACITY];
+        this.nextSiblings = new int[INITIAL_CAPACITY];
+        this.tokenIndexes = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Empty the tree to receive the nodes of another parse. The arrays are kept.
+     * @param tokens: the buffer the tokens of the leaves are read from
+     */
+    public void reset(TokenBuffer tokens) {
+        this.tokens = tokens;
+        this.size = 0;
+    }
+
+    /* ------------------ Building ------------------ */
+
+    /**
+     * Add a root node labelled by a variable.
+     * @return the node
+     */
+    public int addRoot(Variable variable) {
+        ensureCapacity(1);
+        return add(variable.ordinal(), NONE, NONE);
+    }
+
+    /**
+     * Give a node the units of a right hand side as children.
+     * @return the first child
+     */
+    public int setChildren(int node, GrammarUnit[] units) {
+        ensureCapacity(units.length);
+        int first = size;
+        for (int i = 0; i < units.length; ++i) {
+            int kind = units[i].isVariable() ? units[i].getVariable().ordinal() : UNIT + units[i].getType().ordinal();
+            add(kind, (i < units.length - 1) ? size + 1 : NONE, NONE);
+        }
+        firstChildren[node] = first;
+        return first;
+    }
+
+    /**
+     * Give a node the leaf of a token as its only child.
+     * @param token: index of the token in the buffer
+     */
+    public void setToken(int node, int token) {
+        ensureCapacity(1);
+        firstChildren[node] = add(TOKEN + tokens.getType(token).ordinal(), NONE, token);
+    }
+
+    private int add(int kind, int nextSibling, int token) {
+        kinds[size] = (byte) kind;
+        firstChildren[size] = NONE;
+        nextSiblings[size] = nextSibling;
+        tokenIndexes[size] = token;
+        return size++;
+    }
+
+    private void ensureCapacity(int count) {
+        if (size + count > kinds.length) {
+            int capacity = Math.max(kinds.length * 2, size + count);
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            tokenIndexes = Arrays.copyOf(tokenIndexes, capacity);
+        }
+    }
+
+    /* ------------------ Navigation ------------------ */
+
+    /**
+     * The first node added, the root of the tree.
+     */
+    public int root() {
+        return 0;
+    }
+
+    /**
+     * Number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int get(int node, int idx) {
+        int child = firstChildren[node];
+        for (int i = 0; i < idx; ++i) {
+            child = nextSiblings[child];
+        }
+        if (child == NONE) {
+            throw new IndexOutOfBoundsException("Index " + idx + " out of bounds for length " + numChildren(node));
+        }
+        return child;
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public int getLastChild(int node) {
+        int child = firstChildren[node];
+        while (nextSiblings[child] != NONE) {
+            child = nextSiblings[child];
+        }
+        return child;
+    }
+
+    public int numChildren(int node) {
+        int count = 0;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            ++count;
+        }
+        return count;
+    }
+
+    public boolean isLeaf(int node) {
+        return firstChildren[node] == NONE;
+    }
+
+    public boolean isVariable(int node) {
+        return kinds[node] < UNIT;
+    }
+
+    /**
+     * Whether the node is the leaf of a token, which has a value.
+     */
+    public boolean hasValue(int node) {
+        return kinds[node] >= TOKEN;
+    }
+
+    /**
+     * The variable of a variable node, null for other nodes.
+     */
+    public Variable getVariable(int node) {
+        return isVariable(node) ? VARIABLES[kinds[node]] : null;
+    }
+
+    /**
+     * The lexical unit of a grammar unit or of a token, null for a variable.
+     */
+    public LexicalUnit getType(int node) {
+        int kind = kinds[node];
+        if (kind >= TOKEN) {
+            return UNITS[kind - TOKEN];
+        }
+        return (kind >= UNIT) ? UNITS[kind - UNIT] : null;
+    }
+
+    /**
+     * Index in the token buffer of the token of a leaf, NONE for other nodes.
+     */
+    public int getToken(int node) {
+        return tokenIndexes[node];
+    }
+
+    /**
+     * The symbol of the token of a leaf, built from the token buffer.
+     */
+    public Symbol getSymbol(int node) {
+        return tokens.getSymbol(tokenIndexes[node]);
+    }
+
+    /**
+     * The value of the token of a leaf, as ParseTree.getString() gives it.
+     */
+    public String getString(int node) {
+        int token = tokenIndexes[node];
+        if (tokens.getType(token) == LexicalUnit.NUMBER) {
+            return String.valueOf(tokens.getValue(token));
+        }
+        return tokens.getText(token);
+    }
+
+    public int getNameId(int node) {
+        return tokens.getValue(tokenIndexes[node]);
+    }
+
+    public boolean isInstruction(int node) {
+        return kinds[node] == Variable.INSTRUCTION.ordinal();
+    }
+
+    public boolean isCode(int node) {
+        return kinds[node] == Variable.CODE.ordinal();
+    }
+
+    public boolean isAtom(int node) {
+        return kinds[node] == Variable.ATOM.ordinal();
+    }
+
+    public boolean isExprArith(int node) {
+        return kinds[node] == Variable.EXPRARITH.ordinal();
+    }
+
+    public boolean isExprArithPrime(int node) {
+        return kinds[node] == Variable.EXPRARITHPRIME.ordinal();
+    }
+
+    public boolean isProd(int node) {
+        return kinds[node] == Variable.PROD.ordinal();
+    }
+
+    public boolean isIfSeq(int node) {
+        return kinds[node] == Variable.IFSEQ.ordinal();
+    }
+
+    public boolean isIf(int node) {
+        return kinds[node] == Variable.IF.ordinal();
+    }
+
+    public boolean isProdPrime(int node) {
+        return kinds[node] == Variable.PRODPRIME.ordinal();
+    }
+
+    public boolean isParenthesis(int node) {
+        LexicalUnit type = getType(node);
+        return type == LexicalUnit.LPAREN || type == LexicalUnit.RPAREN;
+    }
+
+    public boolean isMinus(int node) {
+        return getType(node) == LexicalUnit.MINUS;
+    }
+
+    public boolean isArithOperator(int node) {
+        if (!hasValue(node)) {
+            return false;
+        }
+        switch (getType(node)) {
+            case PLUS:
+            case MINUS:
+            case TIMES:
+            case DIVIDE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /* ------------------ Conversion ------------------ */
+
+    /**
+     * The ParseTree of a node and its descendants, equal to the one the parser would have built,
+     * for the passes which change the tree.
+     */
+    public ParseTree toParseTree(int node) {
+        ParseTree tree = new ParseTree(label(node));
+        ArrayDeque<ParseTree> trees = new ArrayDeque<ParseTree>();
+        ArrayDeque<Integer> nodes = new ArrayDeque<Integer>();
+        trees.push(tree);
+        nodes.push(node);
+        while (!nodes.isEmpty()) {
+            int parent = nodes.pop();
+            ParseTree parentTree = trees.pop();
+            if (isLeaf(parent)) {
+                continue;
+            }
+            List<ParseTree> children = new ArrayList<ParseTree>(numChildren(parent));
+            for (int child = firstChildren[parent]; child != NONE; child = nextSiblings[child]) {
+                ParseTree childTree = new ParseTree(label(child));
+                children.add(childTree);
+                trees.push(childTree);
+                nodes.push(child);
+            }
+            parentTree.setChildren(children);
+        }
+        return tree;
+    }
+
+    private GrammarUnit label(int node) {
+        if (isVariable(node)) {
+            return new GrammarUnit(getVariable(node));
+        }
+        return hasValue(node) ? new GrammarUnit(getSymbol(node)) : new GrammarUnit(getType(node));
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.BitSet;
+
+/**
+ * The state of one compilation: the counter of the llvm values, the counter of the labels,
+ * the symbol table and the expression handler.
+ * Each compilation has its own context, given to the instructions when they are simplified
+ * and when their code is generated, so compilations do not see each other's state
+ * and several of them can run at the same time on different threads.
+ * A context is used by one thread at a time.
+ */
+public class CompilationContext {
+
+    private int count = -1; // number of the last llvm value
+    private int labelId = 0; // id of the next labels
+    private final SymbolTable symbolTable = new SymbolTable();
+    private final ExprArithHandler exprArithHandler = new ExprArithHandler(this);
+
+    /**
+     * Get n and increment it
+     * @return the number of a new llvm value
+     */
+    public int inc() {
+        return ++count;
+    }
+
+    /**
+     * Get n
+     * @return the number of the last llvm value
+     */
+    public int n() {
+        return count;
+    }
+
+    /**
+     * The id of the labels of a new condition or loop.
+     */
+    public int newLabel() {
+        return labelId++;
+    }
+
+    /**
+     * The number of label ids given so far.
+     */
+    public int getLabelCount() {
+        return labelId;
+    }
+
+    /**
+     * Count labels whose code was lowered by another compilation and is taken back.
+     * @param labels: number of label ids of the code
+     */
+    public void reserve(int labels) {
+        labelId += labels;
+    }
+
+    /**
+     * Record a store into a variable, the first one being its definition.
+     * @param variable: the symbol of the name of the variable in the store
+     */
+    public void write(Symbol variable) {
+        symbolTable.write(symbolTable.add(variable.getNameId()), variable.getLine());
+    }
+
+    /**
+     * The variables of the compilation, with their slots.
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * The ids of the names of the variables of the compilation so far.
+     */
+    public BitSet getVariables() {
+        BitSet variables = new BitSet();
+        for (int slot = 0; slot < symbolTable.size(); ++slot) {
+            variables.set(symbolTable.getNameId(slot));
+        }
+        return variables;
+    }
+
+    /**
+     * The handler simplifying the expressions and building their typed form in this compilation.
+     */
+    public ExprArithHandler getExprArithHandler() {
+        return exprArithHandler;
+    }
+}
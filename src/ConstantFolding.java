@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compute the operations whose operands are constants, and the branches on comparisons of constants.
+ * An operation of constants is removed, and its result replaced by the constant in the instructions using it,
+ * and a branch on a comparison of constants becomes a branch to the block it always goes to.
+ * A division by zero, or of the smallest integer by -1, is left to the program.
+ * Blocks are visited in reverse post order, so the operands of an instruction are met before it,
+ * except the operands of the phis coming along the back edges of loops: a phi is known when all
+ * its operands are the same known constant.
+ */
+public class ConstantFolding implements Pass {
+
+    public String getName() {
+        return "constant-folding";
+    }
+
+    public boolean run(ControlFlowGraph cfg, AnalysisManager analyses) {
+        int[] constants = new int[cfg.getRegisterCount()];
+        boolean[] known = new boolean[cfg.getRegisterCount()];
+        boolean changed = false;
+        for (BasicBlock block : analyses.getDominatorTree().getReversePostOrder()) {
+            List<IrInstruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size(); ++i) {
+                IrInstruction instruction = instructions.get(i);
+                switch (instruction.getOpcode()) {
+                    case ADD:
+                    case SUB:
+                    case MUL:
+                    case SDIV:
+                        if (isKnown(instruction.getOperand(0), known) && isKnown(instruction.getOperand(1), known)) {
+                            int left = valueOf(instruction.getOperand(0), constants);
+                            int right = valueOf(instruction.getOperand(1), constants);
+                            if (instruction.getOpcode() == IrInstruction.Opcode.SDIV
+                                    && (right == 0 || (left == Integer.MIN_VALUE && right == -1))) {
+                                break;
+                            }
+                            known[instruction.getResult()] = true;
+                            constants[instruction.getResult()] = fold(instruction.getOpcode(), left, right);
+                        }
+                        break;
+                    case ICMP:
+                        if (isKnown(instruction.getOperand(0), known) && isKnown(instruction.getOperand(1), known)) {
+                            int left = valueOf(instruction.getOperand(0), constants);
+                            int right = valueOf(instruction.getOperand(1), constants);
+                            known[instruction.getResult()] = true;
+                            constants[instruction.getResult()] = compare(instruction.getPredicate(), left, right) ? 1 : 0;
+                        }
+                        break;
+                    case PHI:
+                        boolean same = true;
+                        for (int o = 0; o < instruction.numOperands() && same; ++o) {
+                            same = isKnown(instruction.getOperand(o), known)
+                                    && valueOf(instruction.getOperand(o), constants) == valueOf(instruction.getOperand(0), constants);
+                        }
+                        if (same && instruction.numOperands() > 0) {
+                            known[instruction.getResult()] = true;
+                            constants[instruction.getResult()] = valueOf(instruction.getOperand(0), constants);
+                        }
+                        break;
+                    case CONDBR:
+                        if (isKnown(instruction.getOperand(0), known)) {
+                            int target = (valueOf(instruction.getOperand(0), constants) != 0) ? 0 : 1;
+                            instructions.set(i, IrInstruction.br(instruction.getTarget(target)));
+                            changed = true;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        for (BasicBlock block : cfg.getBlocks()) {
+            List<IrInstruction> instructions = block.getInstructions();
+            List<IrInstruction> kept = new ArrayList<IrInstruction>(instructions.size());
+            for (IrInstruction instruction : instructions) {
+                if (instruction.hasResult() && known[instruction.getResult()]) {
+                    continue;
+                }
+                for (int i = 0; i < instruction.numOperands(); ++i) {
+                    if (isKnown(instruction.getOperand(i), known) && instruction.getOperand(i).isRegister()) {
+                        instruction.setOperand(i, Operand.constant(valueOf(instruction.getOperand(i), constants)));
+                    }
+                }
+                kept.add(instruction);
+            }
+            if (kept.size() != instructions.size()) {
+                instructions.clear();
+                instructions.addAll(kept);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isKnown(Operand operand, boolean[] known) {
+        return operand.isConstant() || (operand.isRegister() && known[operand.getRegister()]);
+    }
+
+    private static int valueOf(Operand operand, int[] constants) {
+        return operand.isConstant() ? operand.getConstant() : constants[operand.getRegister()];
+    }
+
+    /**
+     * The result of an arithmetic operation on 32 bits integers, as llvm computes it.
+     */
+    static int fold(IrInstruction.Opcode opcode, int left, int right) {
+        switch (opcode) {
+            case ADD:
+                return left + right;
+            case SUB:
+                return left - right;
+            case MUL:
+                return left * right;
+            case SDIV:
+                return left / right;
+            default:
+                throw new IllegalArgumentException("Not an arithmetic operation: " + opcode);
+        }
+    }
+
+    /**
+     * The result of a comparison of signed integers.
+     */
+    static boolean compare(IrInstruction.Predicate predicate, int left, int right) {
+        switch (predicate) {
+            case EQ:
+                return left == right;
+            case SLT:
+                return left < right;
+            case SGT:
+                return left > right;
+            default:
+                throw new IllegalArgumentException("Not a comparison: " + predicate);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The control flow graph of a piece of code in the intermediate representation:
+ * its basic blocks, in the order they are laid out in the code, the first one being the entry.
+ * Registers are numbered from 0 in the graph. They get their llvm numbers when the graph is printed,
+ * in the order they are defined, so passes may remove and move instructions freely.
+ * Variables are numbered by their slots in the symbol table of the compilation.
+ */
+public class ControlFlowGraph {
+
+    private final List<BasicBlock> blocks = new ArrayList<BasicBlock>();
+    private final SymbolTable symbols;
+    private int registers = 0;
+
+    /**
+     * A graph whose entry block is labelled entry.
+     * @param symbols: the variables the slots of the code refer to
+     */
+    public ControlFlowGraph(SymbolTable symbols) {
+        this.symbols = symbols;
+        add(new BasicBlock("entry"));
+    }
+
+    /**
+     * The variables the slots of the code refer to.
+     */
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    /**
+     * A new register, never defined by another instruction.
+     */
+    public int newRegister() {
+        return registers++;
+    }
+
+    /**
+     * Number of registers, every register is smaller.
+     */
+    public int getRegisterCount() {
+        return registers;
+    }
+
+    public BasicBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    /**
+     * The blocks, in the order of the layout.
+     */
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Add a block at the end of the layout.
+     */
+    public void add(BasicBlock block) {
+        block.setIndex(blocks.size());
+        blocks.add(block);
+    }
+
+    /**
+     * Number the blocks in the order of the layout, and compute the successors and the predecessors
+     * of each block from its branch. Called after the blocks or the branches are changed.
+     * The operands of the phis coming from blocks which are no longer predecessors are removed.
+     */
+    public void updateEdges() {
+        for (int i = 0; i < blocks.size(); ++i) {
+            BasicBlock block = blocks.get(i);
+            block.setIndex(i);
+            block.getSuccessors().clear();
+            block.getPredecessors().clear();
+        }
+        for (BasicBlock block : blocks) {
+            IrInstruction terminator = block.getTerminator();
+            if (terminator == null) {
+                continue;
+            }
+            for (int i = 0; i < terminator.numTargets(); ++i) {
+                BasicBlock target = terminator.getTarget(i);
+                if (!block.getSuccessors().contains(target)) {
+                    block.getSuccessors().add(target);
+                    target.getPredecessors().add(block);
+                }
+            }
+        }
+        for (BasicBlock block : blocks) {
+            List<IrInstruction> instructions = block.getInstructions();
+            for (int i = 0; i < instructions.size() && instructions.get(i).isPhi(); ++i) {
+                instructions.get(i).keepIncoming(block.getPredecessors());
+            }
+        }
+    }
+
+    /**
+     * Number of instructions of the graph.
+     */
+    public int size() {
+        int size = 0;
+        for (BasicBlock block : blocks) {
+            size += block.getInstructions().size();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remove the instructions whose result is never used and which do nothing else.
+ * The instructions doing more than giving their result are live, and so are the instructions
+ * defining the operands of a live instruction. The others are removed, as a phi of a loop
+ * used only by the instructions of the next iteration, which a count of the uses would keep.
+ */
+public class DeadCodeElimination implements Pass {
+
+    public String getName() {
+        return "dead-code-elimination";
+    }
+
+    public boolean run(ControlFlowGraph cfg, AnalysisManager analyses) {
+        IrInstruction[] definitions = new IrInstruction[cfg.getRegisterCount()];
+        boolean[] live = new boolean[cfg.getRegisterCount()];
+        ArrayList<IrInstruction> pending = new ArrayList<IrInstruction>();
+        for (BasicBlock block : cfg.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.hasResult()) {
+                    definitions[instruction.getResult()] = instruction;
+                }
+                if (!instruction.hasResult() || instruction.hasSideEffects()) {
+                    if (instruction.hasResult()) {
+                        live[instruction.getResult()] = true;
+                    }
+                    pending.add(instruction);
+                }
+            }
+        }
+        while (!pending.isEmpty()) {
+            IrInstruction instruction = pending.remove(pending.size() - 1);
+            for (int i = 0; i < instruction.numOperands(); ++i) {
+                Operand operand = instruction.getOperand(i);
+                if (operand.isRegister() && !live[operand.getRegister()] && definitions[operand.getRegister()] != null) {
+                    live[operand.getRegister()] = true;
+                    pending.add(definitions[operand.getRegister()]);
+                }
+            }
+        }
+        boolean changed = false;
+        for (BasicBlock block : cfg.getBlocks()) {
+            List<IrInstruction> instructions = block.getInstructions();
+            List<IrInstruction> kept = new ArrayList<IrInstruction>(instructions.size());
+            for (IrInstruction instruction : instructions) {
+                if (!instruction.hasResult() || live[instruction.getResult()]) {
+                    kept.add(instruction);
+                }
+            }
+            if (kept.size() != instructions.size()) {
+                instructions.clear();
+                instructions.addAll(kept);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,228 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The dominator tree of a control flow graph, computed by the iterative algorithm of
+ * Cooper, Harvey and Kennedy over the reverse post order of the blocks reachable from the entry.
+ * Whether a block dominates another is then answered in constant time,
+ * from the intervals of a walk of the tree. The dominance frontiers are computed
+ * from the tree when they are first asked for.
+ * The tree is computed from the edges of the graph, which must be up to date.
+ */
+public class DominatorTree {
+
+    private final List<BasicBlock> order; // reachable blocks, in reverse post order
+    private final int[] orderIndex; // position of each block in the order by block index, -1 if unreachable
+    private final int[] idom; // block index of the immediate dominator, the entry is its own
+    private final int[] enter; // time a walk of the tree enters each block
+    private final int[] exit; // time it leaves it
+    private final List<List<BasicBlock>> children;
+    private List<List<BasicBlock>> frontiers = null; // by block index
+
+    /**
+     * @param cfg: the graph, whose edges are up to date
+     */
+    public DominatorTree(ControlFlowGraph cfg) {
+        List<BasicBlock> blocks = cfg.getBlocks();
+        int size = blocks.size();
+        order = reversePostOrder(cfg.getEntry(), size);
+        orderIndex = new int[size];
+        Arrays.fill(orderIndex, -1);
+        for (int i = 0; i < order.size(); ++i) {
+            orderIndex[order.get(i).getIndex()] = i;
+        }
+        idom = new int[size];
+        Arrays.fill(idom, -1);
+        int entry = cfg.getEntry().getIndex();
+        idom[entry] = entry;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < order.size(); ++i) {
+                BasicBlock block = order.get(i);
+                int dominator = -1;
+                for (BasicBlock predecessor : block.getPredecessors()) {
+                    int p = predecessor.getIndex();
+                    if (idom[p] == -1) { // not processed yet, or unreachable
+                        continue;
+                    }
+                    dominator = (dominator == -1) ? p : intersect(p, dominator);
+                }
+                if (idom[block.getIndex()] != dominator) {
+                    idom[block.getIndex()] = dominator;
+                    changed = true;
+                }
+            }
+        }
+        children = new ArrayList<List<BasicBlock>>(size);
+        for (int i = 0; i < size; ++i) {
+            children.add(new ArrayList<BasicBlock>(2));
+        }
+        for (int i = 1; i < order.size(); ++i) {
+            BasicBlock block = order.get(i);
+            children.get(idom[block.getIndex()]).add(block);
+        }
+        enter = new int[size];
+        exit = new int[size];
+        number(cfg.getEntry());
+    }
+
+    /**
+     * The blocks reachable from the entry, in reverse post order: each block comes before its
+     * successors, except along the back edges of loops.
+     */
+    public List<BasicBlock> getReversePostOrder() {
+        return order;
+    }
+
+    public boolean isReachable(BasicBlock block) {
+        return orderIndex[block.getIndex()] != -1;
+    }
+
+    /**
+     * The immediate dominator of a reachable block, null for the entry.
+     */
+    public BasicBlock getImmediateDominator(BasicBlock block) {
+        int dominator = idom[block.getIndex()];
+        if (dominator == block.getIndex()) {
+            return null;
+        }
+        return order.get(orderIndex[dominator]);
+    }
+
+    /**
+     * The blocks whose immediate dominator is a block.
+     */
+    public List<BasicBlock> getChildren(BasicBlock block) {
+        return children.get(block.getIndex());
+    }
+
+    /**
+     * Whether every path from the entry to a block goes through another one.
+     * A block dominates itself, and an unreachable block dominates nothing.
+     */
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        if (!isReachable(dominator) || !isReachable(block)) {
+            return false;
+        }
+        int a = dominator.getIndex();
+        int b = block.getIndex();
+        return enter[a] <= enter[b] && exit[b] <= exit[a];
+    }
+
+    /**
+     * The dominance frontier of a reachable block: the blocks it does not strictly dominate,
+     * but which have a predecessor it dominates. They are where the paths from the block
+     * meet paths which do not go through it.
+     */
+    public List<BasicBlock> getDominanceFrontier(BasicBlock block) {
+        if (frontiers == null) {
+            computeFrontiers();
+        }
+        return frontiers.get(block.getIndex());
+    }
+
+    /*
+        A join is in the frontier of the blocks from each of its predecessors up to its immediate dominator,
+        as Cooper, Harvey and Kennedy compute it.
+    */
+    private void computeFrontiers() {
+        int size = orderIndex.length;
+        frontiers = new ArrayList<List<BasicBlock>>(size);
+        for (int i = 0; i < size; ++i) {
+            frontiers.add(new ArrayList<BasicBlock>(0));
+        }
+        for (BasicBlock block : order) {
+            if (block.getPredecessors().size() < 2) {
+                continue;
+            }
+            for (BasicBlock predecessor : block.getPredecessors()) {
+                if (!isReachable(predecessor)) {
+                    continue;
+                }
+                for (int runner = predecessor.getIndex(); runner != idom[block.getIndex()]; runner = idom[runner]) {
+                    List<BasicBlock> frontier = frontiers.get(runner);
+                    if (frontier.isEmpty() || frontier.get(frontier.size() - 1) != block) {
+                        frontier.add(block);
+                    }
+                }
+            }
+        }
+    }
+
+    /* Common dominator of two processed blocks, climbing the one further in the order */
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (orderIndex[a] > orderIndex[b]) {
+                a = idom[a];
+            }
+            while (orderIndex[b] > orderIndex[a]) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    /*
+        Reverse post order from the entry, with an explicit stack of the blocks being visited
+        and of the index of their next successor.
+    */
+    private static List<BasicBlock> reversePostOrder(BasicBlock entry, int size) {
+        List<BasicBlock> postOrder = new ArrayList<BasicBlock>(size);
+        boolean[] visited = new boolean[size];
+        ArrayList<BasicBlock> blocks = new ArrayList<BasicBlock>();
+        ArrayList<Integer> next = new ArrayList<Integer>();
+        blocks.add(entry);
+        next.add(0);
+        visited[entry.getIndex()] = true;
+        while (!blocks.isEmpty()) {
+            int top = blocks.size() - 1;
+            BasicBlock block = blocks.get(top);
+            int idx = next.get(top);
+            if (idx < block.getSuccessors().size()) {
+                next.set(top, idx + 1);
+                BasicBlock successor = block.getSuccessors().get(idx);
+                if (!visited[successor.getIndex()]) {
+                    visited[successor.getIndex()] = true;
+                    blocks.add(successor);
+                    next.add(0);
+                }
+            } else {
+                postOrder.add(block);
+                blocks.remove(top);
+                next.remove(top);
+            }
+        }
+        Collections.reverse(postOrder);
+        return postOrder;
+    }
+
+    /* Times a walk of the tree enters and leaves each block, with an explicit stack */
+    private void number(BasicBlock root) {
+        int time = 0;
+        ArrayList<BasicBlock> blocks = new ArrayList<BasicBlock>();
+        ArrayList<Integer> next = new ArrayList<Integer>();
+        blocks.add(root);
+        next.add(0);
+        enter[root.getIndex()] = time++;
+        while (!blocks.isEmpty()) {
+            int top = blocks.size() - 1;
+            BasicBlock block = blocks.get(top);
+            int idx = next.get(top);
+            List<BasicBlock> below = children.get(block.getIndex());
+            if (idx < below.size()) {
+                next.set(top, idx + 1);
+                BasicBlock child = below.get(idx);
+                enter[child.getIndex()] = time++;
+                blocks.add(child);
+                next.add(0);
+            } else {
+                exit[block.getIndex()] = time++;
+                blocks.remove(top);
+                next.remove(top);
+            }
+        }
+    }
+}
@@ -1,180 +1,104 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
- * This class will simplify exprArith trees and generate the code for it.
+ * This class will turn the trees of the exprArith into typed expressions, which are lowered by IrBuilder.
+ * The trees are the binary trees of an ExpressionParser, made of operators, variables and numbers.
+ * Expression trees are as deep as the expressions are long, so they are walked
+ * with explicit stacks instead of recursion.
  */
 public class ExprArithHandler {
 
-    private String exprArithCode = null;
-    private boolean addMinus = false;
-
-    /**
-     * Pre order algorithm
-     * Raise the operator when possible to build a simpler tree
-     * @param tree: the current tree
-     */
-    private void raiseOperator(ParseTree tree) {
-        if (tree.isExprArith() || tree.isProd() || tree.isExprArithPrime() || tree.isProdPrime()) {
-            ParseTree prime = tree.get(1);
-            if (!(prime.isLeaf() && prime.isVariable())) {
-                ParseTree op = prime.get(0).get(0);
-                tree.replaceLabel(op);
-                prime.remove(0); // remove operator
-            }
-        }
-        for (int i = 0; i < tree.numChildren(); ++i) {
-            ParseTree child = tree.get(i);
-            if (!(child.isLeaf() && child.isVariable())) {
-                raiseOperator(child);
-            } else {
-                tree.remove(i--);
-            }
-        }
-    }
+    private final CompilationContext context; // holds the slots of the variables
+    private final ExpressionParser parser = new ExpressionParser(); // parses the <ExprArith> of parse trees
 
     /**
-     * Pre order algorithm
-     * Browse the tree while another exprArith is found and replace the "toReplace" by it.
-     * @param breach: the visitor layer
-     * @param toReplace: the tree to replace
-     * @param side: add to the right or the left ?
+     * @param context: the compilation the expressions belong to
      */
-    private void findNextArith(ParseTree breach, ParseTree toReplace, int side) {
-        if (breach.getLabel().hasValue() && !breach.isParenthesis()) {
-            if (breach.isLeaf() && breach.isMinus()) {
-                addMinus = true;
-            } else {
-                if (addMinus) {
-                    breach.getLabel().addMinus();
-                    addMinus = false;
-                }
-                toReplace.setChild(side, breach);
-                return;
-            }
-        }
-        for (int i = 0; i < breach.numChildren(); ++i) {
-            ParseTree child = breach.get(i);
-            findNextArith(child, toReplace, side);
-        }
+    public ExprArithHandler(CompilationContext context) {
+        this.context = context;
     }
 
-    /**
-     * Fill the gap in the tree
-     * Post order algorithm
-     * @param tree: the current tree
-     */
-    private void postOrder(ParseTree tree) {
-        for (int i = 0; i < tree.numChildren(); ++i) {
-            ParseTree child = tree.get(i);
-            postOrder(child);
-        }
-        if (!tree.isLeaf() && tree.isArithOperator()){
-            ParseTree left = tree.get(0);
-            ParseTree right = tree.get(1);
-            findNextArith(left, tree, 0);
-            findNextArith(right, tree, 1);
-        } else if (!tree.isLeaf() && tree.isExprArith()) { // ExprArith standing alone
-            if (tree.get(0).getLabel().hasValue()) {
-                ParseTree interest = tree.get(0);
-                tree.replaceLabel(interest);
-                tree.setChildren(interest.getChildren());
-            } else {
-                findNextArith(tree, tree, 0);
-                tree.replaceLabel(tree.get(0));
-                tree.remove(0);
+    /*
+        The nodes of a tree in post order, children first.
+    */
+    private static List<ParseTree> postOrderNodes(ParseTree tree) {
+        List<ParseTree> order = new ArrayList<ParseTree>();
+        ArrayDeque<ParseTree> pending = new ArrayDeque<ParseTree>();
+        pending.push(tree);
+        while (!pending.isEmpty()) { // root, then children from the last one: the reverse of post order
+            ParseTree node = pending.pop();
+            order.add(node);
+            for (int i = 0; i < node.numChildren(); ++i) {
+                pending.push(node.get(i));
             }
         }
+        Collections.reverse(order);
+        return order;
     }
 
     /**
-     * Simplify the tree of the exprArith.
-     * It will become a binary tree made of operators, variables and integers only. 
+     * Simplify the tree of the exprArith, as the parser follows the rules of the grammar.
+     * Its tokens are given to an ExpressionParser, so it becomes the binary tree the parser
+     * builds when it parses the exprArith itself, made of operators, variables and integers only.
      * @param exprTree: the tree to simplify
      */
     public ParseTree simplifyExprArith(ParseTree exprTree) {
-        raiseOperator(exprTree);
-        postOrder(exprTree);
-        return exprTree;
+        ArrayDeque<ParseTree> pending = new ArrayDeque<ParseTree>();
+        pending.push(exprTree);
+        while (!pending.isEmpty()) {
+            ParseTree node = pending.pop();
+            if (node.isLeaf() && node.getLabel().getSymbol() != null) { // a token
+                parser.shift(node.getLabel().getSymbol());
+            }
+            for (int i = node.numChildren() - 1; i >= 0; --i) { // pushed backwards to be visited in order
+                pending.push(node.get(i));
+            }
+        }
+        return parser.finish();
     }
 
-    /* ------------------ Code Generation ------------------ */
+    /* ------------------ Typed Expressions ------------------ */
 
     /**
-     * Generate the code for the exprArith.
-     * Post order algorithm
-     * @param exprTree: the tree to generate the code
+     * Build the typed expression of a simplified tree.
+     * Post order algorithm, with a stack of the expressions of the children.
+     * @param exprTree: the tree, made of operators, variables and numbers
      */
-    private void generateCodeFromExprArith(ParseTree exprTree) {
-        for (int i = 0; i < exprTree.numChildren(); ++i) {
-            ParseTree child = exprTree.get(i);
-            generateCodeFromExprArith(child);
-        }
-        String code = new String();
-        if (exprTree.isArithOperator()) {
-            String op = exprTree.getString();
-            String method = null;
-            switch (op) {
-                case "+":
-                    method = "add";
-                    break;
-                case "-":
-                    method = "sub";
+    public Expression toExpression(ParseTree exprTree) {
+        ArrayList<Expression> operands = new ArrayList<Expression>();
+        for (ParseTree node : postOrderNodes(exprTree)) {
+            int children = node.numChildren();
+            Symbol symbol = node.getLabel().getSymbol();
+            Expression expression;
+            switch (symbol.getType()) {
+                case NUMBER:
+                    expression = new Expression.Const((Integer) symbol.getValue());
                     break;
-                case "*":
-                    method = "mul";
-                    break;
-                case "/":
-                    method = "sdiv";
+                case VARNAME:
+                    expression = new Expression.VarRef(context.getSymbolTable().add(symbol.getNameId(), node.getString()));
                     break;
                 default:
+                    Expression.BinOp.Kind kind = Expression.BinOp.Kind.of(symbol.getType());
+                    if (kind == null) {
+                        throw new IllegalStateException("Not an expression: " + symbol);
+                    }
+                    if (children != 2) {
+                        throw new IllegalStateException("Operator " + symbol + " with " + children + " operands");
+                    }
+                    int first = operands.size() - children;
+                    expression = new Expression.BinOp(kind, operands.get(first), operands.get(first + 1));
                     break;
             }
-            code += "%"+ Counter.inc() + " = " + method + " i32 %" + exprTree.get(0).getString() + ", %" + exprTree.get(1).getString();
-                
-        } else {
-            String symbol = exprTree.getString();
-            // check symbol is a variable or a number
-            try {
-                Integer.parseInt(symbol);
-                code += "%"+Counter.inc()+" = call i32 @assign(i32 " + symbol + ")";
-            } catch (NumberFormatException e) {
-                symbol = "%" + symbol;
-                code += "%"+Counter.inc()+" = load i32, i32* " + symbol;
+            for (int i = symbol.getNegations(); i > 0; --i) {
+                expression = Expression.Neg.of(expression);
             }
+            operands.subList(operands.size() - children, operands.size()).clear();
+            operands.add(expression);
         }
-        exprArithCode += code + "\n";
-        exprTree.modifyLabel(String.valueOf(Counter.n()));
-    }
-
-    /**
-     * Correct the tree in case of this type of expression: 3 - 4 + 2.
-     * The minus should be take into account when doing  the multiplication.
-     * Preorder algorithm
-     * @param exprTree: the tree to correct
-     */
-    private void correctTree(ParseTree exprTree) {
-        if (exprTree.isMinus()) {
-            ParseTree right = exprTree.get(1);
-            if (!right.isLeaf()) {
-                exprTree.modifyLabel("+");
-                right.get(0).getLabel().addMinus();
-            }
-        } 
-        for (int i = 0; i < exprTree.numChildren(); ++i) {
-            ParseTree child = exprTree.get(i);
-            correctTree(child);
-        }
-    }
-
-    /**
-     * Get the code for the exprArith.
-     * @param exprTree: the tree to get the code
-     */
-    public String getExprArithCode(ParseTree exprTree) {
-        exprArithCode = new String();
-        correctTree(exprTree);
-        generateCodeFromExprArith(exprTree);
-        // cut the last \n
-        exprArithCode = exprArithCode.substring(0, exprArithCode.length() - 1);
-        return exprArithCode;
+        return operands.get(0);
     }
 
 }
@@ -0,0 +1,220 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An arithmetic expression in the typed form it is lowered from:
+ * constants, references to variables, binary operations and negations, the classes nested in this one.
+ * An expression is built once from the simplified tree of an <ExprArith> by ExprArithHandler,
+ * and it is lowered once to the intermediate representation, each node giving one operand.
+ * A constant is an immediate operand of the instructions using it: it has no instruction and no register.
+ */
+public abstract class Expression {
+
+    protected Operand result = null; // operand holding the value of the expression, once it is lowered
+
+    /**
+     * The operand holding the value of the expression, once it is lowered.
+     */
+    public Operand getResult() {
+        return result;
+    }
+
+    /**
+     * Number of the expressions whose values this one uses.
+     */
+    public int numOperands() {
+        return 0;
+    }
+
+    /**
+     * An expression whose value this one uses, in the order they are lowered.
+     */
+    public Expression getOperand(int idx) {
+        throw new IndexOutOfBoundsException("Index " + idx + " out of bounds for length " + numOperands());
+    }
+
+    /**
+     * Add the instructions computing the value of the expression, once its operands are lowered.
+     * @param builder: where the instructions are added
+     */
+    protected abstract void lower(IrBuilder builder);
+
+    /**
+     * The nodes of an expression in post order, each one after its operands.
+     * The expression is walked with an explicit stack, as it is as deep as it is long.
+     */
+    public static List<Expression> postOrder(Expression expression) {
+        List<Expression> order = new ArrayList<Expression>();
+        ArrayDeque<Expression> pending = new ArrayDeque<Expression>();
+        pending.push(expression);
+        while (!pending.isEmpty()) { // node, then operands from the last one: the reverse of post order
+            Expression node = pending.pop();
+            order.add(node);
+            for (int i = 0; i < node.numOperands(); ++i) {
+                pending.push(node.getOperand(i));
+            }
+        }
+        Collections.reverse(order);
+        return order;
+    }
+
+    /**
+     * An integer constant.
+     */
+    public static class Const extends Expression {
+
+        private final int constant;
+
+        public Const(int constant) {
+            this.constant = constant;
+        }
+
+        public int getConstant() {
+            return constant;
+        }
+
+        protected void lower(IrBuilder builder) {
+            result = Operand.constant(constant);
+        }
+    }
+
+    /**
+     * The value of a variable, by its slot in the symbol table of the compilation.
+     */
+    public static class VarRef extends Expression {
+
+        private final int slot;
+
+        /**
+         * @param slot: the slot of the variable in the symbol table
+         */
+        public VarRef(int slot) {
+            this.slot = slot;
+        }
+
+        public int getSlot() {
+            return slot;
+        }
+
+        protected void lower(IrBuilder builder) {
+            result = builder.load(slot);
+        }
+    }
+
+    /**
+     * An operation on two expressions.
+     */
+    public static class BinOp extends Expression {
+
+        /**
+         * The operations, with their instruction in the intermediate representation.
+         */
+        public enum Kind {
+            ADD(IrInstruction.Opcode.ADD),
+            SUB(IrInstruction.Opcode.SUB),
+            MUL(IrInstruction.Opcode.MUL),
+            DIV(IrInstruction.Opcode.SDIV);
+
+            private final IrInstruction.Opcode opcode;
+
+            Kind(IrInstruction.Opcode opcode) {
+                this.opcode = opcode;
+            }
+
+            public IrInstruction.Opcode getOpcode() {
+                return opcode;
+            }
+
+            /**
+             * The operation of an operator token, null for other tokens.
+             */
+            public static Kind of(LexicalUnit type) {
+                switch (type) {
+                    case PLUS:
+                        return ADD;
+                    case MINUS:
+                        return SUB;
+                    case TIMES:
+                        return MUL;
+                    case DIVIDE:
+                        return DIV;
+                    default:
+                        return null;
+                }
+            }
+        }
+
+        private final Kind kind;
+        private final Expression left;
+        private final Expression right;
+
+        public BinOp(Kind kind, Expression left, Expression right) {
+            this.kind = kind;
+            this.left = left;
+            this.right = right;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int numOperands() {
+            return 2;
+        }
+
+        public Expression getOperand(int idx) {
+            switch (idx) {
+                case 0:
+                    return left;
+                case 1:
+                    return right;
+                default:
+                    return super.getOperand(idx);
+            }
+        }
+
+        protected void lower(IrBuilder builder) {
+            result = builder.binary(kind.getOpcode(), left.result, right.result);
+        }
+    }
+
+    /**
+     * The opposite of an expression which is not a constant.
+     */
+    public static class Neg extends Expression {
+
+        private final Expression operand;
+
+        public Neg(Expression operand) {
+            this.operand = operand;
+        }
+
+        /**
+         * The opposite of an expression: a constant of the opposite value,
+         * the expression under a negation, or a negation.
+         */
+        public static Expression of(Expression expression) {
+            if (expression instanceof Const) {
+                return new Const(-((Const) expression).getConstant());
+            }
+            if (expression instanceof Neg) {
+                return ((Neg) expression).operand;
+            }
+            return new Neg(expression);
+        }
+
+        public int numOperands() {
+            return 1;
+        }
+
+        public Expression getOperand(int idx) {
+            return (idx == 0) ? operand : super.getOperand(idx);
+        }
+
+        protected void lower(IrBuilder builder) {
+            result = builder.binary(IrInstruction.Opcode.SUB, Operand.constant(0), operand.result);
+        }
+    }
+}
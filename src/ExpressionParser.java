@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses an <ExprArith> by precedence climbing, with a stack of operators and a stack of operands,
+ * into the binary tree of its operators, variables and numbers.
+ * Binary operators are associated to the left, * and / before + and -,
+ * and a unary minus applies to the atom after it: a / b * c is (a / b) * c and - - a is a.
+ * The minus of a number is put in the number, the minus of anything else is a subtraction from 0.
+ * The parser is given the tokens one at a time, so it needs no access to the input,
+ * and it uses no recursion: it is linear in the length of the expression whatever its nesting.
+ */
+public class ExpressionParser {
+
+    private static final int PARENTHESIS = 0;
+    private static final int SUM = 1;
+    private static final int PRODUCT = 2;
+    private static final int NEGATION = 3;
+
+    /*
+        An operator waiting for its right operand, or an opening parenthesis.
+    */
+    private static class Operator {
+        final Symbol symbol;
+        final int precedence;
+
+        Operator(Symbol symbol, int precedence) {
+            this.symbol = symbol;
+            this.precedence = precedence;
+        }
+    }
+
+    private final ArrayList<Operator> operators = new ArrayList<Operator>();
+    private final ArrayList<ParseTree> operands = new ArrayList<ParseTree>();
+    private boolean operandExpected = true;
+    private int depth = 0; // parentheses left open
+
+    /**
+     * Whether the next token belongs to the expression.
+     * The expression ends before a comma, a comparison, or a closing parenthesis it did not open.
+     * A token which can neither continue nor end the expression is a syntax error,
+     * which throws the error the table-driven parser would have thrown.
+     */
+    public boolean accepts(LexicalUnit type) {
+        if (operandExpected) {
+            switch (type) {
+                case VARNAME:
+                case NUMBER:
+                case LPAREN:
+                case MINUS:
+                    return true;
+                default:
+                    throw new Error("No rule in action table");
+            }
+        }
+        switch (type) {
+            case PLUS:
+            case MINUS:
+            case TIMES:
+            case DIVIDE:
+                return true;
+            case RPAREN:
+                if (depth > 0) {
+                    return true;
+                }
+                break;
+            case COMMA:
+            case EQUAL:
+            case GREATER:
+            case SMALLER:
+                break;
+            default:
+                throw new Error("No rule in action table");
+        }
+        if (depth > 0) { // a parenthesis is left open
+            throw new Error("Inputs are not matching !");
+        }
+        return false;
+    }
+
+    /**
+     * Add a token accepted by accepts().
+     */
+    public void shift(Symbol symbol) {
+        switch (symbol.getType()) {
+            case VARNAME:
+            case NUMBER:
+                operands.add(new ParseTree(new GrammarUnit(symbol)));
+                operandExpected = false;
+                break;
+            case LPAREN:
+                operators.add(new Operator(symbol, PARENTHESIS));
+                ++depth;
+                break;
+            case RPAREN:
+                reduce(SUM);
+                operators.remove(operators.size() - 1);
+                --depth;
+                break;
+            case MINUS:
+                if (operandExpected) {
+                    operators.add(new Operator(symbol, NEGATION));
+                } else {
+                    shiftBinary(symbol);
+                }
+                break;
+            default:
+                shiftBinary(symbol);
+                break;
+        }
+    }
+
+    /*
+        Add a binary operator, once the operators before it that go first are applied.
+    */
+    private void shiftBinary(Symbol symbol) {
+        int precedence = (symbol.getType() == LexicalUnit.PLUS || symbol.getType() == LexicalUnit.MINUS) ? SUM : PRODUCT;
+        reduce(precedence);
+        operators.add(new Operator(symbol, precedence));
+        operandExpected = true;
+    }
+
+    /**
+     * The tree of the expression whose tokens were given. The parser is then ready for another one.
+     */
+    public ParseTree finish() {
+        reduce(SUM);
+        ParseTree tree = operands.remove(operands.size() - 1);
+        operandExpected = true;
+        return tree;
+    }
+
+    /*
+        Apply the operators on top of the stack whose precedence is at least the given one,
+        as the ones before them at the same level go first. Parentheses stop the reduction.
+    */
+    private void reduce(int precedence) {
+        while (!operators.isEmpty()) {
+            Operator operator = operators.get(operators.size() - 1);
+            if (operator.precedence < precedence) { // also a parenthesis
+                return;
+            }
+            operators.remove(operators.size() - 1);
+            ParseTree right = operands.remove(operands.size() - 1);
+            if (operator.precedence == NEGATION) {
+                operands.add(negate(operator.symbol, right));
+            } else {
+                ParseTree left = operands.remove(operands.size() - 1);
+                operands.add(node(operator.symbol, left, right));
+            }
+        }
+    }
+
+    private static ParseTree negate(Symbol minus, ParseTree operand) {
+        if (operand.isLeaf() && operand.getLabel().getType() == LexicalUnit.NUMBER) {
+            operand.getLabel().addMinus();
+            return operand;
+        }
+        ParseTree zero = new ParseTree(new GrammarUnit(new Symbol(LexicalUnit.NUMBER, Integer.valueOf(0))));
+        return node(minus, zero, operand);
+    }
+
+    private static ParseTree node(Symbol symbol, ParseTree left, ParseTree right) {
+        List<ParseTree> children = new ArrayList<ParseTree>(2);
+        children.add(left);
+        children.add(right);
+        return new ParseTree(new GrammarUnit(symbol), children);
+    }
+}
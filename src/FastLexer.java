@@ -0,0 +1,377 @@
+import java.io.PrintStream;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Hand-written lexer for the Fortress language.
+ * It recognises the same tokens as the generated Lexer, with the same warnings and errors,
+ * but classifies ASCII characters with a single table lookup instead of going through
+ * the character map and the transition table of the DFA.
+ * Keywords are recognised with a perfect hash on their first letter and their length.
+ * Blanks and comments are skipped with the bulk scans of the source text.
+ */
+public class FastLexer {
+
+    /* Character classes */
+    private static final byte OTHER = 0;
+    private static final byte SPACE = 1;
+    private static final byte LINE_END = 2;
+    private static final byte LOWER = 3;
+    private static final byte UPPER = 4;
+    private static final byte DIGIT = 5;
+    private static final byte SINGLE = 6; // a token of one character
+    private static final byte COLON = 7;
+    private static final byte PERCENT = 8;
+
+    private static final byte[] CLASSES = new byte[128];
+    private static final LexicalUnit[] SINGLES = new LexicalUnit[128];
+    static {
+        CLASSES[' '] = SPACE;
+        CLASSES['\t'] = SPACE;
+        CLASSES['\f'] = SPACE;
+        CLASSES['\n'] = LINE_END;
+        CLASSES['\r'] = LINE_END;
+        for (char c = 'a'; c <= 'z'; ++c) {
+            CLASSES[c] = LOWER;
+        }
+        for (char c = 'A'; c <= 'Z'; ++c) {
+            CLASSES[c] = UPPER;
+        }
+        for (char c = '0'; c <= '9'; ++c) {
+            CLASSES[c] = DIGIT;
+        }
+        single(',', LexicalUnit.COMMA);
+        single('(', LexicalUnit.LPAREN);
+        single(')', LexicalUnit.RPAREN);
+        single('+', LexicalUnit.PLUS);
+        single('-', LexicalUnit.MINUS);
+        single('*', LexicalUnit.TIMES);
+        single('/', LexicalUnit.DIVIDE);
+        single('=', LexicalUnit.EQUAL);
+        single('>', LexicalUnit.GREATER);
+        single('<', LexicalUnit.SMALLER);
+        CLASSES[':'] = COLON;
+        CLASSES['%'] = PERCENT;
+    }
+
+    /* Keywords, indexed by their hash */
+    private static final String[] KEYWORDS = new String[16];
+    private static final LexicalUnit[] KEYWORD_UNITS = new LexicalUnit[16];
+    static {
+        keyword("BEGIN", LexicalUnit.BEGIN);
+        keyword("END", LexicalUnit.END);
+        keyword("IF", LexicalUnit.IF);
+        keyword("THEN", LexicalUnit.THEN);
+        keyword("ELSE", LexicalUnit.ELSE);
+        keyword("WHILE", LexicalUnit.WHILE);
+        keyword("DO", LexicalUnit.DO);
+        keyword("PRINT", LexicalUnit.PRINT);
+        keyword("READ", LexicalUnit.READ);
+    }
+
+    private final SourceText text;
+    private final int length; // offset where scanning stops
+    private final LineMap lines;
+    private NameTable names = new NameTable();
+    private PrintStream warnings = System.err;
+    private boolean inComment; // is the next character inside a long comment
+    private int position = 0; // offset of the next character to read
+    private int start = 0; // offset of the first character of the last token
+    private int value = 0; // value of the last number or id of the last variable name
+
+    /**
+     * @param text: the source to scan
+     */
+    public FastLexer(SourceText text) {
+        this(text, 0, text.length(), false);
+    }
+
+    /**
+     * Lexer of a part of a source, used to lex the parts of a source in parallel.
+     * The part must start and end at line boundaries. Offsets, lines and errors are
+     * still those of the whole source. A long comment left open at the end of the
+     * part is only an error if the part goes up to the end of the source.
+     * @param text: the whole source
+     * @param start: offset of the first character of the part
+     * @param end: offset after the last character of the part
+     * @param inComment: does the part start inside a long comment
+     */
+    public FastLexer(SourceText text, int start, int end, boolean inComment) {
+        this.text = text;
+        this.length = end;
+        this.lines = new LineMap(text);
+        this.position = start;
+        this.start = start;
+        this.inComment = inComment;
+    }
+
+    private static void single(char c, LexicalUnit unit) {
+        CLASSES[c] = SINGLE;
+        SINGLES[c] = unit;
+    }
+
+    private static void keyword(String word, LexicalUnit unit) {
+        int hash = hash(word.charAt(0), word.length());
+        if (KEYWORDS[hash] != null) {
+            throw new IllegalStateException("Keywords " + word + " and " + KEYWORDS[hash] + " have the same hash");
+        }
+        KEYWORDS[hash] = word;
+        KEYWORD_UNITS[hash] = unit;
+    }
+
+    /*
+        Perfect hash of the keywords: no two of them share a first letter and a length that collide.
+    */
+    private static int hash(char first, int length) {
+        return (2 * first + length) & 15;
+    }
+
+    /**
+     * Set the table variable names are interned in.
+     */
+    public void setNameTable(NameTable names) {
+        this.names = names;
+    }
+
+    /**
+     * Set where warnings are printed, System.err by default.
+     */
+    public void setWarnings(PrintStream warnings) {
+        this.warnings = warnings;
+    }
+
+    /**
+     * Get the next token of the input, equal to the one Lexer.nextToken() returns.
+     * Its line and column are computed only if they are asked for.
+     */
+    public Symbol nextToken() throws PatternSyntaxException {
+        LexicalUnit unit = scan();
+        switch (unit) {
+            case EOS:
+                return new Symbol(unit, lines, start, Symbol.NO_VALUE);
+            case NUMBER:
+                return new Symbol(unit, lines, start, Integer.valueOf(value));
+            case VARNAME:
+                return new Symbol(unit, lines, start, names.getName(value), value);
+            default:
+                return new Symbol(unit, lines, start, text.subSequence(start, position).toString());
+        }
+    }
+
+    /**
+     * Scan the whole input into a token buffer, up to and including the EOS token.
+     * The buffer must have been reset on the same text.
+     * Variable names are interned in the name table of the buffer.
+     * @param tokens: the buffer to fill
+     */
+    public void tokenize(TokenBuffer tokens) throws PatternSyntaxException {
+        while (addNextToken(tokens) != LexicalUnit.EOS) {}
+    }
+
+    /**
+     * Scan the next token into a token buffer.
+     * The buffer must have been reset on the same text.
+     * Variable names are interned in the name table of the buffer.
+     * @param tokens: the buffer to append the token to
+     * @return the lexical unit of the token
+     */
+    public LexicalUnit addNextToken(TokenBuffer tokens) throws PatternSyntaxException {
+        names = tokens.getNames();
+        LexicalUnit unit = scan();
+        tokens.add(unit, start, position - start, value);
+        return unit;
+    }
+
+    /*
+        Reads the next token, skipping blanks and comments.
+        Leaves its bounds in start and position, and its value in value.
+    */
+    private LexicalUnit scan() {
+        value = 0;
+        if (inComment) {
+            inComment = false;
+            skipLongComment(position);
+        }
+        while (position < length) {
+            start = position;
+            char c = text.charAt(position);
+            switch (c < 128 ? CLASSES[c] : OTHER) {
+                case SPACE:
+                case LINE_END:
+                    position = text.skipBlanks(position + 1);
+                    break;
+                case LOWER:
+                    return varName();
+                case UPPER:
+                    return upperCase();
+                case DIGIT:
+                    return number();
+                case SINGLE:
+                    ++position;
+                    return SINGLES[c];
+                case COLON:
+                    if (charAt(position + 1) == ':') {
+                        skipShortComment();
+                        break;
+                    }
+                    if (charAt(position + 1) == '=') {
+                        position += 2;
+                        return LexicalUnit.ASSIGN;
+                    }
+                    throw unmatched();
+                case PERCENT:
+                    if (charAt(position + 1) == '%') {
+                        skipLongComment(position + 2);
+                        break;
+                    }
+                    throw unmatched();
+                default:
+                    throw unmatched();
+            }
+        }
+        start = position;
+        return LexicalUnit.EOS;
+    }
+
+    /*
+        The character at an offset, or 0 past the end of the input.
+    */
+    private char charAt(int offset) {
+        return offset < length ? text.charAt(offset) : 0;
+    }
+
+    private byte classAt(int offset) {
+        char c = charAt(offset);
+        return c < 128 ? CLASSES[c] : OTHER;
+    }
+
+    private LexicalUnit varName() {
+        int end = position + 1;
+        byte kind = classAt(end);
+        while (kind == LOWER || kind == DIGIT) {
+            kind = classAt(++end);
+        }
+        position = end;
+        value = names.intern(text, start, end - start);
+        return LexicalUnit.VARNAME;
+    }
+
+    private LexicalUnit number() {
+        int end = position + 1;
+        while (classAt(end) == DIGIT) {
+            ++end;
+        }
+        position = end;
+        int length = end - start;
+        if (length > 1 && text.charAt(start) == '0') {
+            warnings.println("Warning! Numbers with leading zeros are not permitted: " + text.subSequence(start, end));
+        }
+        if (length > 9) { // may overflow, let Integer report it as the generated lexer would
+            value = Integer.parseInt(text.subSequence(start, end).toString());
+        } else {
+            for (int i = start; i < end; ++i) {
+                value = value * 10 + (text.charAt(i) - '0');
+            }
+        }
+        return LexicalUnit.NUMBER;
+    }
+
+    /*
+        A word starting with an uppercase letter is the longest of:
+        a keyword, a program name (letters and digits with at least one lowercase letter
+        after the first one, or the first letter followed by digits only),
+        or a run of uppercase letters, which is a bad program name.
+        On a tie, keywords come first, then program names.
+    */
+    private LexicalUnit upperCase() {
+        int upperEnd = position + 1;
+        while (classAt(upperEnd) == UPPER) {
+            ++upperEnd;
+        }
+        int end = position + 1;
+        boolean lower = false;
+        byte kind = classAt(end);
+        while (kind == UPPER || kind == LOWER || kind == DIGIT) {
+            lower |= kind == LOWER;
+            kind = classAt(++end);
+        }
+        int progNameEnd = end;
+        if (!lower) {
+            progNameEnd = position + 1;
+            while (classAt(progNameEnd) == DIGIT) {
+                ++progNameEnd;
+            }
+        }
+        if (progNameEnd <= upperEnd) {
+            LexicalUnit keyword = keyword(upperEnd - start);
+            if (keyword != null) {
+                position = upperEnd;
+                return keyword;
+            }
+        }
+        if (progNameEnd >= upperEnd) {
+            position = progNameEnd;
+            return LexicalUnit.PROGNAME;
+        }
+        position = upperEnd;
+        warnings.println("Warning! Program names in uppercase are not permitted: " + text.subSequence(start, upperEnd));
+        return LexicalUnit.PROGNAME;
+    }
+
+    /*
+        The keyword starting at start with the given length, null if there is none.
+    */
+    private LexicalUnit keyword(int length) {
+        int hash = hash(text.charAt(start), length);
+        String keyword = KEYWORDS[hash];
+        if (keyword == null || keyword.length() != length) {
+            return null;
+        }
+        for (int i = 1; i < length; ++i) {
+            if (keyword.charAt(i) != text.charAt(start + i)) {
+                return null;
+            }
+        }
+        return KEYWORD_UNITS[hash];
+    }
+
+    /*
+        Skips from "::" to the end of the line, included.
+    */
+    private void skipShortComment() {
+        int end = text.indexOfLineTerminator(position + 2);
+        if (end == length) {
+            position = length;
+            return;
+        }
+        char c = text.charAt(end);
+        if (c != '\n' && c != '\r') { // no rule of the generated lexer matches it
+            throw new Error("Error: could not match input");
+        }
+        char pair = c == '\n' ? '\r' : '\n';
+        position = charAt(end + 1) == pair ? end + 2 : end + 1;
+    }
+
+    /*
+        Skips a long comment, from its content at offset from to the next "%%", included.
+        A comment still open at the end of a part of the source goes on in the next part.
+    */
+    private void skipLongComment(int from) {
+        int end = text.indexOf('%', from);
+        while (end >= 0 && end < length && charAt(end + 1) != '%') {
+            end = text.indexOf('%', end + 1);
+        }
+        if (end < 0 || end >= length) {
+            if (length < text.length()) {
+                position = length;
+                return;
+            }
+            throw new PatternSyntaxException("A comment is never closed.", "", lines.getLine(length));
+        }
+        position = end + 2;
+    }
+
+    private PatternSyntaxException unmatched() {
+        int end = start + Character.charCount(Character.codePointAt(text, start));
+        return new PatternSyntaxException("Unmatched symbol(s) found.", text.subSequence(start, end).toString(), lines.getLine(start));
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Lay out the frame of the main function: every variable the code uses is allocated once,
+ * at the top of the entry block, and set to 0 there.
+ * The stores do not allocate their variable, as an allocation in the body of a loop would take
+ * memory again on each iteration, and one in a branch would not dominate the uses of the variable
+ * after the join. The allocations of the entry block are also the ones llvm promotes to registers.
+ * The variables are allocated in the order of their names, so the frame does not depend on the order
+ * in which the instructions are lowered, nor on how the program is cut in pieces generated apart.
+ */
+public class FrameLayout implements Pass {
+
+    public String getName() {
+        return "frame-layout";
+    }
+
+    public boolean run(ControlFlowGraph cfg, AnalysisManager analyses) {
+        BitSet slots = new BitSet();
+        for (BasicBlock block : cfg.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                for (int i = 0; i < instruction.numOperands(); ++i) {
+                    if (instruction.getOperand(i).isVariable()) {
+                        slots.set(instruction.getOperand(i).getSlot());
+                    }
+                }
+            }
+        }
+        if (slots.isEmpty()) {
+            return false;
+        }
+        cfg.getEntry().getInstructions().addAll(0, frame(cfg.getSymbolTable(), slots));
+        return true;
+    }
+
+    /**
+     * The allocations of variables, each one followed by the store of 0 into it,
+     * in the order of the names of the variables.
+     * @param symbols: the variables, with their names
+     * @param slots: the slots of the variables to allocate
+     */
+    public static List<IrInstruction> frame(SymbolTable symbols, BitSet slots) {
+        List<Integer> sorted = new ArrayList<Integer>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            sorted.add(slot);
+        }
+        sorted.sort((a, b) -> symbols.getName(a).compareTo(symbols.getName(b)));
+        List<IrInstruction> frame = new ArrayList<IrInstruction>(2 * sorted.size());
+        for (int slot : sorted) {
+            frame.add(IrInstruction.alloca(slot));
+            frame.add(IrInstruction.store(Operand.constant(0), slot));
+        }
+        return frame;
+    }
+}
@@ -11,6 +11,8 @@ public class Grammar {
     private final int RULES_NUMBER = 31;
     private final String DELIMITOR = ";";
     private Rule[] rules = new Rule[RULES_NUMBER];
+    private int rulesCount = 0;
+    private Rule[] firstRules = new Rule[Variable.values().length]; // first rule of each variable
     private FortressTypeMatcher typeMatcher = new FortressTypeMatcher();
 
     public Grammar() {
@@ -60,25 +62,35 @@ public class Grammar {
                 rightHandSide[i-1] = new GrammarUnit(unit);
             }
         }
-        Rule rule = new Rule(leftHandSide, rightHandSide);
+        Rule rule = new Rule(rulesCount, leftHandSide, rightHandSide);
         addRule(rule);
     }
 
     private void addRule(Rule rule) {
         rules[rule.idx()] = rule;
+        ++rulesCount;
+        Variable var = rule.getLeftHandSide().getVariable();
+        if (firstRules[var.ordinal()] == null) {
+            firstRules[var.ordinal()] = rule;
+        }
     }
 
     public Rule getRule(int idx) {
         return rules[idx];
     }
 
+    /**
+     * The first rule of a variable.
+     */
     public Rule getRule(Variable var) {
-        for (int i = 0; i < RULES_NUMBER; ++i) {
-            if (rules[i].getLeftHandSide().getVariable() == var) {
-                return rules[i];
-            }
-        }
-        return null;
+        return firstRules[var.ordinal()];
+    }
+
+    /**
+     * Number of rules.
+     */
+    public int size() {
+        return rulesCount;
     }
 
     public String toString() {
@@ -0,0 +1,112 @@
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Lexer of an edited source, reusing the tokens of its previous version.
+ * The tokens that end before the edit, including the character the lexer looked at to end them,
+ * are kept. Lexing restarts right after the last of them: comments are never tokens, so the lexer
+ * is always back in its initial state there. It stops as soon as a new token starts after the edit
+ * where an old token started: the text that follows is the same, so the old tokens are taken back,
+ * moved by the change of length of the source.
+ * The result is the same as lexing the whole edited source. Name ids of the previous tokens are kept,
+ * new names are added to the same table.
+ */
+public class IncrementalLexer {
+
+    private int kept = 0;
+    private int reused = 0;
+
+    /**
+     * Lex a source after an edit.
+     * @param previous: the complete tokens of the source before the edit
+     * @param offset: offset of the first character replaced
+     * @param removed: number of characters replaced
+     * @param inserted: the characters put in their place
+     * @return the tokens of the edited source, which is their text
+     */
+    public TokenBuffer relex(TokenBuffer previous, int offset, int removed, CharSequence inserted) throws PatternSyntaxException {
+        SourceText text = previous.getText().replace(offset, removed, inserted);
+        int shift = inserted.length() - removed;
+        int editEnd = offset + inserted.length(); // end of the edit in the edited source
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, previous.getNames());
+        kept = keptTokens(previous, offset);
+        tokens.append(previous, 0, kept, 0, null);
+        int restart = (kept == 0) ? 0 : previous.getStart(kept - 1) + previous.getLength(kept - 1);
+        FastLexer lexer = new FastLexer(text, restart, text.length(), false);
+        int old = kept; // first old token that may start where the next new one does
+        while (true) {
+            int index = tokens.size();
+            LexicalUnit unit = lexer.addNextToken(tokens);
+            int start = tokens.getStart(index);
+            if (start >= editEnd) {
+                while (old < previous.size() && previous.getStart(old) < start - shift) {
+                    ++old;
+                }
+                if (old < previous.size() && previous.getStart(old) == start - shift) {
+                    tokens.truncate(index);
+                    tokens.append(previous, old, previous.size(), shift, null);
+                    reused = kept + previous.size() - old;
+                    return tokens;
+                }
+            }
+            if (unit == LexicalUnit.EOS) {
+                reused = kept;
+                return tokens;
+            }
+        }
+    }
+
+    /**
+     * Number of old tokens taken back by the last call to relex.
+     */
+    public int getReusedTokens() {
+        return reused;
+    }
+
+    /**
+     * Number of old tokens before the edit taken back by the last call to relex, at the same indexes.
+     * The other old tokens taken back are the last ones of the edited source.
+     */
+    public int getKeptTokens() {
+        return kept;
+    }
+
+    /*
+        Number of tokens, from the first one, that the lexer ended before reaching offset.
+    */
+    private static int keptTokens(TokenBuffer tokens, int offset) {
+        int low = 0;
+        int high = tokens.size() - 1; // the EOS token is never kept
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.getStart(middle) + tokens.getLength(middle) < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        while (low > 0 && lookedAtEnd(tokens, low - 1) > offset) {
+            --low;
+        }
+        return low;
+    }
+
+    /*
+        Offset after the last character the lexer looked at to end a token: the character after it,
+        or after the whole run of letters and digits for a word, whose kind depends on all of them.
+    */
+    private static int lookedAtEnd(TokenBuffer tokens, int idx) {
+        SourceText text = tokens.getText();
+        int end = tokens.getStart(idx) + tokens.getLength(idx);
+        if (Character.isLetterOrDigit(text.charAt(tokens.getStart(idx)))) {
+            while (end < text.length() && isWordCharacter(text.charAt(end))) {
+                ++end;
+            }
+        }
+        return end + 1;
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,524 @@
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiler of a program being edited, which parses and generates again only what an edit touches.
+ * The instructions are kept as a tree of statements, each with the range of tokens it was parsed from,
+ * which is its span in the source, and the pieces of intermediate representation lowered for it.
+ * After an edit, the source is lexed again by an IncrementalLexer, and the tokens it could not
+ * take back are looked for in the tree: the statements holding them are parsed again, in the innermost
+ * block holding all of them, and put in the place of the old ones. When the new tokens are not
+ * a sequence of instructions there, the statement holding the block is parsed again instead,
+ * up to the whole program.
+ * The intermediate representation of the other statements is taken back and printed again,
+ * which numbers its values after the code before it. A statement whose labels would be numbered
+ * differently, as the code before it has a different number of conditions and loops, is lowered again.
+ * The variables are allocated by the frame of the main function, laid out from the names in the tokens
+ * of the program, so the code of a statement does not depend on which statement stores a variable first.
+ * The result is the code of the whole edited program. A syntax error throws the error of Parser,
+ * and the next edit is then compared with the last program which parsed.
+ */
+public class IncrementalParser {
+
+    private static final int NONE = -1;
+
+    /*
+        An instruction, with the indexes of its tokens and the pieces of its code, each one a graph
+        printed on its own: the head, the code of the then statements, the middle, the code of the else statements
+        and the tail. The middle and the tail of an instruction without branches are null.
+    */
+    private static class Statement {
+        Instruction instruction;
+        int from; // its first token
+        int to; // after its comma
+        int thenToken = NONE; // THEN or DO
+        int elseToken = NONE; // ELSE, or END without else
+        int endToken = NONE; // END
+        final List<Statement> thens = new ArrayList<Statement>();
+        final List<Statement> elses = new ArrayList<Statement>();
+        ControlFlowGraph head = null; // null until the instruction is lowered
+        ControlFlowGraph middle = null;
+        ControlFlowGraph tail = null;
+        int firstLabel; // the label id before the head
+        int labels; // number of label ids of the head
+
+        Statement(Instruction instruction, int from) {
+            this.instruction = instruction;
+            this.from = from;
+        }
+    }
+
+    /*
+        A block of statements, with the range of the statements holding changed tokens,
+        empty when the change is between two statements.
+    */
+    private static class Block {
+        final List<Statement> statements;
+        final int first;
+        final int last;
+
+        Block(List<Statement> statements, int from, int to) {
+            this.statements = statements;
+            this.first = firstEndingAfter(statements, from);
+            this.last = firstStartingFrom(statements, to) - 1;
+        }
+    }
+
+    /*
+        Instructions being matched with their tokens, with the statements made for them,
+        the statement they are the branch of and the index of the next one.
+    */
+    private static class Frame {
+        final List<Instruction> instructions;
+        final List<Statement> statements;
+        final Statement owner;
+        int next = 0;
+
+        Frame(List<Instruction> instructions, List<Statement> statements, Statement owner) {
+            this.instructions = instructions;
+            this.statements = statements;
+            this.owner = owner;
+        }
+    }
+
+    /*
+        A statement whose code is being printed, with the index of its next child.
+    */
+    private static class Step {
+        final Statement statement;
+        int next = 0;
+
+        Step(Statement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private final IncrementalLexer lexer = new IncrementalLexer();
+    private final String header;
+    private final String footer;
+    private TokenBuffer tokens; // the source as last edited
+    private TokenBuffer parsed; // the tokens the statements come from
+    private int same = 0; // number of tokens at the start of both buffers which did not change
+    private int sameEnd = 0; // number of tokens at the end of both buffers which did not change
+    private List<Statement> program = new ArrayList<Statement>();
+    private int programEnd = NONE; // the END of the program
+    private int statementCount = 0;
+    private int reparsedStatements = 0;
+    private int reusedFragments = 0;
+    private int generatedFragments = 0;
+    private long latency = 0;
+
+    /**
+     * @param tokens: the lexed input, which is edited through this compiler
+     */
+    public IncrementalParser(TokenBuffer tokens) {
+        LlvmGenerator generator = new LlvmGenerator(new CompilationContext(), System.out);
+        this.header = generator.header();
+        this.footer = generator.footer();
+        this.tokens = tokens;
+        this.parsed = tokens;
+    }
+
+    /**
+     * Parse the whole input and generate its code.
+     * @return the code, as Parser.parse prints it
+     */
+    public String compile() throws IOException {
+        long start = System.nanoTime();
+        reusedFragments = 0;
+        generatedFragments = 0;
+        parseAll();
+        String code = generate();
+        latency = System.nanoTime() - start;
+        return code;
+    }
+
+    /**
+     * Edit the source and generate the code of the edited program, reusing what the edit does not touch.
+     * @param offset: offset of the first character replaced
+     * @param removed: number of characters replaced
+     * @param inserted: the characters put in their place
+     * @return the code of the edited program, as Parser.parse prints it
+     */
+    public String edit(int offset, int removed, CharSequence inserted) throws IOException {
+        long start = System.nanoTime();
+        TokenBuffer edited = lexer.relex(tokens, offset, removed, inserted);
+        same = Math.min(same, lexer.getKeptTokens());
+        sameEnd = Math.min(sameEnd, lexer.getReusedTokens() - lexer.getKeptTokens());
+        tokens = edited;
+        reparsedStatements = 0;
+        reusedFragments = 0;
+        generatedFragments = 0;
+        update();
+        String code = generate();
+        latency = System.nanoTime() - start;
+        return code;
+    }
+
+    /**
+     * The tokens of the source as last edited.
+     */
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Number of statements, at any depth, kept from the previous tree by the last compilation.
+     */
+    public int getReusedStatements() {
+        return statementCount - reparsedStatements;
+    }
+
+    /**
+     * Number of statements, at any depth, parsed by the last compilation.
+     */
+    public int getReparsedStatements() {
+        return reparsedStatements;
+    }
+
+    /**
+     * Number of statements whose intermediate representation was taken back by the last compilation.
+     */
+    public int getReusedFragments() {
+        return reusedFragments;
+    }
+
+    /**
+     * Number of statements lowered by the last compilation.
+     */
+    public int getGeneratedFragments() {
+        return generatedFragments;
+    }
+
+    /**
+     * Time of the last compilation in nanoseconds, from the edit to the code.
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /* ------------------ Parsing ------------------ */
+
+    private void parseAll() throws IOException {
+        tokens.rewind();
+        Parser parser = new Parser(tokens);
+        List<Instruction> instructions = parser.createAst().getRoot().getThenList();
+        program = statements(instructions, 2); // after BEGIN [ProgName]
+        programEnd = program.isEmpty() ? 2 : program.get(program.size() - 1).to;
+        statementCount = count(program);
+        reparsedStatements = statementCount;
+        setParsed();
+    }
+
+    /*
+        The statements now come from the last tokens.
+    */
+    private void setParsed() {
+        parsed = tokens;
+        same = tokens.size();
+        sameEnd = tokens.size();
+    }
+
+    /*
+        Parse again the statements holding the tokens which changed since the last parse, in the innermost
+        block holding all of them, or the statement holding that block when they do not parse there.
+    */
+    private void update() throws IOException {
+        int from = same; // first old token which changed
+        int to = parsed.size() - sameEnd; // after the last old token which changed
+        int shift = tokens.size() - parsed.size();
+        if (from == to && shift == 0) { // only blanks or comments changed
+            setParsed();
+            return;
+        }
+        if (from < 2 || to > programEnd) { // BEGIN, the name of the program or its END changed
+            parseAll();
+            return;
+        }
+        ArrayDeque<Block> blocks = new ArrayDeque<Block>(); // the innermost one first
+        Block block = new Block(program, from, to);
+        blocks.push(block);
+        while (block.first == block.last) {
+            Statement statement = block.statements.get(block.first);
+            if (statement.thenToken != NONE && statement.thenToken < from && to <= statement.elseToken) {
+                block = new Block(statement.thens, from, to);
+            } else if (statement.elseToken < statement.endToken && statement.elseToken < from && to <= statement.endToken) {
+                block = new Block(statement.elses, from, to);
+            } else {
+                break;
+            }
+            blocks.push(block);
+        }
+        for (Block b : blocks) {
+            int start = from;
+            int end = to;
+            if (b.first <= b.last) {
+                start = Math.min(start, b.statements.get(b.first).from);
+                end = Math.max(end, b.statements.get(b.last).to);
+            }
+            List<Instruction> instructions = parseRange(start, end + shift);
+            if (instructions != null) {
+                splice(b, start, end, shift, instructions);
+                setParsed();
+                return;
+            }
+        }
+        parseAll();
+    }
+
+    private List<Instruction> parseRange(int from, int to) {
+        try {
+            return ParallelParser.parseRange(tokens, from, to);
+        } catch (IOException | RuntimeException | Error e) {
+            return null; // parsed again in the block around
+        }
+    }
+
+    /*
+        Put the statements of the new tokens from start in the place of the touched statements of a block,
+        which were the old tokens from start to end.
+    */
+    private void splice(Block block, int start, int end, int shift, List<Instruction> instructions) {
+        List<Statement> fresh = statements(instructions, start);
+        List<Statement> old = block.statements.subList(block.first, block.last + 1);
+        int removed = count(old);
+        old.clear();
+        move(end, shift);
+        block.statements.addAll(block.first, fresh);
+        reparsedStatements = count(fresh);
+        statementCount += reparsedStatements - removed;
+    }
+
+    /*
+        Move the indexes of the old tokens from end by the change of the number of tokens.
+        A statement ending at end keeps its end, as it comes before the new tokens.
+    */
+    private void move(int end, int shift) {
+        if (programEnd >= end) {
+            programEnd += shift;
+        }
+        ArrayDeque<Statement> pending = new ArrayDeque<Statement>(program);
+        while (!pending.isEmpty()) {
+            Statement statement = pending.pop();
+            if (statement.to <= end) {
+                continue; // nor its statements
+            }
+            statement.to += shift;
+            if (statement.from >= end) {
+                statement.from += shift;
+            }
+            if (statement.thenToken >= end) {
+                statement.thenToken += shift;
+            }
+            if (statement.elseToken >= end) {
+                statement.elseToken += shift;
+            }
+            if (statement.endToken >= end) {
+                statement.endToken += shift;
+            }
+            pending.addAll(statement.thens);
+            pending.addAll(statement.elses);
+        }
+    }
+
+    /*
+        The statements of parsed instructions, whose tokens start at from.
+        The tokens are followed with an explicit stack, as blocks may be nested deep.
+    */
+    private List<Statement> statements(List<Instruction> instructions, int from) {
+        List<Statement> block = new ArrayList<Statement>(instructions.size());
+        ArrayDeque<Frame> stack = new ArrayDeque<Frame>();
+        stack.push(new Frame(instructions, block, null));
+        int token = from;
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            Statement owner = frame.owner;
+            if (frame.next == frame.instructions.size()) {
+                stack.pop();
+                if (owner == null) {
+                    continue;
+                }
+                if (owner.elseToken == NONE) { // the end of the then statements
+                    owner.elseToken = token;
+                    if (tokens.getType(token) == LexicalUnit.ELSE) {
+                        stack.push(new Frame(owner.instruction.getElseList(), owner.elses, owner));
+                        ++token;
+                        continue;
+                    }
+                }
+                owner.endToken = token;
+                owner.to = token + 2; // END ,
+                token += 2;
+                continue;
+            }
+            Instruction instruction = frame.instructions.get(frame.next++);
+            Statement statement = new Statement(instruction, token);
+            frame.statements.add(statement);
+            LexicalUnit type = tokens.getType(token);
+            if (type == LexicalUnit.IF || type == LexicalUnit.WHILE) {
+                LexicalUnit open = (type == LexicalUnit.IF) ? LexicalUnit.THEN : LexicalUnit.DO;
+                while (tokens.getType(token) != open) {
+                    ++token;
+                }
+                statement.thenToken = token++;
+                stack.push(new Frame(instruction.getThenList(), statement.thens, statement));
+            } else {
+                while (tokens.getType(token) != LexicalUnit.COMMA) {
+                    ++token;
+                }
+                statement.to = ++token;
+            }
+        }
+        return block;
+    }
+
+    /*
+        Number of statements of a block, at any depth.
+    */
+    private static int count(List<Statement> statements) {
+        int count = 0;
+        ArrayDeque<Statement> pending = new ArrayDeque<Statement>(statements);
+        while (!pending.isEmpty()) {
+            Statement statement = pending.pop();
+            ++count;
+            pending.addAll(statement.thens);
+            pending.addAll(statement.elses);
+        }
+        return count;
+    }
+
+    /*
+        Index of the first statement ending after a token, or the number of statements.
+    */
+    private static int firstEndingAfter(List<Statement> statements, int token) {
+        int low = 0;
+        int high = statements.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (statements.get(middle).to > token) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /*
+        Index of the first statement starting at a token or after it, or the number of statements.
+    */
+    private static int firstStartingFrom(List<Statement> statements, int token) {
+        int low = 0;
+        int high = statements.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (statements.get(middle).from >= token) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /* ------------------ Code Generation ------------------ */
+
+    /*
+        The code of the program, in the context of a new compilation.
+    */
+    private String generate() {
+        StringBuilder code = new StringBuilder(header);
+        generateFrame(code);
+        CompilationContext context = new CompilationContext();
+        LlvmGenerator generator = new LlvmGenerator(context, null);
+        for (Statement statement : program) {
+            generate(statement, code, context, generator);
+        }
+        code.append(footer);
+        return code.toString();
+    }
+
+    /*
+        Append the allocations of the variables named in the tokens of the program, as LlvmGenerator.generateFrame.
+    */
+    private void generateFrame(StringBuilder code) {
+        CompilationContext context = new CompilationContext();
+        SymbolTable symbols = context.getSymbolTable();
+        NameTable names = tokens.getNames();
+        for (int token = 2; token < programEnd; ++token) {
+            if (tokens.getType(token) == LexicalUnit.VARNAME && symbols.find(tokens.getValue(token)) == SymbolTable.NONE) {
+                symbols.add(tokens.getValue(token), names.getName(tokens.getValue(token)));
+            }
+        }
+        new LlvmGenerator(context, null).generateFrame(code);
+    }
+
+    /*
+        The code of a statement with the code of its branches, in the order IrBuilder lowers them.
+    */
+    private void generate(Statement statement, StringBuilder code, CompilationContext context, LlvmGenerator generator) {
+        ArrayDeque<Step> stack = new ArrayDeque<Step>();
+        generateHead(statement, code, context, generator);
+        stack.push(new Step(statement));
+        while (!stack.isEmpty()) {
+            Step step = stack.peek();
+            Statement n = step.statement;
+            int thenSize = n.thens.size();
+            int elseSize = n.elses.size();
+            Statement child = null;
+            if (step.next < thenSize) {
+                child = n.thens.get(step.next);
+            } else if (step.next == thenSize) {
+                if (n.middle != null) {
+                    generator.print(n.middle, code);
+                }
+            } else if (step.next <= thenSize + elseSize) {
+                child = n.elses.get(step.next - thenSize - 1);
+            } else {
+                if (n.tail != null) {
+                    generator.print(n.tail, code);
+                }
+                stack.pop();
+                continue;
+            }
+            ++step.next;
+            if (child != null) {
+                generateHead(child, code, context, generator);
+                stack.push(new Step(child));
+            }
+        }
+    }
+
+    /*
+        Append the head of a statement, taken back or lowered with all its pieces.
+        It is lowered again when its labels would not follow the ones of the code before.
+    */
+    private void generateHead(Statement statement, StringBuilder code, CompilationContext context, LlvmGenerator generator) {
+        if (statement.head == null || statement.firstLabel != context.getLabelCount()) {
+            int firstLabel = context.getLabelCount();
+            Instruction instruction = statement.instruction;
+            ControlFlowGraph head = new ControlFlowGraph(context.getSymbolTable());
+            instruction.lowerHead(new IrBuilder(head, context));
+            ControlFlowGraph middle = null;
+            ControlFlowGraph tail = null;
+            if (statement.thenToken != NONE) {
+                middle = new ControlFlowGraph(context.getSymbolTable());
+                instruction.lowerMiddle(new IrBuilder(middle, context));
+                tail = new ControlFlowGraph(context.getSymbolTable());
+                instruction.lowerTail(new IrBuilder(tail, context));
+            }
+            statement.head = head;
+            statement.middle = middle;
+            statement.tail = tail;
+            statement.firstLabel = firstLabel;
+            statement.labels = context.getLabelCount() - firstLabel;
+            ++generatedFragments;
+        } else {
+            context.reserve(statement.labels);
+            ++reusedFragments;
+        }
+        generator.print(statement.head, code);
+    }
+}
@@ -9,10 +9,6 @@ public class Instruction {
     protected ParseTree tree;
     protected List<Instruction> children; // Its children, which are trees themselves
     protected List<Instruction> elsechildren;
-    // common to all Instruction instances
-    static protected ExprArithHandler exprArithHandler = new ExprArithHandler();
-    // symbol table - to not define a variable twice
-    static protected List<String> symbolTable = new ArrayList<String>();
 
     /**
      * Constructor.
@@ -24,6 +20,28 @@ public class Instruction {
         this.elsechildren = new ArrayList<Instruction>();
     }
 
+    /**
+     * The instruction of a kind, for its tree.
+     * @param kind: ASSIGN, IF, WHILE, PRINT or READ, or any other variable for an instruction without code
+     * @param tree: the tree to be represented by the instruction
+     */
+    public static Instruction of(Variable kind, ParseTree tree) {
+        switch (kind) {
+            case ASSIGN:
+                return new Assign(tree);
+            case IF:
+                return new If(tree);
+            case WHILE:
+                return new While(tree);
+            case PRINT:
+                return new Print(tree);
+            case READ:
+                return new Read(tree);
+            default:
+                return new Instruction(tree);
+        }
+    }
+
     public Instruction getThen(int idx) {
         return children.get(idx);
     }
@@ -46,32 +64,26 @@ public class Instruction {
     }
 
     /**
-     * Generate the code for this instruction.
+     * Add the instructions of the intermediate representation coming before the then branch.
+     * IrBuilder walks the branches: the head, the then branch, the middle, the else branch, then the tail.
      */
-    public String generateCode() {
-        return "";
-    }
+    protected void lowerHead(IrBuilder builder) {}
 
     /**
-     * Simplify the tree for this instruction.
+     * Add the instructions coming between the then branch and the else branch.
      */
-    public void simplify() {}
+    protected void lowerMiddle(IrBuilder builder) {}
 
+    /**
+     * Add the instructions coming after the else branch.
+     */
+    protected void lowerTail(IrBuilder builder) {}
 
     /**
-     * Assign the value of an expression to a variable.
-     * @param var: the variable to assign
-     * @param expr: the expression to evaluate
+     * Simplify the tree for this instruction.
+     * @param context: the state of the compilation, whose expression handler simplifies the expressions
      */
-    protected String assign(String varname, ParseTree exprTree) {
-        String code = exprArithHandler.getExprArithCode(exprTree) + "\n";
-        if (!symbolTable.contains(varname)) {
-            code += "%" + varname + " = alloca i32\n";
-            symbolTable.add(varname);
-        }
-        code += "store i32 %" + Counter.n() + ", i32* %" + varname;
-        return code;
-    }
+    public void simplify(CompilationContext context) {}
 
 }
 
@@ -80,10 +92,7 @@ public class Instruction {
  */
 class Condition extends Instruction {
 
-    protected static int labelId = 0;
-    protected String comparator = "";
-    protected int lastNLeft = 0;
-    protected int lastNRight = 0;
+    protected int id = 0; // id of the labels of this instruction
 
     /**
      * Constructor.
@@ -93,7 +102,8 @@ class Condition extends Instruction {
         super(tree);
     }
 
-    public void simplify() {
+    public void simplify(CompilationContext context) {
+        ExprArithHandler exprArithHandler = context.getExprArithHandler();
         ParseTree cond = tree.get(2); // condition
         tree = tree.get(2).get(1).get(0).get(0); // comp symbol
         ParseTree leftExprArith = exprArithHandler.simplifyExprArith(cond.get(0));
@@ -102,26 +112,15 @@ class Condition extends Instruction {
         tree.add(rightExprArith);
     }
 
-    public String generateCode() {
-        String code = new String();
-        code += exprArithHandler.getExprArithCode(tree.get(0)) + "\n";
-        this.lastNLeft = Counter.n();
-        code += exprArithHandler.getExprArithCode(tree.get(1)) + "\n";
-        this.lastNRight = Counter.n();
-        String operator = tree.getString();
-        switch (operator) {
-            case "=":
-            this.comparator = "eq";
-            break;
-            case "<":
-            this.comparator = "slt";
-            break;
-            case ">":
-            this.comparator = "sgt";
-            break;
-        }
-        return code;
-
+    /**
+     * Lower both sides of the condition and their comparison, named after the labels of the instruction.
+     * @return the operand holding the comparison
+     */
+    protected Operand lowerCondition(IrBuilder builder) {
+        Operand left = builder.lower(tree.get(0));
+        Operand right = builder.lower(tree.get(1));
+        IrInstruction.Predicate predicate = IrInstruction.Predicate.of(tree.getLabel().getSymbol().getType());
+        return builder.compare(predicate, "cond_" + id, left, right);
     }
 
 }
@@ -131,60 +130,66 @@ class SimpleInstruction extends Instruction {
         super(tree);
     }
 
-    public void simplify() {
+    public void simplify(CompilationContext context) {
         tree = tree.get(2).get(0); // get the varname
     }
 }
 
 class If extends Condition {
 
+    private BasicBlock elseBlock = null;
+    private BasicBlock endBlock = null;
+
     public If(ParseTree tree) {
         super(tree);
     }
 
-    public String generateCode() {
-        String code = new String();
-        int id = labelId++;
-        code += super.generateCode();
-        code += "%cond_" + id + " = icmp "+ this.comparator + " i32 %" + this.lastNLeft + ", %" + this.lastNRight + "\n";
-        code += "br i1 %cond_" + id + ", label %then_" + id + ", label %else_" + id + "\n";
-        code += "then_" + id + ":\n";
-        for (Instruction child : children) {
-            code += child.generateCode() + "\n";
-        }
-        code += "br label %end_" + id + "\n";
-        code += "else_" + id + ":\n";
-        for (Instruction child : elsechildren) {
-            code += child.generateCode() + "\n";
-        }
-        code += "br label %end_" + id + "\n";
-        code += "end_" + id + ":";
-        return code;
+    protected void lowerHead(IrBuilder builder) {
+        id = builder.getContext().newLabel();
+        Operand condition = lowerCondition(builder);
+        BasicBlock thenBlock = new BasicBlock("then_" + id);
+        elseBlock = new BasicBlock("else_" + id);
+        endBlock = new BasicBlock("end_" + id);
+        builder.branch(condition, thenBlock, elseBlock);
+        builder.startBlock(thenBlock);
+    }
+
+    protected void lowerMiddle(IrBuilder builder) {
+        builder.jump(endBlock);
+        builder.startBlock(elseBlock);
+    }
+
+    protected void lowerTail(IrBuilder builder) {
+        builder.jump(endBlock);
+        builder.startBlock(endBlock);
     }
 
 }
 
 class While extends Condition {
 
+    private BasicBlock conditionBlock = null;
+    private BasicBlock endBlock = null;
+
     public While(ParseTree tree) {
         super(tree);
     }
 
-    public String generateCode() {
-        String code = new String();
-        int id = labelId++;
-        code += "br label %eval_cond_" + id + "\n";
-        code += "eval_cond_" + id + ":\n";
-        code += super.generateCode();
-        code += "%cond_" + id + " = icmp "+ this.comparator + " i32 %" + this.lastNLeft + ", %" + this.lastNRight + "\n";
-        code += "br i1 %cond_" + id + ", label %do_" + id + ", label %end_" + id + "\n";
-        code += "do_" + id + ":\n";
-        for (Instruction child : children) {
-            code += child.generateCode() + "\n";
-        }
-        code += "br label %eval_cond_" + id + "\n";
-        code += "end_" + id + ":";
-        return code;
+    protected void lowerHead(IrBuilder builder) {
+        id = builder.getContext().newLabel();
+        conditionBlock = new BasicBlock("eval_cond_" + id);
+        BasicBlock body = new BasicBlock("do_" + id);
+        endBlock = new BasicBlock("end_" + id);
+        builder.jump(conditionBlock);
+        builder.startBlock(conditionBlock);
+        Operand condition = lowerCondition(builder);
+        builder.branch(condition, body, endBlock);
+        builder.startBlock(body);
+    }
+
+    protected void lowerTail(IrBuilder builder) {
+        builder.jump(conditionBlock);
+        builder.startBlock(endBlock);
     }
 }
 
@@ -194,11 +199,8 @@ class Print extends SimpleInstruction {
         super(tree);
     }
 
-    public String generateCode() {
-        String varname = tree.getString();
-        String code = "%"+Counter.inc()+" = load i32, i32* %" + varname + "\n";
-        code += "call void @println(i32 %" + Counter.n() + ")\n";
-        return code;
+    protected void lowerHead(IrBuilder builder) {
+        builder.print(builder.load(tree));
     }
 
 }
@@ -209,15 +211,8 @@ class Read extends SimpleInstruction {
         super(tree);
     }
 
-    public String generateCode() {
-        String varname = tree.getString();
-        String code = "%"+Counter.inc()+" = call i32 @readInt()\n";
-        if (!symbolTable.contains(varname)) {
-            code += "%" + varname + " = alloca i32\n";
-            symbolTable.add(varname);
-        }
-        code += "store i32 %" + Counter.n() + ", i32* %" + varname;
-        return code;
+    protected void lowerHead(IrBuilder builder) {
+        builder.store(builder.read(), tree);
     }
 }
 
@@ -227,18 +222,16 @@ class Assign extends Instruction {
         super(tree);
     }
 
-    public void simplify() {
+    public void simplify(CompilationContext context) {
         ParseTree name = tree.get(0).get(0);
-        ParseTree expr = exprArithHandler.simplifyExprArith(tree.get(2));
+        ParseTree expr = context.getExprArithHandler().simplifyExprArith(tree.get(2));
         tree = tree.get(1).get(0); // := symbol
         tree.add(name);
         tree.add(expr);
     }
 
-    public String generateCode() {
-        String varname = tree.get(0).getString();
-        ParseTree expr = tree.get(1);
-        return assign(varname, expr);
+    protected void lowerHead(IrBuilder builder) {
+        builder.store(builder.lower(tree.get(1)), tree.get(0));
     }
 
 }
@@ -0,0 +1,200 @@
+import java.util.ArrayDeque;
+
+/**
+ * Lower instructions of the AST to the intermediate representation.
+ * Instructions are added at the end of the current block of a control flow graph, and the
+ * blocks of conditions and loops are laid out in the order of the code, so the graph of an instruction
+ * is printed as it is. Labels and variables follow the state of the compilation.
+ */
+public class IrBuilder {
+
+    private final ControlFlowGraph cfg;
+    private final CompilationContext context;
+    private BasicBlock current;
+
+    /**
+     * A builder adding instructions at the end of the entry block of a graph.
+     * @param cfg: the graph the instructions are added to
+     * @param context: the state of the compilation, which gives the labels and the slots of the variables
+     */
+    public IrBuilder(ControlFlowGraph cfg, CompilationContext context) {
+        this.cfg = cfg;
+        this.context = context;
+        this.current = cfg.getEntry();
+    }
+
+    public ControlFlowGraph getGraph() {
+        return cfg;
+    }
+
+    public CompilationContext getContext() {
+        return context;
+    }
+
+    /*
+        An instruction being lowered, with the step it is at: the index of the next then child,
+        then the middle, then the else children, then the tail.
+    */
+    private static class Step {
+        final Instruction instruction;
+        int next = 0;
+
+        Step(Instruction instruction) {
+            this.instruction = instruction;
+        }
+    }
+
+    /**
+     * Lower an instruction with its branches.
+     * Branches are walked with an explicit stack, so nesting is not limited by the thread stack.
+     * @param instruction: the instruction, simplified
+     */
+    public void lower(Instruction instruction) {
+        ArrayDeque<Step> stack = new ArrayDeque<Step>();
+        instruction.lowerHead(this);
+        stack.push(new Step(instruction));
+        while (!stack.isEmpty()) {
+            Step step = stack.peek();
+            Instruction n = step.instruction;
+            int thenSize = n.getThenList().size();
+            int elseSize = n.getElseList().size();
+            Instruction child = null;
+            if (step.next < thenSize) {
+                child = n.getThen(step.next);
+            } else if (step.next == thenSize) {
+                n.lowerMiddle(this);
+            } else if (step.next <= thenSize + elseSize) {
+                child = n.getElse(step.next - thenSize - 1);
+            } else {
+                n.lowerTail(this);
+                stack.pop();
+                continue;
+            }
+            ++step.next;
+            if (child != null) {
+                child.lowerHead(this);
+                stack.push(new Step(child));
+            }
+        }
+    }
+
+    /**
+     * Lower an arithmetic expression.
+     * @param exprTree: the simplified tree of the expression
+     * @return the operand holding its value
+     */
+    public Operand lower(ParseTree exprTree) {
+        Expression expression = context.getExprArithHandler().toExpression(exprTree);
+        for (Expression node : Expression.postOrder(expression)) {
+            node.lower(this);
+        }
+        return expression.getResult();
+    }
+
+    /**
+     * Add an instruction at the end of the current block.
+     */
+    public void add(IrInstruction instruction) {
+        current.add(instruction);
+    }
+
+    /**
+     * Lay out a block after the others and add the next instructions to it.
+     */
+    public void startBlock(BasicBlock block) {
+        cfg.add(block);
+        current = block;
+    }
+
+    public BasicBlock getCurrentBlock() {
+        return current;
+    }
+
+    /**
+     * The register holding the value of a variable, whose load is recorded.
+     * @param slot: the slot of the variable
+     */
+    public Operand load(int slot) {
+        context.getSymbolTable().read(slot);
+        int result = cfg.newRegister();
+        add(IrInstruction.load(result, slot));
+        return Operand.register(result);
+    }
+
+    /**
+     * The register holding the value of a variable, whose load is recorded.
+     * @param variable: the leaf of the name of the variable
+     */
+    public Operand load(ParseTree variable) {
+        return load(slot(variable));
+    }
+
+    /**
+     * Store a value into a variable, whose store is recorded.
+     * The variable is allocated by the frame of the main function.
+     * @param value: the operand holding the value
+     * @param variable: the leaf of the name of the variable
+     */
+    public void store(Operand value, ParseTree variable) {
+        int slot = slot(variable);
+        context.write(variable.getLabel().getSymbol());
+        add(IrInstruction.store(value, slot));
+    }
+
+    /**
+     * The register holding the result of an arithmetic operation.
+     */
+    public Operand binary(IrInstruction.Opcode opcode, Operand left, Operand right) {
+        int result = cfg.newRegister();
+        add(IrInstruction.binary(opcode, result, left, right));
+        return Operand.register(result);
+    }
+
+    /**
+     * The register holding the result of a comparison.
+     * @param name: the name of the result in the code
+     */
+    public Operand compare(IrInstruction.Predicate predicate, String name, Operand left, Operand right) {
+        int result = cfg.newRegister();
+        add(IrInstruction.icmp(predicate, result, name, left, right));
+        return Operand.register(result);
+    }
+
+    /**
+     * The register holding an integer read on the input.
+     */
+    public Operand read() {
+        int result = cfg.newRegister();
+        add(IrInstruction.read(result));
+        return Operand.register(result);
+    }
+
+    public void print(Operand value) {
+        add(IrInstruction.print(value));
+    }
+
+    /**
+     * End the current block with a branch to another one.
+     */
+    public void jump(BasicBlock target) {
+        add(IrInstruction.br(target));
+    }
+
+    /**
+     * End the current block with a branch to one block or another.
+     */
+    public void branch(Operand condition, BasicBlock then, BasicBlock otherwise) {
+        add(IrInstruction.condbr(condition, then, otherwise));
+    }
+
+    /**
+     * End the current block with the end of the program.
+     */
+    public void ret() {
+        add(IrInstruction.ret());
+    }
+
+    private int slot(ParseTree variable) {
+        return context.getSymbolTable().add(variable.getNameId(), variable.getString());
+    }
+}
@@ -0,0 +1,290 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A three-address instruction of the intermediate representation.
+ * An instruction has an opcode, at most one result, which is a virtual register defined
+ * by this instruction only, its operands, and for the branches the blocks they go to.
+ * A phi has an operand for each predecessor of its block, the block the operand comes from
+ * being the target of the same index. The phis of a block come before its other instructions.
+ * The result of a comparison is named after the labels of its condition or loop, as %cond_3.
+ */
+public class IrInstruction {
+
+    /**
+     * No register: the result of an instruction which gives no value.
+     */
+    public static final int NONE = -1;
+
+    public enum Opcode {
+        LOAD,    // result = the value of a variable
+        STORE,   // the variable of the second operand = the first operand
+        ALLOCA,  // allocate the memory of a variable
+        ADD,
+        SUB,
+        MUL,
+        SDIV,
+        ICMP,    // result = the comparison of the operands
+        READ,    // result = an integer read on the input
+        PRINT,   // print the operand
+        BR,      // go to the target
+        CONDBR,  // go to the first target if the operand is true, else to the second one
+        RET,     // end of the program
+        PHI      // result = the operand of the target the block was entered from
+    }
+
+    /**
+     * The comparisons of a condition, with their llvm name.
+     */
+    public enum Predicate {
+        EQ("eq"),
+        SLT("slt"),
+        SGT("sgt");
+
+        private final String name;
+
+        Predicate(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The comparison of a comparison token, null for other tokens.
+         */
+        public static Predicate of(LexicalUnit type) {
+            switch (type) {
+                case EQUAL:
+                    return EQ;
+                case SMALLER:
+                    return SLT;
+                case GREATER:
+                    return SGT;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final Operand[] NO_OPERANDS = new Operand[0];
+    private static final BasicBlock[] NO_TARGETS = new BasicBlock[0];
+
+    private final Opcode opcode;
+    private final int result;
+    private Operand[] operands;
+    private Predicate predicate = null;
+    private String name = null; // name of the result, null for a numbered register
+    private BasicBlock[] targets;
+
+    private IrInstruction(Opcode opcode, int result, Operand[] operands, BasicBlock[] targets) {
+        this.opcode = opcode;
+        this.result = result;
+        this.operands = operands;
+        this.targets = targets;
+    }
+
+    public static IrInstruction load(int result, int slot) {
+        return new IrInstruction(Opcode.LOAD, result, new Operand[] {Operand.variable(slot)}, NO_TARGETS);
+    }
+
+    public static IrInstruction store(Operand value, int slot) {
+        return new IrInstruction(Opcode.STORE, NONE, new Operand[] {value, Operand.variable(slot)}, NO_TARGETS);
+    }
+
+    public static IrInstruction alloca(int slot) {
+        return new IrInstruction(Opcode.ALLOCA, NONE, new Operand[] {Operand.variable(slot)}, NO_TARGETS);
+    }
+
+    /**
+     * An arithmetic instruction: ADD, SUB, MUL or SDIV.
+     */
+    public static IrInstruction binary(Opcode opcode, int result, Operand left, Operand right) {
+        return new IrInstruction(opcode, result, new Operand[] {left, right}, NO_TARGETS);
+    }
+
+    /**
+     * A comparison, whose result is named.
+     */
+    public static IrInstruction icmp(Predicate predicate, int result, String name, Operand left, Operand right) {
+        IrInstruction instruction = new IrInstruction(Opcode.ICMP, result, new Operand[] {left, right}, NO_TARGETS);
+        instruction.predicate = predicate;
+        instruction.name = name;
+        return instruction;
+    }
+
+    public static IrInstruction read(int result) {
+        return new IrInstruction(Opcode.READ, result, NO_OPERANDS, NO_TARGETS);
+    }
+
+    public static IrInstruction print(Operand value) {
+        return new IrInstruction(Opcode.PRINT, NONE, new Operand[] {value}, NO_TARGETS);
+    }
+
+    public static IrInstruction br(BasicBlock target) {
+        return new IrInstruction(Opcode.BR, NONE, NO_OPERANDS, new BasicBlock[] {target});
+    }
+
+    public static IrInstruction condbr(Operand condition, BasicBlock then, BasicBlock otherwise) {
+        return new IrInstruction(Opcode.CONDBR, NONE, new Operand[] {condition}, new BasicBlock[] {then, otherwise});
+    }
+
+    public static IrInstruction ret() {
+        return new IrInstruction(Opcode.RET, NONE, NO_OPERANDS, NO_TARGETS);
+    }
+
+    /**
+     * A phi whose operands are not known yet, one for each predecessor of its block.
+     * @param predecessors: the predecessors of the block
+     */
+    public static IrInstruction phi(int result, List<BasicBlock> predecessors) {
+        return new IrInstruction(Opcode.PHI, result, new Operand[predecessors.size()],
+                predecessors.toArray(new BasicBlock[predecessors.size()]));
+    }
+
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+    /**
+     * The register defined by the instruction, NONE if it gives no value.
+     */
+    public int getResult() {
+        return result;
+    }
+
+    public boolean hasResult() {
+        return result != NONE;
+    }
+
+    /**
+     * The name of the result, null if it is numbered.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public Predicate getPredicate() {
+        return predicate;
+    }
+
+    public int numOperands() {
+        return operands.length;
+    }
+
+    public Operand getOperand(int idx) {
+        return operands[idx];
+    }
+
+    public void setOperand(int idx, Operand operand) {
+        operands[idx] = operand;
+    }
+
+    public int numTargets() {
+        return targets.length;
+    }
+
+    public BasicBlock getTarget(int idx) {
+        return targets[idx];
+    }
+
+    public void setTarget(int idx, BasicBlock target) {
+        targets[idx] = target;
+    }
+
+    /**
+     * Set the operand of a phi coming from a predecessor of its block.
+     */
+    public void setIncoming(BasicBlock predecessor, Operand value) {
+        for (int i = 0; i < targets.length; ++i) {
+            if (targets[i] == predecessor) {
+                operands[i] = value;
+            }
+        }
+    }
+
+    /**
+     * Keep the operands of a phi coming from the blocks which are still predecessors of its block.
+     * @return whether operands were removed
+     */
+    public boolean keepIncoming(List<BasicBlock> predecessors) {
+        int kept = 0;
+        for (int i = 0; i < targets.length; ++i) {
+            if (predecessors.contains(targets[i])) {
+                operands[kept] = operands[i];
+                targets[kept] = targets[i];
+                ++kept;
+            }
+        }
+        if (kept == targets.length) {
+            return false;
+        }
+        operands = Arrays.copyOf(operands, kept);
+        targets = Arrays.copyOf(targets, kept);
+        return true;
+    }
+
+    /**
+     * Whether the instruction ends a block.
+     */
+    public boolean isTerminator() {
+        return opcode == Opcode.BR || opcode == Opcode.CONDBR || opcode == Opcode.RET;
+    }
+
+    public boolean isPhi() {
+        return opcode == Opcode.PHI;
+    }
+
+    /**
+     * Whether the instruction does more than giving its result, so it cannot be removed
+     * when its result is not used. A division may divide by zero, so it is kept too.
+     */
+    public boolean hasSideEffects() {
+        switch (opcode) {
+            case LOAD:
+            case PHI:
+            case ADD:
+            case SUB:
+            case MUL:
+            case ICMP:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Whether the instruction is an arithmetic operation.
+     */
+    public boolean isBinary() {
+        switch (opcode) {
+            case ADD:
+            case SUB:
+            case MUL:
+            case SDIV:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (hasResult()) {
+            text.append('r').append(result).append(" = ");
+        }
+        text.append(opcode);
+        if (predicate != null) {
+            text.append(' ').append(predicate.getName());
+        }
+        for (Operand operand : operands) {
+            text.append(' ').append(operand);
+        }
+        for (BasicBlock target : targets) {
+            text.append(' ').append(target.getLabel());
+        }
+        return text.toString();
+    }
+}
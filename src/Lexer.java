@@ -311,13 +311,14 @@ class Lexer {
   private int zzFinalHighSurrogate = 0;
 
   /** Number of newlines encountered up to the start of the matched text. */
+  @SuppressWarnings("unused")
   private int yyline;
 
   /** Number of characters from the last newline up to the start of the matched text. */
+  @SuppressWarnings("unused")
   private int yycolumn;
 
   /** Number of characters up to the start of the matched text. */
-  @SuppressWarnings("unused")
   private long yychar;
 
   /** Whether the scanner is currently at the beginning of a line. */
@@ -328,6 +329,150 @@ class Lexer {
   @SuppressWarnings("unused")
   private boolean zzEOFDone;
 
+  /* user code: */
+  private NameTable names = new NameTable();
+
+  /*
+   * Lines are not counted by the scanner itself. In nextToken() mode the actions
+   * that skip spaces, line ends and comments count them. In tokenize() mode only
+   * offsets are recorded and lines are computed later, when they are asked for.
+   */
+  private boolean trackLines = true;
+  private int line = 0;                 // line at the start of the matched text
+  private long lineStart = 0;           // offset of the first character of that line
+  private boolean lineEndsWithCR = false;
+  private LineMap lines = null;         // used in tokenize() mode
+
+  /**
+   * Sets the table in which nextToken() interns variable names.
+   *
+   * @param names the table to fill.
+   */
+  public void setNameTable(NameTable names) {
+    this.names = names;
+  }
+
+  /**
+   * Returns the next token as a symbol.
+   *
+   * @return the next token.
+   */
+  public Symbol nextToken() throws java.io.IOException, PatternSyntaxException {
+    LexicalUnit unit = scan();
+    int column = (int) (yychar - lineStart);
+    switch (unit) {
+      case EOS:
+        return new Symbol(unit, line, column);
+      case NUMBER:
+        return new Symbol(unit, line, column, Integer.valueOf(yytext()));
+      case VARNAME:
+        int id = names.intern(zzBuffer, zzStartRead, yylength());
+        return new Symbol(unit, line, column, names.getName(id), id);
+      default:
+        return new Symbol(unit, line, column, yytext());
+    }
+  }
+
+  /**
+   * Scans the whole input into a token buffer, up to and including the EOS token.
+   * Variable names are interned in the name table of the buffer.
+   * Only the start offset of tokens is recorded, lines are not counted.
+   * No object is created per token.
+   *
+   * @param tokens the buffer to fill.
+   */
+  public void tokenize(TokenBuffer tokens) throws java.io.IOException, PatternSyntaxException {
+    trackLines = false;
+    lines = tokens.getLines();
+    LexicalUnit unit;
+    do {
+      unit = scan();
+      int value = 0;
+      if (unit == LexicalUnit.NUMBER) {
+        value = numberValue();
+      } else if (unit == LexicalUnit.VARNAME) {
+        value = tokens.getNames().intern(zzBuffer, zzStartRead, yylength());
+      }
+      tokens.add(unit, (int) yychar, yylength(), value);
+    } while (unit != LexicalUnit.EOS);
+  }
+
+  /**
+   * Extends the blanks or comment characters just matched over the rest of their run
+   * that is already in the buffer, so a run is skipped by one action instead of
+   * one DFA step and one action per character. Lines are counted over the whole run.
+   */
+  private void skip() {
+    int end = zzMarkedPos;
+    switch (yystate()) {
+      case YYINITIAL:
+        while (end < zzEndRead && isBlank(zzBuffer[end])) {
+          ++end;
+        }
+        break;
+      case SHORTCOMMENTS:
+        while (end < zzEndRead && !LineMap.isLineTerminator(zzBuffer[end])) {
+          ++end;
+        }
+        break;
+      case LONGCOMMENTS:
+        while (end < zzEndRead && zzBuffer[end] != '%') {
+          ++end;
+        }
+        break;
+    }
+    zzMarkedPos = end;
+    countLines();
+  }
+
+  private static boolean isBlank(char c) {
+    return c == ' ' || c == '\t' || c == '\f' || c == '\n' || c == '\r';
+  }
+
+  /**
+   * Counts the line terminators of the matched text, the way JFlex counts lines.
+   */
+  private void countLines() {
+    if (!trackLines) {
+      return;
+    }
+    for (int i = 0; i < yylength(); ++i) {
+      char c = yycharat(i);
+      long offset = yychar + i;
+      if (c == '\n' && lineEndsWithCR && offset == lineStart) { // second half of \r\n
+        lineStart = offset + 1;
+        lineEndsWithCR = false;
+      } else if (LineMap.isLineTerminator(c)) {
+        ++line;
+        lineStart = offset + 1;
+        lineEndsWithCR = c == '\r';
+      }
+    }
+  }
+
+  /**
+   * Line at the start of the matched text, for error messages.
+   */
+  private int line() {
+    return trackLines ? line : lines.getLine((int) yychar);
+  }
+
+  /**
+   * Value of the number just matched, read from the buffer without building a string.
+   */
+  private int numberValue() {
+    int length = yylength();
+    if (length > 9) { // may overflow, let Integer report it as nextToken would
+      return Integer.parseInt(yytext());
+    }
+    int value = 0;
+    for (int i = 0; i < length; ++i) {
+      value = value * 10 + (yycharat(i) - '0');
+    }
+    return value;
+  }
+
+
 
   /**
    * Creates a new scanner
@@ -581,7 +726,7 @@ class Lexer {
    * @return the next token.
    * @exception java.io.IOException if any I/O-Error occurs.
    */
-  public Symbol nextToken() throws java.io.IOException, PatternSyntaxException {
+  public LexicalUnit scan() throws java.io.IOException, PatternSyntaxException {
     int zzInput;
     int zzAction;
 
@@ -598,63 +743,8 @@ class Lexer {
     while (true) {
       zzMarkedPosL = zzMarkedPos;
 
-      boolean zzR = false;
-      int zzCh;
-      int zzCharCount;
-      for (zzCurrentPosL = zzStartRead  ;
-           zzCurrentPosL < zzMarkedPosL ;
-           zzCurrentPosL += zzCharCount ) {
-        zzCh = Character.codePointAt(zzBufferL, zzCurrentPosL, zzMarkedPosL);
-        zzCharCount = Character.charCount(zzCh);
-        switch (zzCh) {
-        case '\u000B':  // fall through
-        case '\u000C':  // fall through
-        case '\u0085':  // fall through
-        case '\u2028':  // fall through
-        case '\u2029':
-          yyline++;
-          yycolumn = 0;
-          zzR = false;
-          break;
-        case '\r':
-          yyline++;
-          yycolumn = 0;
-          zzR = true;
-          break;
-        case '\n':
-          if (zzR)
-            zzR = false;
-          else {
-            yyline++;
-            yycolumn = 0;
-          }
-          break;
-        default:
-          zzR = false;
-          yycolumn += zzCharCount;
-        }
-      }
+      yychar+= zzMarkedPosL-zzStartRead;
 
-      if (zzR) {
-        // peek one character ahead if it is
-        // (if we have counted one line too much)
-        boolean zzPeek;
-        if (zzMarkedPosL < zzEndReadL)
-          zzPeek = zzBufferL[zzMarkedPosL] == '\n';
-        else if (zzAtEOF)
-          zzPeek = false;
-        else {
-          boolean eof = zzRefill();
-          zzEndReadL = zzEndRead;
-          zzMarkedPosL = zzMarkedPos;
-          zzBufferL = zzBuffer;
-          if (eof)
-            zzPeek = false;
-          else
-            zzPeek = zzBufferL[zzMarkedPosL] == '\n';
-        }
-        if (zzPeek) yyline--;
-      }
       zzAction = -1;
 
       zzCurrentPosL = zzCurrentPos = zzStartRead = zzMarkedPosL;
@@ -719,93 +809,93 @@ class Lexer {
         zzAtEOF = true;
             switch (zzLexicalState) {
             case LONGCOMMENTS: {
-              throw new PatternSyntaxException("A comment is never closed.",yytext(),yyline);
+              throw new PatternSyntaxException("A comment is never closed.",yytext(),line());
             }  // fall though
             case 70: break;
             default:
-          { 	return new Symbol(LexicalUnit.EOS, yyline, yycolumn);
+          { 	return LexicalUnit.EOS;
  }
         }
       }
       else {
         switch (zzAction < 0 ? zzAction : ZZ_ACTION[zzAction]) {
           case 1:
-            { throw new PatternSyntaxException("Unmatched symbol(s) found.",yytext(),yyline);
+            { throw new PatternSyntaxException("Unmatched symbol(s) found.",yytext(),line());
             }
             // fall through
           case 31: break;
           case 2:
-            { 
+            { skip();
             }
             // fall through
           case 32: break;
           case 3:
-            { return new Symbol(LexicalUnit.LPAREN, yyline, yycolumn, yytext());
+            { return LexicalUnit.LPAREN;
             }
             // fall through
           case 33: break;
           case 4:
-            { return new Symbol(LexicalUnit.RPAREN, yyline, yycolumn, yytext());
+            { return LexicalUnit.RPAREN;
             }
             // fall through
           case 34: break;
           case 5:
-            { return new Symbol(LexicalUnit.TIMES, yyline, yycolumn, yytext());
+            { return LexicalUnit.TIMES;
             }
             // fall through
           case 35: break;
           case 6:
-            { return new Symbol(LexicalUnit.PLUS, yyline, yycolumn, yytext());
+            { return LexicalUnit.PLUS;
             }
             // fall through
           case 36: break;
           case 7:
-            { return new Symbol(LexicalUnit.COMMA, yyline, yycolumn, yytext());
+            { return LexicalUnit.COMMA;
             }
             // fall through
           case 37: break;
           case 8:
-            { return new Symbol(LexicalUnit.MINUS, yyline, yycolumn, yytext());
+            { return LexicalUnit.MINUS;
             }
             // fall through
           case 38: break;
           case 9:
-            { return new Symbol(LexicalUnit.DIVIDE, yyline, yycolumn, yytext());
+            { return LexicalUnit.DIVIDE;
             }
             // fall through
           case 39: break;
           case 10:
-            { return new Symbol(LexicalUnit.NUMBER, yyline, yycolumn, Integer.valueOf(yytext()));
+            { return LexicalUnit.NUMBER;
             }
             // fall through
           case 40: break;
           case 11:
-            { return new Symbol(LexicalUnit.SMALLER, yyline, yycolumn, yytext());
+            { return LexicalUnit.SMALLER;
             }
             // fall through
           case 41: break;
           case 12:
-            { return new Symbol(LexicalUnit.EQUAL, yyline, yycolumn, yytext());
+            { return LexicalUnit.EQUAL;
             }
             // fall through
           case 42: break;
           case 13:
-            { return new Symbol(LexicalUnit.GREATER, yyline, yycolumn, yytext());
+            { return LexicalUnit.GREATER;
             }
             // fall through
           case 43: break;
           case 14:
-            { return new Symbol(LexicalUnit.PROGNAME, yyline, yycolumn, yytext());
+            { return LexicalUnit.PROGNAME;
             }
             // fall through
           case 44: break;
           case 15:
-            { return new Symbol(LexicalUnit.VARNAME, yyline, yycolumn, yytext());
+            { return LexicalUnit.VARNAME;
             }
             // fall through
           case 45: break;
           case 16:
-            { yybegin(YYINITIAL);
+            { countLines(); yybegin(YYINITIAL);
             }
             // fall through
           case 46: break;
@@ -815,7 +905,7 @@ class Lexer {
             // fall through
           case 47: break;
           case 18:
-            { System.err.println("Warning! Numbers with leading zeros are not permitted: " + yytext()); return new Symbol(LexicalUnit.NUMBER, yyline, yycolumn, Integer.valueOf(yytext()));
+            { System.err.println("Warning! Numbers with leading zeros are not permitted: " + yytext()); return LexicalUnit.NUMBER;
             }
             // fall through
           case 48: break;
@@ -825,57 +915,57 @@ class Lexer {
             // fall through
           case 49: break;
           case 20:
-            { return new Symbol(LexicalUnit.ASSIGN, yyline, yycolumn, yytext());
+            { return LexicalUnit.ASSIGN;
             }
             // fall through
           case 50: break;
           case 21:
-            { System.err.println("Warning! Program names in uppercase are not permitted: " + yytext()); return new Symbol(LexicalUnit.PROGNAME, yyline, yycolumn, yytext());
+            { System.err.println("Warning! Program names in uppercase are not permitted: " + yytext()); return LexicalUnit.PROGNAME;
             }
             // fall through
           case 51: break;
           case 22:
-            { return new Symbol(LexicalUnit.DO, yyline, yycolumn, yytext());
+            { return LexicalUnit.DO;
             }
             // fall through
           case 52: break;
           case 23:
-            { return new Symbol(LexicalUnit.IF, yyline, yycolumn, yytext());
+            { return LexicalUnit.IF;
             }
             // fall through
           case 53: break;
           case 24:
-            { return new Symbol(LexicalUnit.END, yyline, yycolumn, yytext());
+            { return LexicalUnit.END;
             }
             // fall through
           case 54: break;
           case 25:
-            { return new Symbol(LexicalUnit.ELSE, yyline, yycolumn, yytext());
+            { return LexicalUnit.ELSE;
             }
             // fall through
           case 55: break;
           case 26:
-            { return new Symbol(LexicalUnit.READ, yyline, yycolumn, yytext());
+            { return LexicalUnit.READ;
             }
             // fall through
           case 56: break;
           case 27:
-            { return new Symbol(LexicalUnit.THEN, yyline, yycolumn, yytext());
+            { return LexicalUnit.THEN;
             }
             // fall through
           case 57: break;
           case 28:
-            { return new Symbol(LexicalUnit.BEGIN, yyline, yycolumn, yytext());
+            { return LexicalUnit.BEGIN;
             }
             // fall through
           case 58: break;
           case 29:
-            { return new Symbol(LexicalUnit.PRINT, yyline, yycolumn, yytext());
+            { return LexicalUnit.PRINT;
             }
             // fall through
           case 59: break;
           case 30:
-            { return new Symbol(LexicalUnit.WHILE, yyline, yycolumn, yytext());
+            { return LexicalUnit.WHILE;
             }
             // fall through
           case 60: break;
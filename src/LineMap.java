@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/**
+ * Index of the line starts of a source text.
+ * Tokens only record their start offset, lines and columns are computed
+ * from it when they are asked for, with a binary search.
+ * The index is only built the first time a position is asked for.
+ * Lines are counted the same way the generated lexer would count them.
+ */
+public class LineMap {
+
+    private final CharSequence text;
+    private int[] starts = null; // offset of the first character of each line
+    private int count = 0;
+
+    public LineMap(CharSequence text) {
+        this.text = text;
+    }
+
+    /**
+     * Does the character end a line ? A '\n' right after a '\r' does not end another one.
+     */
+    public static boolean isLineTerminator(char c) {
+        switch (c) {
+            case '\n':
+            case '\r':
+            case '\u000B':
+            case '\u000C':
+            case '\u0085':
+            case '\u2028':
+            case '\u2029':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void build() {
+        int[] lines = new int[64];
+        int n = 0;
+        lines[n++] = 0;
+        int length = text.length();
+        for (int i = 0; i < length; ++i) {
+            char c = text.charAt(i);
+            if (isLineTerminator(c)) {
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    ++i;
+                }
+                if (n == lines.length) {
+                    lines = Arrays.copyOf(lines, n * 2);
+                }
+                lines[n++] = i + 1;
+            }
+        }
+        this.count = n;
+        this.starts = lines;
+    }
+
+    /**
+     * Line of an offset, counting from 0.
+     */
+    public int getLine(int offset) {
+        if (starts == null) {
+            build();
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Column of an offset, counting from 0.
+     */
+    public int getColumn(int offset) {
+        return offset - starts[getLine(offset)];
+    }
+}
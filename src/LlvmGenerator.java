@@ -1,20 +1,50 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.util.BitSet;
 
 /**
- * The class used to generate the llvm code from the AST
+ * The class used to generate the llvm code from the AST.
+ * The instructions are lowered to the intermediate representation, which is printed.
+ * Without passes, each top-level instruction is lowered and printed on its own.
+ * With passes, the whole program is lowered into one graph, which the passes change before it is printed.
+ * The variables are allocated in the frame of the main function, at the top of its entry block,
+ * as FrameLayout lays it out: the code of the instructions only loads and stores them.
  */
 public class LlvmGenerator {
 
     Instruction initialInstruction = null;
+    private final CompilationContext context;
+    private final PrintStream out;
+    private PassManager passes = null;
+    private int framed = 0; // number of slots allocated by the code printed by generate(Instruction)
 
     /**
      * The constructor of the class
      * @param ast the AST to generate the llvm code from
+     * @param context the state of the compilation
+     * @param out where the code is printed
      */
-    public LlvmGenerator(Instruction instruction) {
+    public LlvmGenerator(Instruction instruction, CompilationContext context, PrintStream out) {
         this.initialInstruction = instruction;
+        this.context = context;
+        this.out = out;
+    }
+
+    /**
+     * Constructor of a generator printing the instructions one at a time, with begin, generate and end.
+     */
+    public LlvmGenerator(CompilationContext context, PrintStream out) {
+        this(null, context, out);
+    }
+
+    /**
+     * Run passes on the code of the whole program before it is printed by generate().
+     * @param passes: the pipeline, null to print the code of each instruction as it is lowered
+     */
+    public void setPassManager(PassManager passes) {
+        this.passes = passes;
     }
 
     /**
@@ -41,18 +71,277 @@ public class LlvmGenerator {
 
     /**
      * The method used to generate the llvm code from the AST
-     * It is printed on stdout
+     * It is printed on the output of the generator
      */
     public void generate() {
-        System.out.println(loadLibrary());
-        System.out.println("define i32 @main() {");
-        System.out.println("entry:");
-
+        if (passes == null) {
+            StringBuilder code = new StringBuilder();
+            for (Instruction instruction : this.initialInstruction.getThenList()) {
+                generate(instruction, code);
+            }
+            StringBuilder frame = new StringBuilder(header());
+            generateFrame(frame);
+            out.print(frame);
+            out.print(code);
+            end();
+            return;
+        }
+        ControlFlowGraph cfg = new ControlFlowGraph(context.getSymbolTable());
+        IrBuilder builder = new IrBuilder(cfg, context);
         for (Instruction instruction : this.initialInstruction.getThenList()) {
-            System.out.println(instruction.generateCode());
+            builder.lower(instruction);
         }
-        System.out.println("ret i32 0");
-        System.out.println("}");
+        builder.ret();
+        passes.run(cfg);
+        StringBuilder code = new StringBuilder(header());
+        print(cfg, code);
+        code.append("}\n");
+        out.print(code);
+    }
+
+    /**
+     * Print the library and the start of the main function.
+     */
+    public void begin() {
+        out.print(header());
+    }
+
+    /**
+     * The library and the start of the main function, as begin prints them.
+     */
+    public String header() {
+        return loadLibrary() + "\n" + "define i32 @main() {\n" + "entry:\n";
+    }
+
+    /**
+     * Print the code of a top-level instruction as soon as it is given, after begin.
+     * The variables it is the first instruction to use are allocated at the start of its code,
+     * which runs once, as the entry block is printed before they are known.
+     * @param instruction: the instruction, simplified
+     */
+    public void generate(Instruction instruction) {
+        SymbolTable symbols = context.getSymbolTable();
+        ControlFlowGraph cfg = lower(instruction);
+        if (symbols.size() > framed) {
+            BitSet slots = new BitSet();
+            slots.set(framed, symbols.size());
+            cfg.getEntry().getInstructions().addAll(0, FrameLayout.frame(symbols, slots));
+            framed = symbols.size();
+        }
+        StringBuilder code = new StringBuilder();
+        print(cfg, code);
+        out.print(code);
+    }
+
+    /**
+     * Append the code of a top-level instruction, followed by a new line.
+     * Its variables are not allocated: generateFrame gives their allocations.
+     * @param instruction: the instruction, simplified
+     * @param code: where the code is appended
+     */
+    public void generate(Instruction instruction, StringBuilder code) {
+        print(lower(instruction), code);
+    }
+
+    private ControlFlowGraph lower(Instruction instruction) {
+        ControlFlowGraph cfg = new ControlFlowGraph(context.getSymbolTable());
+        new IrBuilder(cfg, context).lower(instruction);
+        return cfg;
+    }
+
+    /**
+     * Append the frame of the main function: the allocation of every variable of the compilation,
+     * set to 0, in the order of their names. It follows the header, before the code of the instructions.
+     * @param code: where the code is appended
+     */
+    public void generateFrame(StringBuilder code) {
+        SymbolTable symbols = context.getSymbolTable();
+        BitSet slots = new BitSet();
+        slots.set(0, symbols.size());
+        ControlFlowGraph cfg = new ControlFlowGraph(symbols);
+        cfg.getEntry().getInstructions().addAll(FrameLayout.frame(symbols, slots));
+        print(cfg, code);
+    }
+
+    /**
+     * Print the end of the main function.
+     */
+    public void end() {
+        out.print(footer());
     }
-}
 
+    /**
+     * The end of the main function, as end prints it.
+     */
+    public String footer() {
+        return "ret i32 0\n" + "}\n";
+    }
+
+    /**
+     * Print code generated for top-level instructions in another context, each one followed by a new line.
+     */
+    public void print(CharSequence code) {
+        out.print(code);
+    }
+
+    /**
+     * Append the code of a graph, each instruction on a line of its own, and each block after its label.
+     * The label of the first block is not printed: it is the entry of the main function,
+     * or the block of the code before.
+     * Registers get the next llvm values of the compilation, in the order they are defined,
+     * and the print of a value is followed by an empty line. Variables are named after the symbol table
+     * of the graph, so a graph lowered in an earlier compilation can be printed in this one.
+     * @param cfg: the graph
+     * @param code: where the code is appended
+     */
+    public void print(ControlFlowGraph cfg, StringBuilder code) {
+        int[] values = new int[cfg.getRegisterCount()];
+        String[] names = new String[cfg.getRegisterCount()]; // of the named registers
+        for (BasicBlock block : cfg.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getName() != null) {
+                    names[instruction.getResult()] = instruction.getName();
+                } else if (instruction.hasResult()) {
+                    values[instruction.getResult()] = context.inc();
+                }
+            }
+        }
+        Registers registers = new Registers(values, names);
+        SymbolTable symbols = cfg.getSymbolTable();
+        boolean first = true;
+        for (BasicBlock block : cfg.getBlocks()) {
+            if (!first) {
+                code.append(block.getLabel()).append(":\n");
+            }
+            first = false;
+            for (IrInstruction instruction : block.getInstructions()) {
+                print(instruction, registers, symbols, code);
+                code.append('\n');
+            }
+        }
+    }
+
+    private static void print(IrInstruction instruction, Registers registers, SymbolTable symbols, StringBuilder code) {
+        if (instruction.hasResult()) {
+            registers.print(instruction.getResult(), code);
+            code.append(" = ");
+        }
+        switch (instruction.getOpcode()) {
+            case LOAD:
+                code.append("load i32, i32* %").append(symbols.getName(instruction.getOperand(0).getSlot()));
+                break;
+            case STORE:
+                code.append("store i32 ");
+                registers.print(instruction.getOperand(0), code);
+                code.append(", i32* %").append(symbols.getName(instruction.getOperand(1).getSlot()));
+                break;
+            case ALLOCA:
+                code.append('%').append(symbols.getName(instruction.getOperand(0).getSlot())).append(" = alloca i32");
+                break;
+            case ADD:
+            case SUB:
+            case MUL:
+            case SDIV:
+                code.append(instruction.getOpcode() == IrInstruction.Opcode.SDIV ? "sdiv"
+                        : instruction.getOpcode() == IrInstruction.Opcode.MUL ? "mul"
+                        : instruction.getOpcode() == IrInstruction.Opcode.SUB ? "sub" : "add").append(" i32 ");
+                registers.print(instruction.getOperand(0), code);
+                code.append(", ");
+                registers.print(instruction.getOperand(1), code);
+                break;
+            case ICMP:
+                code.append("icmp ").append(instruction.getPredicate().getName()).append(" i32 ");
+                registers.print(instruction.getOperand(0), code);
+                code.append(", ");
+                registers.print(instruction.getOperand(1), code);
+                break;
+            case READ:
+                code.append("call i32 @readInt()");
+                break;
+            case PRINT:
+                code.append("call void @println(i32 ");
+                registers.print(instruction.getOperand(0), code);
+                code.append(")\n");
+                break;
+            case BR:
+                code.append("br label %").append(instruction.getTarget(0).getLabel());
+                break;
+            case CONDBR:
+                code.append("br i1 ");
+                registers.print(instruction.getOperand(0), code);
+                code.append(", label %").append(instruction.getTarget(0).getLabel())
+                        .append(", label %").append(instruction.getTarget(1).getLabel());
+                break;
+            case RET:
+                code.append("ret i32 0");
+                break;
+            case PHI:
+                code.append("phi i32 ");
+                for (int i = 0; i < instruction.numOperands(); ++i) {
+                    code.append((i == 0) ? "[ " : ", [ ");
+                    registers.print(instruction.getOperand(i), code);
+                    code.append(", %").append(instruction.getTarget(i).getLabel()).append(" ]");
+                }
+                break;
+        }
+    }
+
+    /*
+        The llvm values of the registers of a graph, or their names.
+    */
+    private static class Registers {
+        final int[] values;
+        final String[] names;
+
+        Registers(int[] values, String[] names) {
+            this.values = values;
+            this.names = names;
+        }
+
+        void print(Operand operand, StringBuilder code) {
+            if (operand.isConstant()) {
+                code.append(operand.getConstant());
+            } else {
+                print(operand.getRegister(), code);
+            }
+        }
+
+        void print(int register, StringBuilder code) {
+            code.append('%');
+            if (names[register] != null) {
+                code.append(names[register]);
+            } else {
+                code.append(values[register]);
+            }
+        }
+    }
+
+    /**
+     * Move the values of a piece of code, %12, and its labels, then_3, for the code
+     * to follow code generated in another context.
+     * Variable names have no underscore and start with a letter, so they are never moved.
+     * @param valueShift: number added to the values
+     * @param labelShift: number added to the label ids
+     */
+    static String relocate(CharSequence code, int valueShift, int labelShift) {
+        StringBuilder moved = new StringBuilder(code.length() + 16);
+        int length = code.length();
+        int i = 0;
+        while (i < length) {
+            char c = code.charAt(i++);
+            moved.append(c);
+            if ((c == '%' || c == '_') && i < length && isDigit(code.charAt(i))) {
+                int number = 0;
+                while (i < length && isDigit(code.charAt(i))) {
+                    number = number * 10 + (code.charAt(i++) - '0');
+                }
+                moved.append(number + ((c == '%') ? valueShift : labelShift));
+            }
+        }
+        return moved.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Move the instructions computing the same value on every iteration of a loop to its preheader.
+ * An instruction is moved when it does nothing but give its result, its operands are computed
+ * out of the loop, and it is not a division, which may divide by zero on a path not running it,
+ * nor a phi, whose value depends on the block it is entered from.
+ * A load is moved when the loop never stores into its variable, and the variable is allocated
+ * in a block dominating the preheader.
+ * Inner loops are handled first, so an instruction can be moved out of several loops.
+ */
+public class LoopInvariantCodeMotion implements Pass {
+
+    public String getName() {
+        return "loop-invariant-code-motion";
+    }
+
+    public boolean run(ControlFlowGraph cfg, AnalysisManager analyses) {
+        DominatorTree dominators = analyses.getDominatorTree();
+        List<LoopNest.Loop> loops = analyses.getLoopNest().getLoops();
+        if (loops.isEmpty()) {
+            return false;
+        }
+        BasicBlock[] definitions = new BasicBlock[cfg.getRegisterCount()];
+        HashMap<Integer, BasicBlock> allocations = new HashMap<Integer, BasicBlock>(); // by slot
+        for (BasicBlock block : cfg.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.hasResult()) {
+                    definitions[instruction.getResult()] = block;
+                }
+                if (instruction.getOpcode() == IrInstruction.Opcode.ALLOCA) {
+                    allocations.put(instruction.getOperand(0).getSlot(), block);
+                }
+            }
+        }
+        boolean changed = false;
+        for (int l = loops.size() - 1; l >= 0; --l) { // inner loops first
+            LoopNest.Loop loop = loops.get(l);
+            BasicBlock preheader = loop.getPreheader();
+            if (preheader == null) {
+                continue;
+            }
+            BitSet stored = new BitSet();
+            for (BasicBlock block : loop.getBlocks()) {
+                for (IrInstruction instruction : block.getInstructions()) {
+                    if (instruction.getOpcode() == IrInstruction.Opcode.STORE) {
+                        stored.set(instruction.getOperand(1).getSlot());
+                    }
+                }
+            }
+            boolean moved = true;
+            while (moved) {
+                moved = false;
+                for (BasicBlock block : loop.getBlocks()) {
+                    List<IrInstruction> instructions = block.getInstructions();
+                    List<IrInstruction> kept = new ArrayList<IrInstruction>(instructions.size());
+                    for (IrInstruction instruction : instructions) {
+                        if (isInvariant(instruction, loop, definitions, stored, allocations, dominators, preheader)) {
+                            preheader.addBeforeTerminator(instruction);
+                            definitions[instruction.getResult()] = preheader;
+                            moved = true;
+                        } else {
+                            kept.add(instruction);
+                        }
+                    }
+                    if (kept.size() != instructions.size()) {
+                        instructions.clear();
+                        instructions.addAll(kept);
+                    }
+                }
+                changed |= moved;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isInvariant(IrInstruction instruction, LoopNest.Loop loop, BasicBlock[] definitions,
+            BitSet stored, HashMap<Integer, BasicBlock> allocations, DominatorTree dominators, BasicBlock preheader) {
+        if (!instruction.hasResult() || instruction.hasSideEffects() || instruction.isPhi()) {
+            return false;
+        }
+        for (int i = 0; i < instruction.numOperands(); ++i) {
+            Operand operand = instruction.getOperand(i);
+            if (operand.isRegister()) {
+                BasicBlock definition = definitions[operand.getRegister()];
+                if (definition == null || loop.contains(definition)) {
+                    return false;
+                }
+            }
+        }
+        if (instruction.getOpcode() == IrInstruction.Opcode.LOAD) {
+            int slot = instruction.getOperand(0).getSlot();
+            BasicBlock allocation = allocations.get(slot);
+            return !stored.get(slot) && allocation != null && dominators.dominates(allocation, preheader);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The natural loops of a control flow graph and how they nest.
+ * An edge to a block dominating its source is a back edge, and the loop of a header is made
+ * of the header and of the blocks reaching one of its back edges without going through it.
+ * The loops of the code of the While instructions have the block evaluating their condition as header,
+ * and the block before the loop as preheader.
+ */
+public class LoopNest {
+
+    /**
+     * A natural loop.
+     */
+    public static class Loop {
+        private final BasicBlock header;
+        private final BitSet body = new BitSet(); // block indexes
+        private final List<BasicBlock> blocks = new ArrayList<BasicBlock>(); // in the order of the layout
+        private Loop parent = null;
+        private int depth = 1;
+        private BasicBlock preheader = null;
+        private int size = 0; // number of blocks
+
+        Loop(BasicBlock header) {
+            this.header = header;
+        }
+
+        public BasicBlock getHeader() {
+            return header;
+        }
+
+        /**
+         * The blocks of the loop, header included, in the order of the layout.
+         */
+        public List<BasicBlock> getBlocks() {
+            return blocks;
+        }
+
+        public boolean contains(BasicBlock block) {
+            return body.get(block.getIndex());
+        }
+
+        /**
+         * The innermost loop containing this one, null for an outermost loop.
+         */
+        public Loop getParent() {
+            return parent;
+        }
+
+        /**
+         * Number of loops containing this one, itself included.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * The only block entering the loop, when it branches to the header only, null otherwise.
+         * Code run once before the loop can be put at its end.
+         */
+        public BasicBlock getPreheader() {
+            return preheader;
+        }
+    }
+
+    private final List<Loop> loops = new ArrayList<Loop>(); // outer loops before the loops they contain
+    private final Loop[] innermost; // by block index
+
+    /**
+     * @param cfg: the graph, whose edges are up to date
+     * @param dominators: the dominator tree of the graph
+     */
+    public LoopNest(ControlFlowGraph cfg, DominatorTree dominators) {
+        List<BasicBlock> blocks = cfg.getBlocks();
+        innermost = new Loop[blocks.size()];
+        Loop[] byHeader = new Loop[blocks.size()];
+        List<Loop> found = new ArrayList<Loop>();
+        for (BasicBlock block : dominators.getReversePostOrder()) {
+            for (BasicBlock successor : block.getSuccessors()) {
+                if (dominators.dominates(successor, block)) {
+                    Loop loop = byHeader[successor.getIndex()];
+                    if (loop == null) {
+                        loop = new Loop(successor);
+                        loop.body.set(successor.getIndex());
+                        byHeader[successor.getIndex()] = loop;
+                        found.add(loop);
+                    }
+                    addBody(loop, block, dominators);
+                }
+            }
+        }
+        for (Loop loop : found) {
+            loop.size = loop.body.cardinality();
+        }
+        found.sort((a, b) -> b.size - a.size);
+        for (Loop loop : found) { // a loop is met after the loops containing it
+            loop.parent = innermost[loop.header.getIndex()];
+            if (loop.parent != null) {
+                loop.depth = loop.parent.depth + 1;
+            }
+            for (int idx = loop.body.nextSetBit(0); idx >= 0; idx = loop.body.nextSetBit(idx + 1)) {
+                innermost[idx] = loop;
+                loop.blocks.add(blocks.get(idx));
+            }
+            loop.preheader = preheader(loop);
+            loops.add(loop);
+        }
+    }
+
+    /**
+     * The loops, each one after the loops containing it.
+     */
+    public List<Loop> getLoops() {
+        return loops;
+    }
+
+    /**
+     * The innermost loop containing a block, null if the block is in no loop.
+     */
+    public Loop getLoopFor(BasicBlock block) {
+        return innermost[block.getIndex()];
+    }
+
+    /**
+     * Number of loops containing a block.
+     */
+    public int getDepth(BasicBlock block) {
+        Loop loop = innermost[block.getIndex()];
+        return (loop == null) ? 0 : loop.depth;
+    }
+
+    /* Add to a loop the blocks reaching the source of one of its back edges, walking the predecessors */
+    private static void addBody(Loop loop, BasicBlock source, DominatorTree dominators) {
+        ArrayList<BasicBlock> pending = new ArrayList<BasicBlock>();
+        if (!loop.body.get(source.getIndex())) {
+            loop.body.set(source.getIndex());
+            pending.add(source);
+        }
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.remove(pending.size() - 1);
+            for (BasicBlock predecessor : block.getPredecessors()) {
+                if (dominators.isReachable(predecessor) && !loop.body.get(predecessor.getIndex())) {
+                    loop.body.set(predecessor.getIndex());
+                    pending.add(predecessor);
+                }
+            }
+        }
+    }
+
+    private static BasicBlock preheader(Loop loop) {
+        BasicBlock entering = null;
+        for (BasicBlock predecessor : loop.header.getPredecessors()) {
+            if (!loop.contains(predecessor)) {
+                if (entering != null) {
+                    return null;
+                }
+                entering = predecessor;
+            }
+        }
+        if (entering == null || entering.getSuccessors().size() != 1) {
+            return null;
+        }
+        return entering;
+    }
+}
@@ -3,6 +3,7 @@ import java.io.InputStreamReader;
 import java.io.FileNotFoundException;
 import java.io.Reader;
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Implementation of a Lexical Analyzer for the Fortress Language.
@@ -13,22 +14,124 @@ public class Main {
         String encodingName = "UTF-8";
         String inputFile = null;
         String texFile = null;
-        boolean outputTree = args[0].equals("-wt");
-        if (outputTree) {
-            inputFile = args[2];
-            texFile = args[1];
-        } else {
-            inputFile = args[0];
+        boolean outputTree = false;
+        boolean memoryMapped = false;
+        boolean buffered = false;
+        boolean fast = false;
+        boolean parallel = false;
+        boolean pipelined = false;
+        boolean streaming = false;
+        boolean recursiveDescent = false;
+        int optimizationLevel = 0;
+        boolean timePasses = false;
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "-wt":
+                    outputTree = true;
+                    texFile = args[++i];
+                    break;
+                case "-mmap":
+                    memoryMapped = true;
+                    break;
+                case "-buffer":
+                    buffered = true;
+                    break;
+                case "-fast":
+                    fast = true;
+                    buffered = true;
+                    break;
+                case "-parallel":
+                    parallel = true;
+                    buffered = true;
+                    break;
+                case "-pipeline":
+                    pipelined = true;
+                    break;
+                case "-stream":
+                    streaming = true;
+                    break;
+                case "-O0":
+                case "-O1":
+                case "-O2":
+                    optimizationLevel = args[i].charAt(2) - '0';
+                    break;
+                case "-time-passes":
+                    timePasses = true;
+                    break;
+                case "-rd":
+                    recursiveDescent = true;
+                    buffered = true;
+                    break;
+                default:
+                    inputFile = args[i];
+            }
+        }
+        streaming &= !outputTree && optimizationLevel == 0; // the whole program is lowered before the passes
+        if (streaming && timePasses) {
+            System.out.println("-time-passes cannot be used with -stream, which runs no pass");
+            return;
         }
         try {
-            FileInputStream stream = new FileInputStream(inputFile);
-            Reader reader = new InputStreamReader(stream, encodingName);
-            Lexer lexer = new Lexer(reader);
-            Parser parser = new Parser(lexer);
-            parser.parse();
+            SourceText text = null;
+            Reader reader = null;
+            if (memoryMapped) {
+                text = SourceText.map(inputFile);
+            } else {
+                FileInputStream stream = new FileInputStream(inputFile);
+                reader = new InputStreamReader(stream, encodingName);
+                if (buffered || pipelined) {
+                    text = SourceText.read(reader);
+                }
+            }
+            if (text != null) {
+                reader = text.reader();
+            }
+            Parser parser = null;
+            ParallelParser parallelParser = null;
+            if (pipelined) {
+                TokenPipe pipe = new TokenPipe(text, new NameTable());
+                pipe.start();
+                parser = new Parser(pipe);
+            } else if (buffered) {
+                TokenBuffer tokens = new TokenBuffer();
+                tokens.reset(text, new NameTable());
+                if (parallel) {
+                    new ParallelLexer(text, ForkJoinPool.commonPool()).tokenize(tokens);
+                } else if (fast) {
+                    new FastLexer(text).tokenize(tokens);
+                } else {
+                    new Lexer(reader).tokenize(tokens);
+                }
+                parser = new Parser(tokens);
+                if (parallel) {
+                    parallelParser = new ParallelParser(tokens, ForkJoinPool.commonPool());
+                }
+            } else {
+                parser = new Parser(new Lexer(reader));
+            }
+            parser.setKeepParseTree(outputTree);
+            parser.setRecursiveDescent(recursiveDescent);
+            PassManager passes = null;
+            if (optimizationLevel > 0 || timePasses) {
+                passes = PassManager.forLevel(optimizationLevel);
+                parser.setPassManager(passes);
+                if (parallelParser != null) {
+                    parallelParser.setPassManager(passes);
+                }
+            }
+            if (streaming) { // the tree of the first instruction is not kept when streaming
+                parser.parseStreaming();
+            } else if (parallelParser != null && !outputTree) {
+                parallelParser.parse();
+            } else {
+                parser.parse();
+            }
             if (outputTree) {
                 parser.createTreeFile(texFile);
             }
+            if (timePasses) {
+                passes.printTimes(System.err);
+            }
         } catch (FileNotFoundException e) {
             System.out.println("File not found : \"" + inputFile + "\"");
         } catch (IOException e) {
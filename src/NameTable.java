@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * Interning table for variable names.
+ * Each distinct name gets a dense integer id, counting from 0, so the compiler
+ * can index arrays by variable instead of comparing strings.
+ * The lexer fills the table as it runs: a name already in the table is found
+ * without creating any string.
+ * The table can be shared between threads.
+ */
+public class NameTable {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] slots = new int[INITIAL_CAPACITY * 2]; // open addressing, id + 1 (0 is empty)
+    private int size = 0;
+
+    /**
+     * Get the id of a name given as a part of a character array.
+     * @param text: the characters
+     * @param start: index of the first character of the name
+     * @param length: number of characters of the name
+     * @return the id of the name
+     */
+    public synchronized int intern(char[] text, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; ++i) {
+            hash = 31 * hash + text[start + i];
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return add(new String(text, start, length), hash, slot);
+            }
+            if (hashes[id] == hash && matches(names[id], text, start, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Get the id of a name given as a part of a character sequence.
+     * @param text: the characters
+     * @param start: index of the first character of the name
+     * @param length: number of characters of the name
+     * @return the id of the name
+     */
+    public synchronized int intern(CharSequence text, int start, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; ++i) {
+            hash = 31 * hash + text.charAt(start + i);
+        }
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return add(text.subSequence(start, start + length).toString(), hash, slot);
+            }
+            if (hashes[id] == hash && matches(names[id], text, start, length)) {
+                return id;
+            }
+        }
+    }
+
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    /**
+     * The name of an id. The same string is returned for every occurrence of a name.
+     */
+    public synchronized String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Number of distinct names, every id is smaller.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private static boolean matches(String name, char[] text, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (name.charAt(i) != text[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String name, CharSequence text, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (name.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /*
+        Doubles the slots so that at most half of them are used.
+    */
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; ++id) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+}
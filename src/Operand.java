@@ -0,0 +1,82 @@
+/**
+ * An operand of an instruction of the intermediate representation:
+ * a virtual register, an integer constant, or the memory of a variable given by its slot.
+ */
+public final class Operand {
+
+    public enum Kind {
+        REGISTER,
+        CONSTANT,
+        VARIABLE
+    }
+
+    private final Kind kind;
+    private final int value; // the id of the register, the constant, or the slot of the variable
+
+    private Operand(Kind kind, int value) {
+        this.kind = kind;
+        this.value = value;
+    }
+
+    public static Operand register(int id) {
+        return new Operand(Kind.REGISTER, id);
+    }
+
+    public static Operand constant(int constant) {
+        return new Operand(Kind.CONSTANT, constant);
+    }
+
+    public static Operand variable(int slot) {
+        return new Operand(Kind.VARIABLE, slot);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public boolean isRegister() {
+        return kind == Kind.REGISTER;
+    }
+
+    public boolean isConstant() {
+        return kind == Kind.CONSTANT;
+    }
+
+    public boolean isVariable() {
+        return kind == Kind.VARIABLE;
+    }
+
+    public int getRegister() {
+        return value;
+    }
+
+    public int getConstant() {
+        return value;
+    }
+
+    public int getSlot() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Operand && ((Operand) other).kind == kind && ((Operand) other).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * kind.hashCode() + value;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case REGISTER:
+                return "r" + value;
+            case VARIABLE:
+                return "slot" + value;
+            default:
+                return String.valueOf(value);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Lexer of a large source on several threads.
+ * The source is cut in chunks at line boundaries. A pre-scan that only looks at comment
+ * delimiters tells whether each chunk starts inside a long comment, then each chunk is
+ * lexed by its own FastLexer on a ForkJoin pool, in its own token buffer and name table.
+ * The chunks are then put back together in order: name ids are renumbered as if the names
+ * had been interned in order, warnings are printed in order, and the first error is thrown
+ * after the tokens that come before it. The result is the same as the sequential lexer's.
+ * Tokens record offsets in the whole source, so lines need no correction.
+ */
+public class ParallelLexer {
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final SourceText text;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param text: the source to lex
+     * @param pool: the threads to lex on
+     */
+    public ParallelLexer(SourceText text, ForkJoinPool pool) {
+        this.text = text;
+        this.pool = pool;
+    }
+
+    /*
+        A part of the source and the result of its lexing.
+    */
+    private static class Chunk {
+        final int start;
+        final int end;
+        final boolean inComment;
+        final TokenBuffer tokens = new TokenBuffer();
+        final ByteArrayOutputStream warnings = new ByteArrayOutputStream();
+        Throwable error = null;
+
+        Chunk(int start, int end, boolean inComment) {
+            this.start = start;
+            this.end = end;
+            this.inComment = inComment;
+        }
+    }
+
+    /**
+     * Scan the whole input into a token buffer, up to and including the EOS token.
+     * The buffer must have been reset on the same text.
+     * @param tokens: the buffer to fill
+     */
+    public void tokenize(TokenBuffer tokens) throws PatternSyntaxException {
+        int[] bounds = split();
+        boolean[] inComment = commentStates(bounds);
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i + 1 < bounds.length; ++i) {
+            Chunk chunk = new Chunk(bounds[i], bounds[i + 1], inComment[i]);
+            chunks.add(chunk);
+            tasks.add(() -> {
+                lex(chunk);
+                return null;
+            });
+        }
+        pool.invokeAll(tasks);
+        NameTable names = tokens.getNames();
+        for (Chunk chunk : chunks) {
+            NameTable chunkNames = chunk.tokens.getNames();
+            int[] nameIds = new int[chunkNames.size()];
+            for (int id = 0; id < nameIds.length; ++id) {
+                nameIds[id] = names.intern(chunkNames.getName(id));
+            }
+            boolean last = chunk.end == text.length();
+            int count = chunk.tokens.size();
+            if (chunk.error == null && !last) {
+                --count; // the EOS token of the chunk
+            }
+            tokens.append(chunk.tokens, 0, count, 0, nameIds);
+            System.err.print(chunk.warnings.toString());
+            if (chunk.error instanceof RuntimeException) {
+                throw (RuntimeException) chunk.error;
+            } else if (chunk.error instanceof Error) {
+                throw (Error) chunk.error;
+            }
+        }
+    }
+
+    private void lex(Chunk chunk) {
+        FastLexer lexer = new FastLexer(text, chunk.start, chunk.end, chunk.inComment);
+        lexer.setWarnings(new PrintStream(chunk.warnings, true));
+        chunk.tokens.reset(text, new NameTable());
+        try {
+            lexer.tokenize(chunk.tokens);
+        } catch (RuntimeException | Error e) {
+            chunk.error = e;
+        }
+    }
+
+    /*
+        Offsets where chunks start, followed by the length of the text.
+        Every chunk but the first starts right after a '\n'.
+    */
+    private int[] split() {
+        int length = text.length();
+        int count = Math.max(1, Math.min(length / MIN_CHUNK_SIZE, CHUNKS_PER_THREAD * pool.getParallelism()));
+        int[] bounds = new int[count + 1];
+        int n = 1;
+        for (int i = 1; i < count; ++i) {
+            int newline = text.indexOf('\n', Math.max((int) ((long) length * i / count), bounds[n - 1]));
+            if (newline < 0 || newline + 1 >= length) {
+                break;
+            }
+            if (newline + 1 > bounds[n - 1]) {
+                bounds[n++] = newline + 1;
+            }
+        }
+        bounds[n++] = length;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /*
+        Does each chunk start inside a long comment ?
+        Only ':' and '%' need to be looked at: outside comments, no token but ":=" contains them,
+        a "::" comment hides everything up to the end of its line and a "%%" comment up to the next "%%".
+    */
+    private boolean[] commentStates(int[] bounds) {
+        int chunks = bounds.length - 1;
+        boolean[] states = new boolean[chunks];
+        int length = text.length();
+        int colon = -1; // offset of the next ':' found, length if there is none
+        int percent = -1; // offset of the next '%' found, length if there is none
+        int position = 0;
+        boolean comment = false;
+        int chunk = 1;
+        while (chunk < chunks) {
+            int change = Integer.MAX_VALUE; // offset where the state changes next
+            if (comment) {
+                int end = commentEnd(position);
+                if (end >= 0) {
+                    change = end + 2;
+                }
+            } else {
+                while (position < length) {
+                    if (colon < position) {
+                        colon = nextOrLength(':', position);
+                    }
+                    if (percent < position) {
+                        percent = nextOrLength('%', position);
+                    }
+                    int delimiter = Math.min(colon, percent);
+                    if (delimiter + 1 >= length) {
+                        break;
+                    }
+                    char c = text.charAt(delimiter);
+                    if (text.charAt(delimiter + 1) != c) {
+                        position = delimiter + 1;
+                    } else if (c == ':') {
+                        position = text.indexOfLineTerminator(delimiter + 2);
+                    } else {
+                        change = delimiter + 2;
+                        break;
+                    }
+                }
+            }
+            while (chunk < chunks && bounds[chunk] < change) {
+                states[chunk++] = comment;
+            }
+            position = change;
+            comment = !comment;
+        }
+        return states;
+    }
+
+    private int nextOrLength(char c, int from) {
+        int next = text.indexOf(c, from);
+        return next < 0 ? text.length() : next;
+    }
+
+    /*
+        Offset of the "%%" closing a comment whose content starts at from, -1 if there is none.
+    */
+    private int commentEnd(int from) {
+        int end = text.indexOf('%', from);
+        while (end >= 0 && end + 1 < text.length() && text.charAt(end + 1) != '%') {
+            end = text.indexOf('%', end + 1);
+        }
+        return (end < 0 || end + 1 >= text.length()) ? -1 : end;
+    }
+}
@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parser of a large program on several threads.
+ * A pre-scan of the tokens finds the commas ending the top-level instructions, by counting
+ * the IF and WHILE left open by an END. The top-level instructions are cut in ranges,
+ * and each range is parsed by its own Parser on a ForkJoin pool into a block of instructions.
+ * The blocks are then put back together in order as the <Code> of the program,
+ * which gives the instructions of a sequential parse.
+ * When the pre-scan does not find the shape of a program, or a range does not parse,
+ * the whole input is parsed again sequentially, so errors are the ones of Parser.
+ * The code of each range is generated on the pool too, in a context of its own. It is then
+ * moved after the values and labels of the ranges before it, and follows the frame allocating
+ * the variables of all the ranges, which gives the code of a sequential generation.
+ */
+public class ParallelParser {
+
+    private static final int MIN_RANGE_SIZE = 1 << 16; // tokens
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final TokenBuffer tokens;
+    private final ForkJoinPool pool;
+    private PassManager passes = null;
+    private Ast ast = null;
+
+    /**
+     * @param tokens: the lexed input
+     * @param pool: the threads to parse on
+     */
+    public ParallelParser(TokenBuffer tokens, ForkJoinPool pool) {
+        this.tokens = tokens;
+        this.pool = pool;
+    }
+
+    /**
+     * Run passes on the code of the whole program, as Parser.setPassManager.
+     * The ranges are then only parsed in parallel, and the code of the program is generated as a whole.
+     */
+    public void setPassManager(PassManager passes) {
+        this.passes = passes;
+    }
+
+    /*
+        A range of top-level instructions and the result of its parsing and of its code generation.
+    */
+    private static class Range {
+        final int from;
+        final int to;
+        List<Instruction> block = null; // stays null if the range does not parse
+        StringBuilder code = null; // stays null if the code of the range is not generated
+        int values; // number of llvm values of the code
+        int labels; // number of label ids of the code
+        BitSet variables; // ids of the names of the variables of the code
+
+        Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Parse the input into the tree of instructions, ready for code generation.
+     */
+    public Ast createAst() throws IOException {
+        List<Range> ranges = parseRanges(false);
+        if (ranges == null) {
+            return parseSequentially();
+        }
+        Instruction root = new Instruction(null);
+        for (Range range : ranges) {
+            root.getThenList().addAll(range.block);
+        }
+        this.ast = new Ast(root);
+        return this.ast;
+    }
+
+    /**
+     * Parse the input and print its code.
+     * When a range does not parse, or its code generation fails, the whole input
+     * is parsed and generated again sequentially, so errors are the ones of Parser.
+     */
+    public void parse() throws IOException {
+        if (passes != null) {
+            createAst();
+            LlvmGenerator llvmGenerator = new LlvmGenerator(this.ast.getRoot(), new CompilationContext(), System.out);
+            llvmGenerator.setPassManager(passes);
+            llvmGenerator.generate();
+            return;
+        }
+        List<Range> ranges = parseRanges(true);
+        if (ranges == null) {
+            parseSequentially();
+            new LlvmGenerator(this.ast.getRoot(), new CompilationContext(), System.out).generate();
+            return;
+        }
+        CompilationContext context = new CompilationContext();
+        BitSet variables = new BitSet();
+        for (Range range : ranges) {
+            variables.or(range.variables);
+        }
+        for (int id = variables.nextSetBit(0); id >= 0; id = variables.nextSetBit(id + 1)) {
+            context.getSymbolTable().add(id, tokens.getNames().getName(id));
+        }
+        LlvmGenerator llvmGenerator = new LlvmGenerator(context, System.out);
+        StringBuilder frame = new StringBuilder(llvmGenerator.header());
+        llvmGenerator.generateFrame(frame);
+        llvmGenerator.print(frame);
+        int values = 0;
+        int labels = 0;
+        for (Range range : ranges) {
+            llvmGenerator.print(LlvmGenerator.relocate(range.code, values, labels));
+            range.code = null;
+            values += range.values;
+            labels += range.labels;
+        }
+        llvmGenerator.end();
+    }
+
+    /*
+        Parse the ranges of the input on the pool, and generate their code if asked.
+        Null when the input is not cut in several ranges, or a range fails.
+    */
+    private List<Range> parseRanges(boolean generate) {
+        int[] bounds = split();
+        if (bounds == null || bounds.length <= 2) {
+            return null;
+        }
+        List<Range> ranges = new ArrayList<Range>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i + 1 < bounds.length; ++i) {
+            Range range = new Range(bounds[i], bounds[i + 1]);
+            ranges.add(range);
+            tasks.add(() -> {
+                parse(range);
+                if (generate && range.block != null) {
+                    generate(range);
+                }
+                return null;
+            });
+        }
+        pool.invokeAll(tasks);
+        for (Range range : ranges) {
+            if (generate ? range.code == null : range.block == null) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+
+    private void parse(Range range) {
+        try {
+            range.block = parseRange(tokens, range.from, range.to);
+        } catch (IOException | RuntimeException | Error e) {
+            // the error is thrown again by the sequential parse
+        }
+    }
+
+    private void generate(Range range) {
+        CompilationContext context = new CompilationContext();
+        LlvmGenerator llvmGenerator = new LlvmGenerator(context, null);
+        StringBuilder code = new StringBuilder();
+        try {
+            for (Instruction instruction : range.block) {
+                llvmGenerator.generate(instruction, code);
+            }
+        } catch (RuntimeException | Error e) {
+            return; // the error is thrown again by the sequential generation
+        }
+        range.block = null; // the instructions are changed by their generation
+        range.code = code;
+        range.values = context.n() + 1;
+        range.labels = context.getLabelCount();
+        range.variables = context.getVariables();
+    }
+
+    /**
+     * Parse a range of instructions of a token buffer, each one followed by its comma.
+     * The tokens of the range are copied in a buffer of their own, followed by
+     * the END of the program and EOS, and parsed as the body of a program.
+     * A syntax error in the range throws the error of Parser.
+     * @param tokens: the lexed input
+     * @param from: index of the first token of the range
+     * @param to: index after the last token of the range
+     * @return the instructions, or null if the range is not a sequence of instructions
+     */
+    static List<Instruction> parseRange(TokenBuffer tokens, int from, int to) throws IOException {
+        TokenBuffer rangeTokens = new TokenBuffer();
+        rangeTokens.reset(tokens.getText(), tokens.getNames(), tokens.getLines());
+        rangeTokens.append(tokens, from, to, 0, null);
+        int end = (to < tokens.size()) ? tokens.getStart(to) : tokens.getText().length();
+        rangeTokens.add(LexicalUnit.END, end, 0, 0);
+        rangeTokens.add(LexicalUnit.EOS, end, 0, 0);
+        Parser parser = new Parser(rangeTokens);
+        List<Instruction> block = parser.buildBlock(new AstBuilder());
+        return (rangeTokens.position() == to - from) ? block : null; // an END of the range is not the end of a block
+    }
+
+    private Ast parseSequentially() throws IOException {
+        tokens.rewind();
+        Parser parser = new Parser(tokens);
+        this.ast = parser.createAst();
+        return this.ast;
+    }
+
+    /*
+        Indexes of the tokens where ranges start, followed by the index of the END of the program.
+        The first range starts after the name of the program, the others after a top-level comma.
+        Null when the tokens do not have the shape of a program:
+        BEGIN [ProgName], instructions each followed by a comma, END and EOS.
+    */
+    private int[] split() {
+        int size = tokens.size();
+        if (size < 4 || tokens.getType(0) != LexicalUnit.BEGIN || tokens.getType(1) != LexicalUnit.PROGNAME) {
+            return null;
+        }
+        int[] ends = new int[1024]; // index after each top-level comma
+        int endCount = 0;
+        int depth = 0;
+        int end = -1;
+        for (int i = 2; i < size && end < 0; ++i) {
+            switch (tokens.getType(i)) {
+                case IF:
+                case WHILE:
+                    ++depth;
+                    break;
+                case END:
+                    if (depth == 0) {
+                        end = i;
+                    }
+                    --depth;
+                    break;
+                case COMMA:
+                    if (depth == 0) {
+                        if (endCount == ends.length) {
+                            ends = Arrays.copyOf(ends, endCount * 2);
+                        }
+                        ends[endCount++] = i + 1;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (end < 0 || end + 1 >= size || tokens.getType(end + 1) != LexicalUnit.EOS) {
+            return null;
+        }
+        if (end > 2 && (endCount == 0 || ends[endCount - 1] != end)) {
+            return null; // the last instruction is not followed by a comma
+        }
+        int count = Math.max(1, Math.min((end - 2) / MIN_RANGE_SIZE, RANGES_PER_THREAD * pool.getParallelism()));
+        int[] bounds = new int[count + 1];
+        bounds[0] = 2;
+        int n = 1;
+        int next = 0;
+        for (int i = 1; i < count; ++i) {
+            long target = 2 + (long) (end - 2) * i / count;
+            while (next < endCount && ends[next] < target) {
+                ++next;
+            }
+            if (next < endCount && ends[next] < end && ends[next] > bounds[n - 1]) {
+                bounds[n++] = ends[next];
+            }
+        }
+        bounds[n++] = end;
+        return Arrays.copyOf(bounds, n);
+    }
+}
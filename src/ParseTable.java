@@ -0,0 +1,35 @@
+/**
+ * LL(1) parse table of the Fortress grammar.
+ * Generated by ParseTableGenerator from src/grammar/Fortress_grammar.txt, do not edit.
+ */
+public final class ParseTable {
+
+    /**
+     * Entry of the table when no rule applies: the input has a syntax error.
+     */
+    public static final short NO_RULE = -1;
+
+    /**
+     * Index of the rule to apply, by variable to expand and by lexical unit of the next token.
+     */
+    public static final short[][] RULES = {
+        /* PROGRAM */ {0, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+        /* CODE */ {-1, -1, 2, -1, 1, -1, -1, -1, -1, -1, -1, -1, -1, 1, -1, -1, 2, -1, -1, -1, 1, -1, 1, 1, -1, -1},
+        /* INSTRUCTION */ {-1, -1, -1, -1, 3, -1, -1, -1, -1, -1, -1, -1, -1, 4, -1, -1, -1, -1, -1, -1, 5, -1, 6, 7, -1, -1},
+        /* ASSIGN */ {-1, -1, -1, -1, 8, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+        /* EXPRARITH */ {-1, -1, -1, -1, 9, -1, 9, 9, -1, 9, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+        /* EXPRARITHPRIME */ {-1, -1, -1, 12, -1, -1, -1, -1, 12, 11, 10, -1, -1, -1, -1, -1, -1, 12, 12, 12, -1, -1, -1, -1, -1, -1},
+        /* PROD */ {-1, -1, -1, -1, 13, -1, 13, 13, -1, 13, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+        /* PRODPRIME */ {-1, -1, -1, 16, -1, -1, -1, -1, 16, 16, 16, 14, 15, -1, -1, -1, -1, 16, 16, 16, -1, -1, -1, -1, -1, -1},
+        /* ATOM */ {-1, -1, -1, -1, 17, -1, 18, 19, -1, 20, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+        /* IF */ {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 21, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+        /* IFSEQ */ {-1, -1, 22, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 23, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+        /* COND */ {-1, -1, -1, -1, 24, -1, 24, 24, -1, 24, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+        /* COMP */ {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 25, 26, 27, -1, -1, -1, -1, -1, -1},
+        /* WHILE */ {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 28, -1, -1, -1, -1, -1},
+        /* PRINT */ {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 29, -1, -1, -1},
+        /* READ */ {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 30, -1, -1},
+    };
+
+    private ParseTable() {}
+}
@@ -97,6 +97,13 @@ public class ParseTree {
         return this.label.getString();
     }
 
+    /**
+     * Id of the variable name held by this leaf.
+     */
+    public int getNameId() {
+        return this.label.getSymbol().getNameId();
+    }
+
     public List<ParseTree> getChildren() {
         return this.children;
     }
@@ -136,7 +143,7 @@ public class ParseTree {
     }
 
     public void setChildren(GrammarUnit[] units) {
-        ArrayList<ParseTree> list = new ArrayList<ParseTree>();
+        ArrayList<ParseTree> list = new ArrayList<ParseTree>(units.length);
         for (int i = 0; i < units.length; ++i) {
             list.add(new ParseTree(units[i]));
         }
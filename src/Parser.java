@@ -2,30 +2,69 @@ import java.io.IOException;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.File;
+import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Collections;
 
 /**
  * This class is used to parse the input file using the grammar and the action table.
- * It uses a top-down recursive parsing algorithm.
+ * It uses a top-down LL(1) parsing algorithm, with an explicit stack instead of recursion.
  */
 public class Parser {
 
+    private static final Variable[] VARIABLES = Variable.values();
+    private static final LexicalUnit[] UNITS = LexicalUnit.values();
+
+    /* Items of the stack of buildAst, besides the ordinals of variables */
+    private static final int TERMINAL = 1 << 8; // plus the ordinal of the lexical unit
+    private static final int REDUCE = 2 << 8; // plus the index of the rule that ends
+    private static final int BEGIN_BLOCK = -1;
+    private static final int END_BLOCK = -2;
+    private static final int MAX_DESCENT_DEPTH = 256; // nesting the generated parser is used for, far below what the stack holds
+
     private Grammar grammar = new Grammar();
     private Lexer lexer = null;
+    private TokenBuffer tokens = null;
+    private TokenPipe pipe = null;
     private Symbol symbolPending = null;
     private ParseTree parseTree = null;
-    private ActionTable actionTable = new ActionTable(grammar);
     private ArrayList<Rule> rules = new ArrayList<Rule>();
+    private boolean recordRules = true; // whether rules are kept for the left derivation
+    private boolean keepParseTree = false;
+    private boolean recursiveDescent = false;
+    private final ExpressionParser expressions = new ExpressionParser(); // parses the <ExprArith> by precedence climbing
 
     private Ast ast = null;
+    private final CompilationContext context = new CompilationContext(); // the state of the compilation of the input
+    private PassManager passes = null; // run on the code of the program, if any
 
     public Parser(Lexer lexer) {
         this.lexer = lexer;
     }
 
+    /**
+     * Creates a parser reading an already lexed input.
+     */
+    public Parser(TokenBuffer tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Creates a parser reading the tokens of a lexer running on another thread.
+     */
+    public Parser(TokenPipe pipe) {
+        this.pipe = pipe;
+    }
+
     public Symbol getNextChar() throws IOException {
+        if (tokens != null) {
+            return tokens.next();
+        }
+        if (pipe != null) {
+            return pipe.next();
+        }
         Symbol s = null;
         if (symbolPending == null) {
             s = lexer.nextToken();
@@ -37,6 +76,12 @@ public class Parser {
     }
 
     public Symbol getNextCharDontConsume() throws IOException {
+        if (tokens != null) {
+            return tokens.peek();
+        }
+        if (pipe != null) {
+            return pipe.peek();
+        }
         if (symbolPending == null) {
             symbolPending = lexer.nextToken();
         }
@@ -44,36 +89,93 @@ public class Parser {
     }
 
     /*
-        Input: rule, parent
-        Each symbol at the right hand side of the rule will be treated
-        if it's a variable, there will be a recursive call with a new rule getted
-        from the action table.
+        Type of the next symbol, without consuming it.
+        With a token buffer or a pipe no symbol is built.
+    */
+    private LexicalUnit getNextType() throws IOException {
+        if (tokens != null) {
+            return tokens.peekType();
+        }
+        if (pipe != null) {
+            return pipe.peekType();
+        }
+        return getNextCharDontConsume().getType();
+    }
+
+    /*
+        Treats one symbol of a right hand side.
+        when it's a variable, its rule is getted from the parse table and its right hand side
+        becomes its children, which are left to expand.
         when the symbole is a lexical unit, it's simpley added to the tree (if there is a match)
+        Returns whether the node got children to treat.
     */
-    private void recurse(Rule rule, ParseTree parent) throws IOException {
-        GrammarUnit[] right = rule.getRight();
-        parent.setChildren(right);
-        for (int i = 0; i < right.length; i++) {
-            GrammarUnit unit = right[i];
-            Symbol nextSymbol = null;
-            if (unit.isVariable()) {
-                nextSymbol = getNextCharDontConsume();
-                Rule nextRule = actionTable.getCorrespondingRule(nextSymbol, unit);
-                if (nextRule == null) {
-                    throw new Error("No rule in action table");
-                }
-                rules.add(nextRule);
-                if (!nextRule.isEpsilon()) {
-                    recurse(nextRule, parent.get(i));
-                }
-            } else {
-                nextSymbol = getNextChar();
-                if (unit.getType() != nextSymbol.getType()) {
-                    throw new Error("Inputs are not matching !");
-                } else {
-                    GrammarUnit[] units = {new GrammarUnit(nextSymbol)};
-                    parent.get(i).setChildren(units);
+    private boolean derive(ParseTree child) throws IOException {
+        GrammarUnit unit = child.getLabel();
+        if (unit.isVariable()) {
+            Rule nextRule = selectRule(unit.getVariable());
+            if (nextRule.isEpsilon()) {
+                return false;
+            }
+            child.setChildren(nextRule.getRight());
+            return true;
+        }
+        GrammarUnit[] units = {new GrammarUnit(match(unit.getType()))};
+        child.setChildren(units);
+        return false;
+    }
+
+    /*
+        The rule of the parse table for a variable and the next symbol.
+    */
+    private Rule selectRule(Variable variable) throws IOException {
+        short nextRuleIdx = ParseTable.RULES[variable.ordinal()][getNextType().ordinal()];
+        if (nextRuleIdx == ParseTable.NO_RULE) {
+            throw new Error("No rule in action table");
+        }
+        Rule nextRule = grammar.getRule(nextRuleIdx);
+        if (recordRules) {
+            rules.add(nextRule);
+        }
+        return nextRule;
+    }
+
+    /*
+        Consumes the next symbol, which must be of the given type.
+    */
+    private Symbol match(LexicalUnit type) throws IOException {
+        Symbol nextSymbol = getNextChar();
+        if (type != nextSymbol.getType()) {
+            throw new Error("Inputs are not matching !");
+        }
+        return nextSymbol;
+    }
+
+    /*
+        Input: parent, whose children are the right hand side of its rule
+        Each child is treated in order, depth first: the children a variable gets
+        are treated before the following symbols.
+        The nodes whose children are being treated are kept on an explicit stack
+        with the index of their next child, so nesting is not limited by the thread stack.
+        A node leaves the stack when its last child is taken, so a chain of right recursive
+        rules such as <Code> does not grow the stack.
+    */
+    private void expand(ParseTree parent) throws IOException {
+        ArrayList<ParseTree> nodes = new ArrayList<ParseTree>();
+        int[] next = new int[64]; // index of the next child to treat, for each node of the stack
+        nodes.add(parent);
+        while (!nodes.isEmpty()) {
+            int top = nodes.size() - 1;
+            ParseTree node = nodes.get(top);
+            ParseTree child = node.get(next[top]++);
+            if (next[top] == node.numChildren()) {
+                nodes.remove(top);
+            }
+            if (derive(child)) {
+                if (nodes.size() == next.length) {
+                    next = Arrays.copyOf(next, next.length * 2);
                 }
+                next[nodes.size()] = 0;
+                nodes.add(child);
             }
         }
     }
@@ -88,22 +190,329 @@ public class Parser {
         System.out.print("\n");
     }
 
-    public void parse() throws IOException {
+    /**
+     * Rules of the left derivation, in order.
+     * The rules of the expressions are only in it when the parse tree is kept,
+     * as the expressions are otherwise parsed by an ExpressionParser.
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Parse the whole input into a parse tree, without generating any code.
+     * A pipe the tokens are read from is closed once the parser stops.
+     * @return whether the whole input was read
+     */
+    public boolean buildParseTree() throws IOException {
+        try {
+            Rule start = grammar.getRule(0);
+            rules.add(start);
+            parseTree = new ParseTree(start.getLeftHandSide());
+            parseTree.setChildren(start.getRight());
+            expand(parseTree);
+            return getNextChar().getType() == LexicalUnit.EOS;
+        } finally {
+            closePipe();
+        }
+    }
+
+    /**
+     * Parse the whole input into a compact tree, without generating any code.
+     * The tree has the nodes buildParseTree would have made, with the same explicit stack.
+     * The parser must read a token buffer: the leaves keep the indexes of their tokens.
+     * @param tree: the tree to fill, emptied first
+     * @return whether the whole input was read
+     */
+    public boolean buildCompactTree(CompactTree tree) throws IOException {
+        if (tokens == null) {
+            throw new IllegalStateException("A compact tree is built from a token buffer");
+        }
+        tree.reset(tokens);
         Rule start = grammar.getRule(0);
         rules.add(start);
-        parseTree = new ParseTree(start.getLeftHandSide());
-        recurse(start, parseTree);
-        if (getNextChar().getType() == LexicalUnit.EOS) {
-            // Warning: uncommenting this line will print the left derivation
-            // left_derivation();
-            this.ast = new Ast(parseTree);
-            this.ast.create();
-            LlvmGenerator llvmGenerator = new LlvmGenerator(this.ast.getRoot());
-            llvmGenerator.generate();
+        int root = tree.addRoot(start.getLeftHandSide().getVariable());
+        int[] stack = new int[64]; // the next node to treat, for each node whose children are being treated
+        int top = 0;
+        stack[top++] = tree.setChildren(root, start.getRight());
+        while (top > 0) {
+            int node = stack[--top];
+            if (tree.getNextSibling(node) != CompactTree.NONE) {
+                stack[top++] = tree.getNextSibling(node);
+            }
+            if (tree.isVariable(node)) {
+                Rule rule = selectRule(tree.getVariable(node));
+                if (!rule.isEpsilon()) {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = tree.setChildren(node, rule.getRight());
+                }
+            } else {
+                int token = tokens.position();
+                match(tree.getType(node));
+                tree.setToken(node, token);
+            }
+        }
+        return getNextChar().getType() == LexicalUnit.EOS;
+    }
+
+    /**
+     * The tree built by buildParseTree.
+     */
+    public ParseTree getParseTree() {
+        return parseTree;
+    }
+
+    /**
+     * Parse the whole input and build the instruction tree on the fly, without the parse tree.
+     * The parser keeps the grammar units left to read on an explicit stack, with a mark
+     * where each rule ends so the builder can replace the values of its right hand side
+     * by the value of its variable, and marks around each block of instructions.
+     * The rules of <Code> are not marked: a block is read as a loop and not as a chain of rules.
+     * A pipe the tokens are read from is closed once the parser stops.
+     * @param builder: the builder of the instructions
+     * @return whether the whole input was read
+     */
+    public boolean buildAst(AstBuilder builder) throws IOException {
+        try {
+            int[] stack = new int[64];
+            Rule start = grammar.getRule(0);
+            if (recordRules) {
+                rules.add(start);
+            }
+            int top = push(stack, 0, start);
+            run(builder, stack, top);
+            return getNextChar().getType() == LexicalUnit.EOS;
+        } finally {
+            closePipe();
+        }
+    }
+
+    /*
+        Stop the lexer thread of a pipe, whether the parser reached the end of the input or stopped on an error.
+    */
+    private void closePipe() {
+        if (pipe != null) {
+            pipe.close();
+        }
+    }
+
+    /**
+     * Parse a sequence of instructions followed by END, as the body of a program,
+     * and build its instructions. The END is not consumed, and the left derivation is not kept.
+     * @param builder: the builder of the instructions
+     * @return the instructions, or null if the sequence is not followed by END
+     */
+    public List<Instruction> buildBlock(AstBuilder builder) throws IOException {
+        recordRules = false;
+        int[] stack = {END_BLOCK, Variable.CODE.ordinal(), BEGIN_BLOCK};
+        run(builder, stack, stack.length);
+        return (getNextType() == LexicalUnit.END) ? builder.takeBlock() : null;
+    }
+
+    /*
+        Treat the items of the stack of buildAst until it is empty.
+    */
+    private void run(AstBuilder builder, int[] stack, int top) throws IOException {
+        while (top > 0) {
+            int item = stack[--top];
+            if (item == BEGIN_BLOCK) {
+                builder.beginBlock();
+            } else if (item == END_BLOCK) {
+                builder.endBlock();
+            } else if (item >= REDUCE) {
+                builder.reduce(grammar.getRule(item - REDUCE));
+            } else if (item >= TERMINAL) {
+                builder.shift(match(UNITS[item - TERMINAL]));
+            } else if (item == Variable.EXPRARITH.ordinal()) {
+                builder.expression(parseExpression());
+            } else {
+                Rule rule = selectRule(VARIABLES[item]);
+                if (stack.length - top < 3 * rule.getRight().length + 1) {
+                    stack = Arrays.copyOf(stack, stack.length * 2 + 3 * rule.getRight().length);
+                }
+                top = push(stack, top, rule);
+            }
+        }
+    }
+
+    /*
+        Give the tokens of an <ExprArith> to the expression parser, up to the first one
+        which does not belong to the expression.
+    */
+    private ParseTree parseExpression() throws IOException {
+        while (expressions.accepts(getNextType())) {
+            expressions.shift(getNextChar());
+        }
+        return expressions.finish();
+    }
+
+    /*
+        Push the items of a rule: its end mark if it has a value, then its right hand side,
+        backwards so the first unit is on top. A <Code> inside another rule is put between block marks.
+        The stack must have room for three items per unit and one more.
+    */
+    private static int push(int[] stack, int top, Rule rule) {
+        Variable left = rule.getLeftHandSide().getVariable();
+        if (left != Variable.CODE) {
+            stack[top++] = REDUCE + rule.idx();
+        }
+        if (rule.isEpsilon()) {
+            return top;
+        }
+        GrammarUnit[] right = rule.getRight();
+        for (int i = right.length - 1; i >= 0; --i) {
+            if (!right[i].isVariable()) {
+                stack[top++] = TERMINAL + right[i].getType().ordinal();
+            } else if (right[i].getVariable() == Variable.CODE && left != Variable.CODE) {
+                stack[top++] = END_BLOCK;
+                stack[top++] = Variable.CODE.ordinal();
+                stack[top++] = BEGIN_BLOCK;
+            } else {
+                stack[top++] = right[i].getVariable().ordinal();
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Parse the input into the tree of instructions, ready for code generation.
+     * The parse tree is only built if it was asked for, otherwise the instructions are built directly.
+     */
+    public Ast createAst() throws IOException {
+        if (keepParseTree) {
+            if (buildParseTree()) {
+                this.ast = new Ast(parseTree);
+                this.ast.create(context);
+                return this.ast;
+            }
+        } else if (recursiveDescent && tokens != null) {
+            AstBuilder builder = descend();
+            if (builder != null) {
+                this.ast = new Ast(builder.getRoot());
+                return this.ast;
+            }
         } else {
-            throw new Error("Parsing unsuccessfull");
+            AstBuilder builder = new AstBuilder();
+            if (buildAst(builder)) {
+                this.ast = new Ast(builder.getRoot());
+                return this.ast;
+            }
+        }
+        throw new Error("Parsing unsuccessfull");
+    }
 
+    /*
+        Parse the token buffer with the generated recursive descent parser.
+        Its recursion follows the nesting of blocks: when they nest deeper than
+        MAX_DESCENT_DEPTH, the input is parsed by buildAst instead, which has no such limit.
+        Returns the builder holding the instructions, or null if the input was not read entirely.
+    */
+    private AstBuilder descend() throws IOException {
+        AstBuilder builder = new AstBuilder();
+        if (nesting(tokens) > MAX_DESCENT_DEPTH) {
+            return buildAst(builder) ? builder : null;
+        }
+        RecursiveDescentParser descent = new RecursiveDescentParser(tokens, builder);
+        boolean complete = descent.parse();
+        if (recordRules) {
+            for (int idx : descent.getDerivation()) {
+                rules.add(grammar.getRule(idx));
+            }
+        }
+        return complete ? builder : null;
+    }
+
+    /*
+        The deepest nesting of blocks in the tokens left to read.
+        The tokens closing a block are not checked against the ones opening it:
+        an input whose nesting does not match is reported by the parser.
+    */
+    private static int nesting(TokenBuffer tokens) {
+        int depth = 0;
+        int deepest = 0;
+        for (int idx = tokens.position(); idx < tokens.size(); ++idx) {
+            switch (tokens.getType(idx)) {
+                case IF:
+                case WHILE:
+                    deepest = Math.max(deepest, ++depth);
+                    break;
+                case END:
+                    --depth;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return deepest;
+    }
+
+    public void parse() throws IOException {
+        parse(System.out);
+    }
+
+    /**
+     * Parse the input and print its code.
+     * @param out: where the code is printed
+     */
+    public void parse(PrintStream out) throws IOException {
+        createAst();
+        // Warning: uncommenting this line will print the left derivation
+        // left_derivation();
+        LlvmGenerator llvmGenerator = new LlvmGenerator(this.ast.getRoot(), context, out);
+        llvmGenerator.setPassManager(passes);
+        llvmGenerator.generate();
+    }
+
+    /**
+     * Run passes on the code of the whole program before it is printed by parse().
+     * Not used when streaming, where the code of each instruction is printed as soon as it is parsed.
+     * @param passes: the pipeline, null to print the code as the instructions give it
+     */
+    public void setPassManager(PassManager passes) {
+        this.passes = passes;
+    }
+
+    /**
+     * The state of the compilation of the input, with the slots of its variables once it is parsed.
+     */
+    public CompilationContext getContext() {
+        return context;
+    }
+
+    /**
+     * Build the parse tree when parsing, for createTreeFile.
+     */
+    public void setKeepParseTree(boolean keepParseTree) {
+        this.keepParseTree = keepParseTree;
+    }
+
+    /**
+     * Build the instructions with the parser generated from the grammar, RecursiveDescentParser,
+     * instead of the table-driven one. Only used when reading a token buffer, and not when streaming.
+     */
+    public void setRecursiveDescent(boolean recursiveDescent) {
+        this.recursiveDescent = recursiveDescent;
+    }
+
+    /**
+     * Parse the input and print the code of each top-level instruction as soon as
+     * the comma closing it is read. Top-level instructions are not kept,
+     * so the memory used depends on the largest instruction and not on the length of the program.
+     * The code is the one of parse(), but the code of the first instructions is printed before
+     * a syntax error further in the input is found, and the variables are allocated at the start
+     * of the code of the first top-level instruction using them, instead of in the entry block.
+     * The left derivation is not kept either.
+     */
+    public void parseStreaming() throws IOException {
+        recordRules = false;
+        LlvmGenerator llvmGenerator = new LlvmGenerator(context, System.out);
+        llvmGenerator.begin();
+        if (!buildAst(new AstBuilder(llvmGenerator))) {
+            throw new Error("Parsing unsuccessfull");
         }
+        llvmGenerator.end();
     }
 
     /**
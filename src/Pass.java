@@ -0,0 +1,20 @@
+/**
+ * A pass over the intermediate representation of a program, run by a PassManager.
+ */
+public interface Pass {
+
+    /**
+     * The name of the pass in the timings.
+     */
+    String getName();
+
+    /**
+     * Run the pass on a graph.
+     * The edges of the graph are up to date when the pass starts, and the analyses
+     * are the ones of the graph as it is then.
+     * @param cfg: the graph, changed in place
+     * @param analyses: the analyses of the graph
+     * @return whether the graph was changed, in which case the analyses are dropped
+     */
+    boolean run(ControlFlowGraph cfg, AnalysisManager analyses);
+}
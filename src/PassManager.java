@@ -0,0 +1,107 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The pipeline of passes run on the intermediate representation of a program before it is printed.
+ * Every pipeline starts with the layout of the frame, which allocates the variables in the entry block.
+ * The pipelines of the optimization levels then are:
+ * -O0: no other pass, the code is the one the instructions give;
+ * -O1: the construction of the static single assignment form, which holds the variables in registers,
+ * then constant folding, the simplification of the graph and the removal of dead code;
+ * -O2: also the motion of invariant code out of the loops before the removal of dead code.
+ * The time of each pass is added up over the graphs it runs on.
+ */
+public class PassManager {
+
+    private final int level;
+    private final List<Pass> passes = new ArrayList<Pass>();
+    private long[] times = new long[0]; // nanoseconds, by pass
+    private int[] changes = new int[0]; // number of runs changing the graph, by pass
+    private int analyses = 0; // number of analyses computed
+
+    /**
+     * An empty pipeline.
+     * @param level: the optimization level it is reported as
+     */
+    public PassManager(int level) {
+        this.level = level;
+    }
+
+    /**
+     * The pipeline of an optimization level, from 0 to 2.
+     */
+    public static PassManager forLevel(int level) {
+        PassManager manager = new PassManager(level);
+        manager.add(new FrameLayout());
+        if (level >= 1) {
+            manager.add(new SsaConstruction());
+            manager.add(new ConstantFolding());
+            manager.add(new SimplifyCfg());
+        }
+        if (level >= 2) {
+            manager.add(new LoopInvariantCodeMotion());
+        }
+        if (level >= 1) {
+            manager.add(new DeadCodeElimination());
+        }
+        return manager;
+    }
+
+    /**
+     * Add a pass at the end of the pipeline.
+     */
+    public void add(Pass pass) {
+        passes.add(pass);
+        times = Arrays.copyOf(times, passes.size());
+        changes = Arrays.copyOf(changes, passes.size());
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public List<Pass> getPasses() {
+        return passes;
+    }
+
+    /**
+     * Run the passes on a graph, in order.
+     * @param cfg: the graph of a whole program, whose last block ends the program
+     */
+    public void run(ControlFlowGraph cfg) {
+        AnalysisManager analysisManager = new AnalysisManager(cfg);
+        cfg.updateEdges();
+        for (int i = 0; i < passes.size(); ++i) {
+            long start = System.nanoTime();
+            boolean changed = passes.get(i).run(cfg, analysisManager);
+            if (changed) {
+                analysisManager.invalidate();
+                ++changes[i];
+            }
+            times[i] += System.nanoTime() - start;
+        }
+        analyses += analysisManager.getComputedCount();
+    }
+
+    /**
+     * Time spent in a pass so far, in nanoseconds.
+     */
+    public long getTime(int idx) {
+        return times[idx];
+    }
+
+    /**
+     * Print the time of each pass, with the number of its runs which changed the graph.
+     */
+    public void printTimes(PrintStream out) {
+        long total = 0;
+        out.println("===== Pass timings (-O" + level + ") =====");
+        for (int i = 0; i < passes.size(); ++i) {
+            out.printf("%10.3f ms %6d changed  %s%n", times[i] / 1e6, changes[i], passes.get(i).getName());
+            total += times[i];
+        }
+        out.printf("%10.3f ms total, %d analyses computed%n", total / 1e6, analyses);
+    }
+}
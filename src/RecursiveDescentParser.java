@@ -0,0 +1,346 @@
+import java.util.Arrays;
+
+/**
+ * Recursive descent parser of the Fortress grammar, with one method per variable.
+ * Generated by ParserGenerator from src/grammar/Fortress_grammar.txt, do not edit.
+ * It gives the builder the same tokens, rules and blocks as Parser.buildAst,
+ * and records the same left derivation. Chains of rules ending with their own variable
+ * are loops, so only nested blocks use the thread stack, and each <ExprArith>
+ * is parsed by an ExpressionParser, without recursion.
+ */
+public final class RecursiveDescentParser {
+
+    private final TokenBuffer tokens;
+    private final AstBuilder builder;
+    private final ExpressionParser expressions = new ExpressionParser();
+    private final Grammar grammar = new Grammar();
+    private int[] derivation = new int[1024]; // indexes of the rules, in order
+    private int derived = 0;
+    private int[] deferred = new int[64]; // rules of a loop, reduced when it ends
+    private int deferredTop = 0;
+
+    /**
+     * @param tokens: the lexed input, read from its cursor
+     * @param builder: the builder of the instructions
+     */
+    public RecursiveDescentParser(TokenBuffer tokens, AstBuilder builder) {
+        this.tokens = tokens;
+        this.builder = builder;
+    }
+
+    /**
+     * Parse the whole input.
+     * A syntax error throws the same error as the table-driven parser.
+     * @return whether the whole input was read
+     */
+    public boolean parse() {
+        derive(0);
+        if (tokens.peekOrdinal() != 0) {
+            throw mismatch();
+        }
+        builder.shift(tokens.next()); // BEGIN
+        if (tokens.peekOrdinal() != 1) {
+            throw mismatch();
+        }
+        builder.shift(tokens.next()); // PROGNAME
+        builder.beginBlock();
+        parseCode();
+        builder.endBlock();
+        if (tokens.peekOrdinal() != 2) {
+            throw mismatch();
+        }
+        builder.shift(tokens.next()); // END
+        reduce(0);
+        return tokens.peekOrdinal() == 24; // EOS
+    }
+
+    /**
+     * Indexes of the rules of the left derivation, in order.
+     */
+    public int[] getDerivation() {
+        return Arrays.copyOf(derivation, derived);
+    }
+
+    private void parseCode() { // <Code>
+        while (true) {
+            switch (tokens.peekOrdinal()) {
+                case 4: case 13: case 20: case 22: case 23: // VARNAME, IF, WHILE, PRINT, READ
+                    derive(1);
+                    parseInstruction();
+                    if (tokens.peekOrdinal() != 3) {
+                        throw mismatch();
+                    }
+                    builder.shift(tokens.next()); // COMMA
+                    continue;
+                case 2: case 16: // END, ELSE
+                    derive(2);
+                    break;
+                default:
+                    throw noRule();
+            }
+            break;
+        }
+    }
+
+    private void parseInstruction() { // <Instruction>
+        switch (tokens.peekOrdinal()) {
+            case 4: // VARNAME
+                derive(3);
+                parseAssign();
+                reduce(3);
+                return;
+            case 13: // IF
+                derive(4);
+                parseIF();
+                reduce(4);
+                return;
+            case 20: // WHILE
+                derive(5);
+                parseWhile();
+                reduce(5);
+                return;
+            case 22: // PRINT
+                derive(6);
+                parsePrint();
+                reduce(6);
+                return;
+            case 23: // READ
+                derive(7);
+                parseRead();
+                reduce(7);
+                return;
+            default:
+                throw noRule();
+        }
+    }
+
+    private void parseAssign() { // <Assign>
+        switch (tokens.peekOrdinal()) {
+            case 4: // VARNAME
+                derive(8);
+                builder.shift(tokens.next()); // VARNAME
+                if (tokens.peekOrdinal() != 5) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // ASSIGN
+                parseExprArith();
+                reduce(8);
+                return;
+            default:
+                throw noRule();
+        }
+    }
+
+    private void parseExprArith() { // <ExprArith>
+        while (expressions.accepts(tokens.peekType())) {
+            expressions.shift(tokens.next());
+        }
+        builder.expression(expressions.finish());
+    }
+
+    private void parseIF() { // <IF>
+        switch (tokens.peekOrdinal()) {
+            case 13: // IF
+                derive(21);
+                builder.shift(tokens.next()); // IF
+                if (tokens.peekOrdinal() != 7) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // LPAREN
+                parseCond();
+                if (tokens.peekOrdinal() != 8) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // RPAREN
+                if (tokens.peekOrdinal() != 14) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // THEN
+                builder.beginBlock();
+                parseCode();
+                builder.endBlock();
+                parseIfSeq();
+                reduce(21);
+                return;
+            default:
+                throw noRule();
+        }
+    }
+
+    private void parseIfSeq() { // <IfSeq>
+        switch (tokens.peekOrdinal()) {
+            case 2: // END
+                derive(22);
+                builder.shift(tokens.next()); // END
+                reduce(22);
+                return;
+            case 16: // ELSE
+                derive(23);
+                builder.shift(tokens.next()); // ELSE
+                builder.beginBlock();
+                parseCode();
+                builder.endBlock();
+                if (tokens.peekOrdinal() != 2) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // END
+                reduce(23);
+                return;
+            default:
+                throw noRule();
+        }
+    }
+
+    private void parseCond() { // <Cond>
+        switch (tokens.peekOrdinal()) {
+            case 4: case 6: case 7: case 9: // VARNAME, NUMBER, LPAREN, MINUS
+                derive(24);
+                parseExprArith();
+                parseComp();
+                parseExprArith();
+                reduce(24);
+                return;
+            default:
+                throw noRule();
+        }
+    }
+
+    private void parseComp() { // <Comp>
+        switch (tokens.peekOrdinal()) {
+            case 17: // EQUAL
+                derive(25);
+                builder.shift(tokens.next()); // EQUAL
+                reduce(25);
+                return;
+            case 18: // GREATER
+                derive(26);
+                builder.shift(tokens.next()); // GREATER
+                reduce(26);
+                return;
+            case 19: // SMALLER
+                derive(27);
+                builder.shift(tokens.next()); // SMALLER
+                reduce(27);
+                return;
+            default:
+                throw noRule();
+        }
+    }
+
+    private void parseWhile() { // <While>
+        switch (tokens.peekOrdinal()) {
+            case 20: // WHILE
+                derive(28);
+                builder.shift(tokens.next()); // WHILE
+                if (tokens.peekOrdinal() != 7) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // LPAREN
+                parseCond();
+                if (tokens.peekOrdinal() != 8) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // RPAREN
+                if (tokens.peekOrdinal() != 21) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // DO
+                builder.beginBlock();
+                parseCode();
+                builder.endBlock();
+                if (tokens.peekOrdinal() != 2) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // END
+                reduce(28);
+                return;
+            default:
+                throw noRule();
+        }
+    }
+
+    private void parsePrint() { // <Print>
+        switch (tokens.peekOrdinal()) {
+            case 22: // PRINT
+                derive(29);
+                builder.shift(tokens.next()); // PRINT
+                if (tokens.peekOrdinal() != 7) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // LPAREN
+                if (tokens.peekOrdinal() != 4) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // VARNAME
+                if (tokens.peekOrdinal() != 8) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // RPAREN
+                reduce(29);
+                return;
+            default:
+                throw noRule();
+        }
+    }
+
+    private void parseRead() { // <Read>
+        switch (tokens.peekOrdinal()) {
+            case 23: // READ
+                derive(30);
+                builder.shift(tokens.next()); // READ
+                if (tokens.peekOrdinal() != 7) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // LPAREN
+                if (tokens.peekOrdinal() != 4) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // VARNAME
+                if (tokens.peekOrdinal() != 8) {
+                    throw mismatch();
+                }
+                builder.shift(tokens.next()); // RPAREN
+                reduce(30);
+                return;
+            default:
+                throw noRule();
+        }
+    }
+
+    private void derive(int rule) {
+        if (derived == derivation.length) {
+            derivation = Arrays.copyOf(derivation, derived * 2);
+        }
+        derivation[derived++] = rule;
+    }
+
+    private void reduce(int rule) {
+        builder.reduce(grammar.getRule(rule));
+    }
+
+    /*
+        A rule ending with its own variable is reduced after the rule of that variable,
+        when the loop which replaces the recursion ends.
+    */
+    private void defer(int rule) {
+        if (deferredTop == deferred.length) {
+            deferred = Arrays.copyOf(deferred, deferredTop * 2);
+        }
+        deferred[deferredTop++] = rule;
+    }
+
+    private void reduceDeferred(int base) {
+        while (deferredTop > base) {
+            reduce(deferred[--deferredTop]);
+        }
+    }
+
+    private Error mismatch() {
+        tokens.next();
+        return new Error("Inputs are not matching !");
+    }
+
+    private static Error noRule() {
+        return new Error("No rule in action table");
+    }
+}
@@ -4,13 +4,15 @@
  */
 public class Rule {
 
-    static int count = 0;
     private GrammarUnit leftHandSide = null;
     private GrammarUnit[] rightHandSide = null;
     private int idx = 0;
 
-    public Rule(GrammarUnit leftHandSide, GrammarUnit[] rightHandSide) {
-        this.idx = count++;
+    /**
+     * @param idx: index of the rule in the grammar, from 0
+     */
+    public Rule(int idx, GrammarUnit leftHandSide, GrammarUnit[] rightHandSide) {
+        this.idx = idx;
         this.leftHandSide = leftHandSide;
         this.rightHandSide = rightHandSide;
     }
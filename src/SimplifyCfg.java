@@ -0,0 +1,188 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simplify the control flow graph:
+ * branches to a block holding only a branch go to its target directly,
+ * a conditional branch whose targets are the same becomes a branch,
+ * blocks no path from the entry reaches are removed,
+ * and a block whose only successor has it as only predecessor is merged with it.
+ * The steps are repeated until none of them changes the graph.
+ * A block holding only a branch to a block with phis is kept, as the phis tell its value from the others,
+ * and the phis of a merged block, which has one predecessor, are replaced by their operand.
+ */
+public class SimplifyCfg implements Pass {
+
+    public String getName() {
+        return "simplify-cfg";
+    }
+
+    public boolean run(ControlFlowGraph cfg, AnalysisManager analyses) {
+        Operand[] replacements = new Operand[cfg.getRegisterCount()]; // of the phis of the merged blocks
+        boolean changed = false;
+        while (forwardEmptyBlocks(cfg) | removeUnreachableBlocks(cfg) | mergeBlocks(cfg, replacements)) {
+            changed = true;
+        }
+        if (changed) {
+            for (BasicBlock block : cfg.getBlocks()) {
+                for (IrInstruction instruction : block.getInstructions()) {
+                    for (int i = 0; i < instruction.numOperands(); ++i) {
+                        Operand operand = instruction.getOperand(i);
+                        while (operand.isRegister() && replacements[operand.getRegister()] != null) {
+                            operand = replacements[operand.getRegister()];
+                        }
+                        instruction.setOperand(i, operand);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /*
+        Make the branches to a block holding only a branch go to its target.
+    */
+    private static boolean forwardEmptyBlocks(ControlFlowGraph cfg) {
+        cfg.updateEdges();
+        List<BasicBlock> blocks = cfg.getBlocks();
+        BasicBlock[] forward = new BasicBlock[blocks.size()];
+        boolean found = false;
+        for (int i = 1; i < blocks.size(); ++i) { // the entry is never skipped
+            BasicBlock block = blocks.get(i);
+            IrInstruction terminator = block.getTerminator();
+            if (block.getInstructions().size() == 1 && terminator != null && terminator.getOpcode() == IrInstruction.Opcode.BR
+                    && terminator.getTarget(0) != block && terminator.getTarget(0).getPhiCount() == 0) {
+                forward[i] = terminator.getTarget(0);
+                found = true;
+            }
+        }
+        if (!found) {
+            return false;
+        }
+        boolean changed = false;
+        for (BasicBlock block : blocks) {
+            IrInstruction terminator = block.getTerminator();
+            if (terminator == null) {
+                continue;
+            }
+            for (int i = 0; i < terminator.numTargets(); ++i) {
+                BasicBlock target = resolve(terminator.getTarget(i), forward, blocks.size());
+                if (target != terminator.getTarget(i)) {
+                    terminator.setTarget(i, target);
+                    changed = true;
+                }
+            }
+            if (terminator.getOpcode() == IrInstruction.Opcode.CONDBR && terminator.getTarget(0) == terminator.getTarget(1)) {
+                List<IrInstruction> instructions = block.getInstructions();
+                instructions.set(instructions.size() - 1, IrInstruction.br(terminator.getTarget(0)));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /* The block a branch ends up in through blocks holding only a branch, which may loop */
+    private static BasicBlock resolve(BasicBlock target, BasicBlock[] forward, int limit) {
+        for (int steps = 0; forward[target.getIndex()] != null && steps < limit; ++steps) {
+            target = forward[target.getIndex()];
+        }
+        return target;
+    }
+
+    private static boolean removeUnreachableBlocks(ControlFlowGraph cfg) {
+        cfg.updateEdges();
+        List<BasicBlock> blocks = cfg.getBlocks();
+        boolean[] reached = new boolean[blocks.size()];
+        ArrayList<BasicBlock> pending = new ArrayList<BasicBlock>();
+        pending.add(cfg.getEntry());
+        reached[0] = true;
+        int count = 1;
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.remove(pending.size() - 1);
+            for (BasicBlock successor : block.getSuccessors()) {
+                if (!reached[successor.getIndex()]) {
+                    reached[successor.getIndex()] = true;
+                    ++count;
+                    pending.add(successor);
+                }
+            }
+        }
+        if (count == blocks.size()) {
+            return false;
+        }
+        keep(cfg, reached);
+        return true;
+    }
+
+    /*
+        Merge each block ending with a branch to a block it is the only predecessor of with this block.
+        The phis of the merged block get their operand as replacement.
+    */
+    private static boolean mergeBlocks(ControlFlowGraph cfg, Operand[] replacements) {
+        cfg.updateEdges();
+        List<BasicBlock> blocks = cfg.getBlocks();
+        boolean[] kept = new boolean[blocks.size()];
+        Arrays.fill(kept, true);
+        boolean changed = false;
+        for (BasicBlock block : blocks) {
+            if (!kept[block.getIndex()]) {
+                continue;
+            }
+            while (true) {
+                IrInstruction terminator = block.getTerminator();
+                if (terminator == null || terminator.getOpcode() != IrInstruction.Opcode.BR) {
+                    break;
+                }
+                BasicBlock successor = terminator.getTarget(0);
+                if (successor == block || successor == cfg.getEntry() || successor.getPredecessors().size() != 1) {
+                    break;
+                }
+                List<IrInstruction> instructions = block.getInstructions();
+                instructions.remove(instructions.size() - 1);
+                List<IrInstruction> merged = successor.getInstructions();
+                int phis = successor.getPhiCount();
+                for (int i = 0; i < phis; ++i) {
+                    replacements[merged.get(i).getResult()] = merged.get(i).getOperand(0);
+                }
+                instructions.addAll(merged.subList(phis, merged.size()));
+                successor.getInstructions().clear();
+                kept[successor.getIndex()] = false;
+                block.getSuccessors().clear();
+                block.getSuccessors().addAll(successor.getSuccessors());
+                for (BasicBlock next : successor.getSuccessors()) {
+                    List<BasicBlock> predecessors = next.getPredecessors();
+                    predecessors.set(predecessors.indexOf(successor), block);
+                    List<IrInstruction> nextInstructions = next.getInstructions();
+                    for (int i = 0; i < nextInstructions.size() && nextInstructions.get(i).isPhi(); ++i) {
+                        IrInstruction phi = nextInstructions.get(i);
+                        for (int t = 0; t < phi.numTargets(); ++t) {
+                            if (phi.getTarget(t) == successor) {
+                                phi.setTarget(t, block);
+                            }
+                        }
+                    }
+                }
+                changed = true;
+            }
+        }
+        if (changed) {
+            keep(cfg, kept);
+        }
+        return changed;
+    }
+
+    /* Keep the blocks of the layout whose index is set */
+    private static void keep(ControlFlowGraph cfg, boolean[] kept) {
+        List<BasicBlock> blocks = cfg.getBlocks();
+        List<BasicBlock> remaining = new ArrayList<BasicBlock>(blocks.size());
+        for (BasicBlock block : blocks) {
+            if (kept[block.getIndex()]) {
+                remaining.add(block);
+            }
+        }
+        blocks.clear();
+        blocks.addAll(remaining);
+        cfg.updateEdges();
+    }
+}
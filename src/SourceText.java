@@ -0,0 +1,308 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The text of a source file.
+ * The file is memory-mapped instead of being read through a stream.
+ * As long as the file is plain ASCII, characters are taken straight from the mapping
+ * without any charset decoding. Otherwise the file is decoded once as UTF-8.
+ * A text can also be read in memory from any reader.
+ */
+public class SourceText implements CharSequence {
+
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long ONES = 0x0101010101010101L;
+
+    private ByteBuffer bytes = null; // the mapping, when the file is ASCII
+    private CharBuffer chars = null; // the decoded text otherwise
+    private final int length;
+
+    private SourceText(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.length = bytes.limit();
+    }
+
+    private SourceText(CharBuffer chars) {
+        this.chars = chars;
+        this.length = chars.limit();
+    }
+
+    /**
+     * Memory-map a file.
+     * @param path: the file to map
+     * @return the text of the file
+     */
+    public static SourceText map(String path) throws IOException {
+        try (FileInputStream stream = new FileInputStream(path)) {
+            FileChannel channel = stream.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be mapped: " + path);
+            }
+            ByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (isAscii(mapping)) {
+                return new SourceText(mapping.order(ByteOrder.LITTLE_ENDIAN)); // first byte in the low bits of a long
+            }
+            return new SourceText(decode(mapping));
+        }
+    }
+
+    /**
+     * Read the whole text of a reader.
+     * @param reader: the reader to empty
+     * @return the text that was read
+     */
+    public static SourceText read(Reader reader) throws IOException {
+        char[] text = new char[1 << 16];
+        int length = 0;
+        int count = reader.read(text, 0, text.length);
+        while (count >= 0) {
+            length += count;
+            if (length == text.length) {
+                text = Arrays.copyOf(text, text.length * 2);
+            }
+            count = reader.read(text, length, text.length - length);
+        }
+        return new SourceText(CharBuffer.wrap(text, 0, length).slice());
+    }
+
+    /*
+        Checks eight bytes at a time that no byte has its high bit set.
+    */
+    private static boolean isAscii(ByteBuffer mapping) {
+        int limit = mapping.limit();
+        int i = 0;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            if ((mapping.getLong(i) & NON_ASCII_MASK) != 0) {
+                return false;
+            }
+        }
+        for (; i < limit; ++i) {
+            if (mapping.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscii(CharSequence text) {
+        for (int i = 0; i < text.length(); ++i) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        Decodes the mapping the same way an InputStreamReader would:
+        malformed input is replaced rather than reported.
+    */
+    private static CharBuffer decode(ByteBuffer mapping) throws CharacterCodingException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        return decoder.decode(mapping);
+    }
+
+    /**
+     * Is the text read directly from the mapping ?
+     */
+    public boolean isAscii() {
+        return this.bytes != null;
+    }
+
+    public int length() {
+        return this.length;
+    }
+
+    public char charAt(int index) {
+        if (this.bytes != null) {
+            return (char) this.bytes.get(index);
+        }
+        return this.chars.get(index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return this.toString(start, end);
+    }
+
+    /**
+     * Copy a part of the text in a string.
+     */
+    public String toString(int start, int end) {
+        char[] text = new char[end - start];
+        copy(start, text, 0, end - start);
+        return new String(text);
+    }
+
+    public String toString() {
+        return this.toString(0, this.length);
+    }
+
+    /*
+        Copies length characters of the text, from index start, into destination.
+    */
+    private void copy(int start, char[] destination, int offset, int length) {
+        if (this.bytes != null) {
+            for (int i = 0; i < length; ++i) {
+                destination[offset + i] = (char) this.bytes.get(start + i);
+            }
+        } else {
+            this.chars.get(start, destination, offset, length);
+        }
+    }
+
+    /**
+     * The text after an edit. The text itself does not change.
+     * @param offset: offset of the first character replaced
+     * @param removed: number of characters replaced
+     * @param inserted: the characters put in their place
+     * @return a new text, in memory
+     */
+    public SourceText replace(int offset, int removed, CharSequence inserted) {
+        int tail = this.length - offset - removed;
+        if (this.bytes != null && isAscii(inserted)) {
+            ByteBuffer text = ByteBuffer.allocate(offset + inserted.length() + tail).order(ByteOrder.LITTLE_ENDIAN);
+            text.put(this.bytes.slice(0, offset));
+            for (int i = 0; i < inserted.length(); ++i) {
+                text.put((byte) inserted.charAt(i));
+            }
+            text.put(this.bytes.slice(offset + removed, tail));
+            return new SourceText(text);
+        }
+        char[] text = new char[offset + inserted.length() + tail];
+        copy(0, text, 0, offset);
+        for (int i = 0; i < inserted.length(); ++i) {
+            text[offset + i] = inserted.charAt(i);
+        }
+        copy(offset + removed, text, offset + inserted.length(), tail);
+        return new SourceText(CharBuffer.wrap(text));
+    }
+
+    /* ------------------ Bulk scanning ------------------ */
+
+    /*
+        On ASCII text, the scans below read the mapping eight bytes at a time:
+        each byte of a long that matches is flagged by its high bit, and the first
+        flagged byte is found from the number of trailing zeros.
+    */
+
+    /*
+        The high bit of each byte of word that is equal to the byte repeated in pattern is set.
+        Unlike the usual (x - 0x01..) & ~x trick, no byte is ever flagged wrongly.
+    */
+    private static long equalBytes(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    private static int firstFlagged(long flags) {
+        return Long.numberOfTrailingZeros(flags) >>> 3;
+    }
+
+    /**
+     * Offset of the first occurrence of a character, at or after from.
+     * @return the offset, or -1 if the character does not occur
+     */
+    public int indexOf(char c, int from) {
+        int i = from;
+        if (this.bytes != null && c < 0x80) {
+            long pattern = c * ONES;
+            for (; i + Long.BYTES <= this.length; i += Long.BYTES) {
+                long flags = equalBytes(this.bytes.getLong(i), pattern);
+                if (flags != 0) {
+                    return i + firstFlagged(flags);
+                }
+            }
+        }
+        for (; i < this.length; ++i) {
+            if (charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Offset of the first line terminator at or after from, the length of the text if there is none.
+     */
+    public int indexOfLineTerminator(int from) {
+        int i = from;
+        if (this.bytes != null) { // in ASCII, line terminators are the bytes from 0x0A to 0x0D
+            for (; i + Long.BYTES <= this.length; i += Long.BYTES) {
+                long word = this.bytes.getLong(i) & ~ONES; // 0x0B becomes 0x0A, 0x0D becomes 0x0C
+                long flags = equalBytes(word, 0x0A * ONES) | equalBytes(word, 0x0C * ONES);
+                if (flags != 0) {
+                    return i + firstFlagged(flags);
+                }
+            }
+        }
+        for (; i < this.length; ++i) {
+            if (LineMap.isLineTerminator(charAt(i))) {
+                return i;
+            }
+        }
+        return this.length;
+    }
+
+    /**
+     * Offset of the first character at or after from that is not a blank:
+     * a space, a tab, a form feed, a '\n' or a '\r'. The length of the text if there is none.
+     */
+    public int skipBlanks(int from) {
+        int i = from;
+        if (this.bytes != null && i < this.length && isBlank(charAt(i))) { // most blanks are single spaces
+            for (; i + Long.BYTES <= this.length; i += Long.BYTES) {
+                long word = this.bytes.getLong(i);
+                long blanks = equalBytes(word, ' ' * ONES) | equalBytes(word, '\t' * ONES)
+                        | equalBytes(word & ~ONES, '\f' * ONES) | equalBytes(word, '\n' * ONES);
+                long others = ~blanks & NON_ASCII_MASK;
+                if (others != 0) {
+                    return i + firstFlagged(others);
+                }
+            }
+        }
+        for (; i < this.length && isBlank(charAt(i)); ++i) {}
+        return i;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\f' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * A reader over the text, for the generated Lexer.
+     * Characters go from the mapping to the lexer buffer without any intermediate copy.
+     */
+    public Reader reader() {
+        return new Reader() {
+            private int position = 0;
+
+            public int read(char[] buffer, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                int count = Math.min(length, SourceText.this.length - position);
+                if (count <= 0) {
+                    return -1;
+                }
+                copy(position, buffer, offset, count);
+                position += count;
+                return count;
+            }
+
+            public void close() {}
+        };
+    }
+}
@@ -0,0 +1,315 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Put the code in static single assignment form: the variables are no longer loaded and stored,
+ * each load is replaced by the value stored last on the paths reaching it, and where paths bringing
+ * different values meet, a phi chooses the value of the path the block was entered from.
+ * The phis are placed as Cytron et al. do, at the iterated dominance frontier of the blocks storing
+ * into a variable, for the variables loaded in another block than the one storing them.
+ * The dominator tree is then walked with the value of each variable, and the loads, the stores
+ * and the allocations are removed. A phi choosing between one value and itself is then that value.
+ * The frame stores 0 into every variable in the entry block, so a load always has a value.
+ */
+public class SsaConstruction implements Pass {
+
+    public String getName() {
+        return "ssa-construction";
+    }
+
+    public boolean run(ControlFlowGraph cfg, AnalysisManager analyses) {
+        DominatorTree dominators = analyses.getDominatorTree();
+        List<BasicBlock> blocks = cfg.getBlocks();
+        int slots = 0;
+        for (BasicBlock block : blocks) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == IrInstruction.Opcode.STORE) {
+                    slots = Math.max(slots, instruction.getOperand(1).getSlot() + 1);
+                } else if (instruction.getOpcode() == IrInstruction.Opcode.LOAD) {
+                    slots = Math.max(slots, instruction.getOperand(0).getSlot() + 1);
+                }
+            }
+        }
+        if (slots == 0) {
+            return false;
+        }
+        int firstPhi = cfg.getRegisterCount();
+        List<Integer> variables = new ArrayList<Integer>(); // the slot of each phi
+        List<IrInstruction> phis = placePhis(cfg, dominators, slots, variables);
+        int[] phiSlots = new int[phis.size()];
+        for (int i = 0; i < phis.size(); ++i) {
+            phiSlots[i] = variables.get(i);
+        }
+        Operand[] replacements = new Operand[cfg.getRegisterCount()];
+        rename(cfg, dominators, slots, phiSlots, firstPhi, replacements);
+        for (BasicBlock block : blocks) {
+            if (!dominators.isReachable(block)) {
+                removeVariables(block, replacements);
+            }
+        }
+        for (IrInstruction phi : phis) {
+            for (int i = 0; i < phi.numOperands(); ++i) {
+                if (phi.getOperand(i) == null) { // from a block never run
+                    phi.setOperand(i, Operand.constant(0));
+                }
+            }
+        }
+        boolean[] removed = removeTrivialPhis(phis, firstPhi, replacements);
+        for (BasicBlock block : blocks) {
+            List<IrInstruction> instructions = block.getInstructions();
+            List<IrInstruction> kept = new ArrayList<IrInstruction>(instructions.size());
+            for (IrInstruction instruction : instructions) {
+                if (instruction.isPhi() && instruction.getResult() >= firstPhi && removed[instruction.getResult() - firstPhi]) {
+                    continue;
+                }
+                for (int i = 0; i < instruction.numOperands(); ++i) {
+                    instruction.setOperand(i, resolve(instruction.getOperand(i), replacements));
+                }
+                kept.add(instruction);
+            }
+            if (kept.size() != instructions.size()) {
+                instructions.clear();
+                instructions.addAll(kept);
+            }
+        }
+        return true;
+    }
+
+    /*
+        Place the phis of the variables loaded in another block than the one storing them, at the top of the blocks
+        of the iterated dominance frontier of the blocks storing them. The phis get the next registers,
+        in the order they are returned, and the slot of the variable of each one is added to phiSlots.
+    */
+    private static List<IrInstruction> placePhis(ControlFlowGraph cfg, DominatorTree dominators, int slots,
+            List<Integer> phiSlots) {
+        List<BasicBlock> blocks = cfg.getBlocks();
+        List<List<BasicBlock>> definitions = new ArrayList<List<BasicBlock>>(slots); // by slot
+        for (int slot = 0; slot < slots; ++slot) {
+            definitions.add(null);
+        }
+        boolean[] global = new boolean[slots]; // loaded before any store of the same block
+        int[] stored = new int[slots]; // index + 1 of the last block storing the variable
+        for (BasicBlock block : dominators.getReversePostOrder()) {
+            int stamp = block.getIndex() + 1;
+            for (IrInstruction instruction : block.getInstructions()) {
+                if (instruction.getOpcode() == IrInstruction.Opcode.LOAD) {
+                    int slot = instruction.getOperand(0).getSlot();
+                    if (stored[slot] != stamp) {
+                        global[slot] = true;
+                    }
+                } else if (instruction.getOpcode() == IrInstruction.Opcode.STORE) {
+                    int slot = instruction.getOperand(1).getSlot();
+                    if (stored[slot] != stamp) {
+                        stored[slot] = stamp;
+                        if (definitions.get(slot) == null) {
+                            definitions.set(slot, new ArrayList<BasicBlock>(2));
+                        }
+                        definitions.get(slot).add(block);
+                    }
+                }
+            }
+        }
+        List<IrInstruction> phis = new ArrayList<IrInstruction>();
+        List<List<IrInstruction>> blockPhis = new ArrayList<List<IrInstruction>>(blocks.size());
+        for (int i = 0; i < blocks.size(); ++i) {
+            blockPhis.add(null);
+        }
+        int[] placed = new int[blocks.size()]; // slot + 1 of the last variable with a phi in the block
+        int[] queued = new int[blocks.size()]; // slot + 1 of the last variable the block was queued for
+        ArrayList<BasicBlock> pending = new ArrayList<BasicBlock>();
+        for (int slot = 0; slot < slots; ++slot) {
+            if (!global[slot] || definitions.get(slot) == null) {
+                continue;
+            }
+            for (BasicBlock block : definitions.get(slot)) {
+                queued[block.getIndex()] = slot + 1;
+                pending.add(block);
+            }
+            while (!pending.isEmpty()) {
+                BasicBlock block = pending.remove(pending.size() - 1);
+                for (BasicBlock join : dominators.getDominanceFrontier(block)) {
+                    int j = join.getIndex();
+                    if (placed[j] == slot + 1) {
+                        continue;
+                    }
+                    placed[j] = slot + 1;
+                    IrInstruction phi = IrInstruction.phi(cfg.newRegister(), join.getPredecessors());
+                    phis.add(phi);
+                    phiSlots.add(slot);
+                    if (blockPhis.get(j) == null) {
+                        blockPhis.set(j, new ArrayList<IrInstruction>(2));
+                    }
+                    blockPhis.get(j).add(phi);
+                    if (queued[j] != slot + 1) {
+                        queued[j] = slot + 1;
+                        pending.add(join);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < blocks.size(); ++i) {
+            if (blockPhis.get(i) != null) {
+                blocks.get(i).getInstructions().addAll(0, blockPhis.get(i));
+            }
+        }
+        return phis;
+    }
+
+    /*
+        Walk the dominator tree with the value of each variable, which a store or a phi changes, and is
+        given back when the walk leaves the block. Loads are replaced by the value, and the operands of the
+        phis of the successors are set from it. The walk has an explicit stack, as blocks may be nested deep.
+    */
+    private static void rename(ControlFlowGraph cfg, DominatorTree dominators, int slots, int[] phiSlots,
+            int firstPhi, Operand[] replacements) {
+        Operand[] values = new Operand[slots];
+        ArrayList<Integer> changedSlots = new ArrayList<Integer>(); // with the value each one had before
+        ArrayList<Operand> previousValues = new ArrayList<Operand>();
+        ArrayList<BasicBlock> stack = new ArrayList<BasicBlock>();
+        ArrayList<Integer> next = new ArrayList<Integer>(); // next child, -1 before the block is entered
+        ArrayList<Integer> marks = new ArrayList<Integer>(); // number of changes before the block
+        stack.add(cfg.getEntry());
+        next.add(-1);
+        marks.add(0);
+        while (!stack.isEmpty()) {
+            int top = stack.size() - 1;
+            BasicBlock block = stack.get(top);
+            int idx = next.get(top);
+            if (idx == -1) {
+                marks.set(top, changedSlots.size());
+                List<IrInstruction> instructions = block.getInstructions();
+                List<IrInstruction> kept = new ArrayList<IrInstruction>(instructions.size());
+                for (IrInstruction instruction : instructions) {
+                    for (int i = 0; i < instruction.numOperands(); ++i) {
+                        if (instruction.getOperand(i) != null) {
+                            instruction.setOperand(i, resolve(instruction.getOperand(i), replacements));
+                        }
+                    }
+                    switch (instruction.getOpcode()) {
+                        case PHI:
+                            if (instruction.getResult() >= firstPhi) {
+                                int slot = phiSlots[instruction.getResult() - firstPhi];
+                                changedSlots.add(slot);
+                                previousValues.add(values[slot]);
+                                values[slot] = Operand.register(instruction.getResult());
+                            }
+                            break;
+                        case LOAD:
+                            Operand value = values[instruction.getOperand(0).getSlot()];
+                            replacements[instruction.getResult()] = (value == null) ? Operand.constant(0) : value;
+                            continue;
+                        case STORE:
+                            int slot = instruction.getOperand(1).getSlot();
+                            changedSlots.add(slot);
+                            previousValues.add(values[slot]);
+                            values[slot] = instruction.getOperand(0);
+                            continue;
+                        case ALLOCA:
+                            continue;
+                        default:
+                            break;
+                    }
+                    kept.add(instruction);
+                }
+                instructions.clear();
+                instructions.addAll(kept);
+                for (BasicBlock successor : block.getSuccessors()) {
+                    for (IrInstruction phi : successor.getInstructions()) {
+                        if (!phi.isPhi()) {
+                            break;
+                        }
+                        if (phi.getResult() >= firstPhi) {
+                            Operand value = values[phiSlots[phi.getResult() - firstPhi]];
+                            phi.setIncoming(block, (value == null) ? Operand.constant(0) : value);
+                        }
+                    }
+                }
+                idx = 0;
+            }
+            List<BasicBlock> children = dominators.getChildren(block);
+            if (idx < children.size()) {
+                next.set(top, idx + 1);
+                stack.add(children.get(idx));
+                next.add(-1);
+                marks.add(0);
+            } else {
+                for (int i = changedSlots.size() - 1; i >= marks.get(top); --i) {
+                    values[changedSlots.get(i)] = previousValues.get(i);
+                    changedSlots.remove(i);
+                    previousValues.remove(i);
+                }
+                stack.remove(top);
+                next.remove(top);
+                marks.remove(top);
+            }
+        }
+    }
+
+    /* Remove the variables from a block no path reaches: its loads give 0 */
+    private static void removeVariables(BasicBlock block, Operand[] replacements) {
+        List<IrInstruction> instructions = block.getInstructions();
+        List<IrInstruction> kept = new ArrayList<IrInstruction>(instructions.size());
+        for (IrInstruction instruction : instructions) {
+            switch (instruction.getOpcode()) {
+                case LOAD:
+                    replacements[instruction.getResult()] = Operand.constant(0);
+                    break;
+                case STORE:
+                case ALLOCA:
+                    break;
+                default:
+                    kept.add(instruction);
+                    break;
+            }
+        }
+        instructions.clear();
+        instructions.addAll(kept);
+    }
+
+    /*
+        Replace the phis whose operands are one value and the phi itself by the value, until none is left.
+        A phi of itself only, in a loop no store reaches, is 0.
+        Return the removed phis, by their number from the first one.
+    */
+    private static boolean[] removeTrivialPhis(List<IrInstruction> phis, int firstPhi, Operand[] replacements) {
+        boolean[] removed = new boolean[phis.size()];
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (IrInstruction phi : phis) {
+                int number = phi.getResult() - firstPhi;
+                if (removed[number]) {
+                    continue;
+                }
+                Operand self = Operand.register(phi.getResult());
+                Operand same = null;
+                boolean trivial = true;
+                for (int i = 0; i < phi.numOperands(); ++i) {
+                    Operand operand = resolve(phi.getOperand(i), replacements);
+                    if (operand.equals(self) || operand.equals(same)) {
+                        continue;
+                    }
+                    if (same != null) {
+                        trivial = false;
+                        break;
+                    }
+                    same = operand;
+                }
+                if (trivial) {
+                    replacements[phi.getResult()] = (same == null) ? Operand.constant(0) : same;
+                    removed[number] = true;
+                    found = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /* The value an operand stands for once the removed loads and phis are replaced */
+    private static Operand resolve(Operand operand, Operand[] replacements) {
+        while (operand.isRegister() && replacements[operand.getRegister()] != null) {
+            operand = replacements[operand.getRegister()];
+        }
+        return operand;
+    }
+}
@@ -5,10 +5,15 @@
 public class Symbol{
 	public static final int UNDEFINED_POSITION = -1;
 	public static final Object NO_VALUE = null;
+	public static final int NO_NAME = -1;
 
 	private final LexicalUnit type;
 	private Object value;
-	private final int line,column;
+	private int line,column;
+	private int nameId = NO_NAME; // id of a variable name in the NameTable
+	private LineMap lines = null; // to compute line and column when they are asked for
+	private int offset = UNDEFINED_POSITION;
+	private int negations = 0; // minus signs put before the token by the simplification of an expression
 
 	public Symbol(LexicalUnit unit,int line,int column,Object value){
     	this.type	= unit;
@@ -17,6 +22,26 @@ public class Symbol{
 		this.value	= value;
 	}
 
+	public Symbol(LexicalUnit unit,int line,int column,String name,int nameId){
+		this(unit,line,column,name);
+		this.nameId = nameId;
+	}
+
+	/**
+	 * Creates a symbol of which only the offset is known.
+	 * Line and column are computed from it the first time they are asked for.
+	 */
+	public Symbol(LexicalUnit unit,LineMap lines,int offset,Object value){
+		this(unit,UNDEFINED_POSITION,UNDEFINED_POSITION,value);
+		this.lines	= lines;
+		this.offset	= offset;
+	}
+
+	public Symbol(LexicalUnit unit,LineMap lines,int offset,String name,int nameId){
+		this(unit,lines,offset,name);
+		this.nameId = nameId;
+	}
+
 	public Symbol(LexicalUnit unit,int line,int column){
 		this(unit,line,column,NO_VALUE);
 	}
@@ -56,28 +81,61 @@ public class Symbol{
 		return this.value;
 	}
 
+	public int getNameId(){
+		return this.nameId;
+	}
+
 	public int getLine(){
+		this.resolvePosition();
 		return this.line;
 	}
 
 	public int getColumn(){
+		this.resolvePosition();
 		return this.column;
 	}
 
+	private void resolvePosition(){
+		if (this.lines != null) {
+			this.line	= this.lines.getLine(this.offset)+1;
+			this.column	= this.lines.getColumn(this.offset);
+			this.lines	= null;
+		}
+	}
+
     public int getValueLength() {
         return this.value.toString().length();
     }
 
     public boolean isArith() {
-        return this.value.toString().equals("+") || this.value.toString().equals("-") || this.value.toString().equals("*") || this.value.toString().equals("/");
+        switch (this.type) {
+            case PLUS:
+            case MINUS:
+            case TIMES:
+            case DIVIDE:
+                return true;
+            default:
+                return false;
+        }
     }
 
     public void modifyValue(String value) {
         this.value = value;
+        this.negations = 0;
     }
 
+    /**
+     * Put a minus sign before the token, which negates it once more.
+     */
     public void addMinus() {
-        this.value = "-" + this.value;
+        ++this.negations;
+    }
+
+    /**
+     * Number of minus signs put before the token: the token is negated when it is odd.
+     */
+    public int getNegations() {
+        return this.negations;
     }
 
 	@Override
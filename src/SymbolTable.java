@@ -0,0 +1,169 @@
+import java.util.Arrays;
+
+/**
+ * The variables of one compilation.
+ * Each variable gets a dense slot, counting from 0 in the order the compilation meets them,
+ * found from the id of its name by open addressing. The slots index the variables
+ * of the compilation, while name ids count the names of every input sharing the name table.
+ * A slot records the line of the first definition of its variable,
+ * whether the variable was read and written, and its name once code refers to it.
+ */
+public class SymbolTable {
+
+    /**
+     * No slot: the slot of a name not in the table.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The first definition of a variable which was not written, or whose line is not known.
+     */
+    public static final int NO_LINE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final byte READ = 1;
+    private static final byte WRITTEN = 2;
+
+    private int[] nameIds = new int[INITIAL_CAPACITY];
+    private int[] firstDefinitions = new int[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] buckets = new int[INITIAL_CAPACITY * 2]; // open addressing, slot + 1 (0 is empty)
+    private int size = 0;
+
+    /**
+     * The slot of a variable.
+     * @param nameId: the id of the name of the variable
+     * @return the slot, NONE if the variable is not in the table
+     */
+    public int find(int nameId) {
+        int mask = buckets.length - 1;
+        for (int bucket = hash(nameId) & mask; ; bucket = (bucket + 1) & mask) {
+            int slot = buckets[bucket] - 1;
+            if (slot < 0 || nameIds[slot] == nameId) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * The slot of a variable, added to the table if it is not there yet.
+     * A new slot is the size of the table before the call.
+     * @param nameId: the id of the name of the variable
+     * @return the slot
+     */
+    public int add(int nameId) {
+        int mask = buckets.length - 1;
+        for (int bucket = hash(nameId) & mask; ; bucket = (bucket + 1) & mask) {
+            int slot = buckets[bucket] - 1;
+            if (slot < 0) {
+                return add(nameId, bucket);
+            }
+            if (nameIds[slot] == nameId) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * The slot of a variable, added to the table if it is not there yet, with the name the code gives it.
+     * @param nameId: the id of the name of the variable
+     * @param name: the name of the variable
+     * @return the slot
+     */
+    public int add(int nameId, String name) {
+        int slot = add(nameId);
+        if (names[slot] == null) {
+            names[slot] = name;
+        }
+        return slot;
+    }
+
+    /**
+     * Record a store into a variable.
+     * @param line: the line of the store, kept if it is the first definition
+     */
+    public void write(int slot, int line) {
+        if ((flags[slot] & WRITTEN) == 0) {
+            firstDefinitions[slot] = line;
+        }
+        flags[slot] |= WRITTEN;
+    }
+
+    /**
+     * Record a load of a variable.
+     */
+    public void read(int slot) {
+        flags[slot] |= READ;
+    }
+
+    public boolean isRead(int slot) {
+        return (flags[slot] & READ) != 0;
+    }
+
+    public boolean isWritten(int slot) {
+        return (flags[slot] & WRITTEN) != 0;
+    }
+
+    /**
+     * The line of the first store into the variable of a slot, NO_LINE if none is known.
+     */
+    public int getFirstDefinition(int slot) {
+        return firstDefinitions[slot];
+    }
+
+    public int getNameId(int slot) {
+        return nameIds[slot];
+    }
+
+    /**
+     * The name of the variable of a slot, null if it was only added by the id of its name.
+     */
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Number of variables, every slot is smaller.
+     */
+    public int size() {
+        return size;
+    }
+
+    private int add(int nameId, int bucket) {
+        if (size == nameIds.length) {
+            nameIds = Arrays.copyOf(nameIds, size * 2);
+            firstDefinitions = Arrays.copyOf(firstDefinitions, size * 2);
+            flags = Arrays.copyOf(flags, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        int slot = size++;
+        nameIds[slot] = nameId;
+        firstDefinitions[slot] = NO_LINE;
+        flags[slot] = 0;
+        names[slot] = null;
+        buckets[bucket] = slot + 1;
+        if (size * 2 > buckets.length) {
+            rehash();
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        buckets = new int[buckets.length * 2];
+        int mask = buckets.length - 1;
+        for (int slot = 0; slot < size; ++slot) {
+            int bucket = hash(nameIds[slot]) & mask;
+            while (buckets[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            buckets[bucket] = slot + 1;
+        }
+    }
+
+    /* Name ids are dense, spread them over the buckets */
+    private static int hash(int nameId) {
+        int h = nameId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,279 @@
+import java.util.Arrays;
+
+/**
+ * A compact stream of tokens.
+ * Tokens are stored in parallel arrays of primitives instead of one Symbol per token,
+ * so filling the buffer allocates nothing per token once the arrays have grown.
+ * Only the start offset of a token is kept, its line and column are computed when asked for.
+ * A buffer can be reset and reused for another source.
+ * The cursor is used by the parser to read the tokens back in order.
+ */
+public class TokenBuffer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final LexicalUnit[] UNITS = LexicalUnit.values();
+
+    /**
+     * Text of the tokens whose text never changes, indexed by lexical unit.
+     */
+    private static final String[] SPELLINGS = new String[UNITS.length];
+    static {
+        SPELLINGS[LexicalUnit.BEGIN.ordinal()] = "BEGIN";
+        SPELLINGS[LexicalUnit.END.ordinal()] = "END";
+        SPELLINGS[LexicalUnit.COMMA.ordinal()] = ",";
+        SPELLINGS[LexicalUnit.ASSIGN.ordinal()] = ":=";
+        SPELLINGS[LexicalUnit.LPAREN.ordinal()] = "(";
+        SPELLINGS[LexicalUnit.RPAREN.ordinal()] = ")";
+        SPELLINGS[LexicalUnit.MINUS.ordinal()] = "-";
+        SPELLINGS[LexicalUnit.PLUS.ordinal()] = "+";
+        SPELLINGS[LexicalUnit.TIMES.ordinal()] = "*";
+        SPELLINGS[LexicalUnit.DIVIDE.ordinal()] = "/";
+        SPELLINGS[LexicalUnit.IF.ordinal()] = "IF";
+        SPELLINGS[LexicalUnit.THEN.ordinal()] = "THEN";
+        SPELLINGS[LexicalUnit.ELSE.ordinal()] = "ELSE";
+        SPELLINGS[LexicalUnit.EQUAL.ordinal()] = "=";
+        SPELLINGS[LexicalUnit.GREATER.ordinal()] = ">";
+        SPELLINGS[LexicalUnit.SMALLER.ordinal()] = "<";
+        SPELLINGS[LexicalUnit.WHILE.ordinal()] = "WHILE";
+        SPELLINGS[LexicalUnit.DO.ordinal()] = "DO";
+        SPELLINGS[LexicalUnit.PRINT.ordinal()] = "PRINT";
+        SPELLINGS[LexicalUnit.READ.ordinal()] = "READ";
+    }
+
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] values; // value of number tokens, name id of variable names
+    private int size = 0;
+    private int cursor = 0;
+    private SourceText text = null; // the source, to get back the text of program names
+    private NameTable names = null;
+    private LineMap lines = null;
+
+    public TokenBuffer() {
+        this.types = new byte[INITIAL_CAPACITY];
+        this.starts = new int[INITIAL_CAPACITY];
+        this.lengths = new int[INITIAL_CAPACITY];
+        this.values = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Empty the buffer to receive the tokens of another source.
+     * The arrays are kept.
+     * @param text: the source the tokens will come from
+     * @param names: the table variable names are interned in
+     */
+    public void reset(SourceText text, NameTable names) {
+        reset(text, names, new LineMap(text));
+    }
+
+    /**
+     * Empty the buffer to receive tokens of a source whose lines are already indexed,
+     * when several buffers hold the tokens of the same source.
+     * @param text: the source the tokens will come from
+     * @param names: the table variable names are interned in
+     * @param lines: the index of the lines of the source
+     */
+    public void reset(SourceText text, NameTable names, LineMap lines) {
+        this.text = text;
+        this.names = names;
+        this.lines = lines;
+        this.size = 0;
+        this.cursor = 0;
+    }
+
+    /**
+     * Append a token.
+     * @param unit: the lexical unit of the token
+     * @param start: offset of the first character of the token in the source
+     * @param length: number of characters of the token
+     * @param value: value of a number or id of a variable name, ignored for other tokens
+     */
+    public void add(LexicalUnit unit, int start, int length, int value) {
+        if (size == types.length) {
+            grow();
+        }
+        types[size] = (byte) unit.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        values[size] = value;
+        ++size;
+    }
+
+    /**
+     * Append a range of tokens of another buffer.
+     * @param other: the buffer to copy tokens from
+     * @param from: index of the first token to copy
+     * @param to: index after the last token to copy
+     * @param shift: added to the start offset of the tokens, when the other buffer is over an older version of the source
+     * @param nameIds: id in this buffer's name table of each name id of the other buffer,
+     *                 null if both buffers share their name table
+     */
+    public void append(TokenBuffer other, int from, int to, int shift, int[] nameIds) {
+        int count = to - from;
+        while (size + count > types.length) {
+            grow();
+        }
+        System.arraycopy(other.types, from, types, size, count);
+        System.arraycopy(other.starts, from, starts, size, count);
+        System.arraycopy(other.lengths, from, lengths, size, count);
+        System.arraycopy(other.values, from, values, size, count);
+        if (shift != 0) {
+            for (int i = size; i < size + count; ++i) {
+                starts[i] += shift;
+            }
+        }
+        if (nameIds != null) {
+            byte varName = (byte) LexicalUnit.VARNAME.ordinal();
+            for (int i = size; i < size + count; ++i) {
+                if (types[i] == varName) {
+                    values[i] = nameIds[values[i]];
+                }
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * Drop the last tokens.
+     * @param size: number of tokens to keep
+     */
+    public void truncate(int size) {
+        this.size = size;
+        this.cursor = Math.min(cursor, size);
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    public SourceText getText() {
+        return text;
+    }
+
+    /**
+     * Index of the lines of the source, built the first time a line is asked for.
+     */
+    public LineMap getLines() {
+        return lines;
+    }
+
+    public NameTable getNames() {
+        return names;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public LexicalUnit getType(int idx) {
+        return UNITS[types[idx]];
+    }
+
+    public int getStart(int idx) {
+        return starts[idx];
+    }
+
+    public int getLength(int idx) {
+        return lengths[idx];
+    }
+
+    public int getValue(int idx) {
+        return values[idx];
+    }
+
+    /**
+     * Line of a token, counting from 0.
+     */
+    public int getLine(int idx) {
+        return lines.getLine(starts[idx]);
+    }
+
+    /**
+     * Column of a token, counting from 0.
+     */
+    public int getColumn(int idx) {
+        return lines.getColumn(starts[idx]);
+    }
+
+    /**
+     * The text of a token, as the lexer would have returned it.
+     */
+    public String getText(int idx) {
+        String spelling = SPELLINGS[types[idx]];
+        if (spelling != null) {
+            return spelling;
+        }
+        if (types[idx] == LexicalUnit.VARNAME.ordinal()) {
+            return names.getName(values[idx]);
+        }
+        return text.subSequence(starts[idx], starts[idx] + lengths[idx]).toString();
+    }
+
+    /**
+     * Build the symbol of a token, equal to the one Lexer.nextToken() returns.
+     */
+    public Symbol getSymbol(int idx) {
+        LexicalUnit unit = getType(idx);
+        switch (unit) {
+            case EOS:
+                return new Symbol(unit, lines, starts[idx], Symbol.NO_VALUE);
+            case NUMBER:
+                return new Symbol(unit, lines, starts[idx], Integer.valueOf(values[idx]));
+            case VARNAME:
+                return new Symbol(unit, lines, starts[idx], names.getName(values[idx]), values[idx]);
+            default:
+                return new Symbol(unit, lines, starts[idx], getText(idx));
+        }
+    }
+
+    /* ------------------ Cursor ------------------ */
+
+    /**
+     * Move the cursor back to the first token.
+     */
+    public void rewind() {
+        cursor = 0;
+    }
+
+    public int position() {
+        return cursor;
+    }
+
+    /**
+     * Type of the token under the cursor, without building its symbol.
+     */
+    public LexicalUnit peekType() {
+        return UNITS[types[cursor]];
+    }
+
+    /**
+     * Ordinal of the lexical unit of the token under the cursor, for a switch on the type.
+     */
+    public int peekOrdinal() {
+        return types[cursor];
+    }
+
+    /**
+     * Symbol of the token under the cursor. The cursor does not move.
+     */
+    public Symbol peek() {
+        return getSymbol(cursor);
+    }
+
+    /**
+     * Symbol of the token under the cursor. The cursor moves to the next token,
+     * except on the final EOS token which is returned again on every call.
+     */
+    public Symbol next() {
+        Symbol symbol = getSymbol(cursor);
+        if (cursor < size - 1) {
+            ++cursor;
+        }
+        return symbol;
+    }
+}
@@ -0,0 +1,206 @@
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tokens passed from a lexer thread to the parser thread.
+ * The lexer fills batches of tokens and publishes them in a ring of a few batches,
+ * with one producer and one consumer and no lock: each side only writes its own counter.
+ * When every batch of the ring is waiting to be read the lexer waits, so the memory
+ * used is bounded whatever the size of the input. Batches are reused once read.
+ * An exception of the lexer is published after the tokens that precede it,
+ * and thrown in the parser thread when it reads past them.
+ * A side waiting for the other one spins a little, then parks until the other one wakes it up,
+ * so a waiting thread does not take the processor the other one needs.
+ * The parser closes the pipe when it stops, and the lexer then stops too, even before the end of the input.
+ */
+public class TokenPipe {
+
+    private static final int BATCH_SIZE = 4096;
+    private static final int RING_SIZE = 8; // a power of 2
+    private static final int SPINS = 100; // busy waits before parking
+
+    private final SourceText text;
+    private final NameTable names;
+    private final LineMap lines;
+    private final TokenBuffer[] ring = new TokenBuffer[RING_SIZE];
+    private volatile long published = 0; // batches published, written by the lexer only
+    private volatile long consumed = 0; // batches read, written by the parser only
+    private volatile boolean done = false; // the lexer has published its last batch
+    private volatile Throwable error = null; // what stopped the lexer, if it did not reach the end
+    private volatile boolean closed = false; // the parser reads no more tokens
+    private volatile Thread lexer = null;
+    private volatile Thread parser = null; // the thread reading the tokens, once it waited for them
+    private volatile boolean lexerParked = false;
+    private volatile boolean parserParked = false;
+
+    private TokenBuffer current = null; // batch under the cursor of the parser
+    private int index = 0; // index of the next token in the current batch
+
+    /**
+     * @param text: the source to lex
+     * @param names: the table variable names are interned in
+     */
+    public TokenPipe(SourceText text, NameTable names) {
+        this.text = text;
+        this.names = names;
+        this.lines = new LineMap(text);
+        for (int i = 0; i < RING_SIZE; ++i) {
+            ring[i] = new TokenBuffer();
+        }
+    }
+
+    /**
+     * Start lexing the source on a new thread.
+     */
+    public void start() {
+        lexer = new Thread(this::produce, "lexer");
+        lexer.setDaemon(true); // do not outlive a parser that stopped without closing the pipe
+        lexer.start();
+    }
+
+    /**
+     * Tell the lexer no more tokens are read, when the parser stops, at the end of the input or not.
+     * The lexer stops at its next batch. The pipe cannot be read anymore.
+     */
+    public void close() {
+        closed = true;
+        wakeLexer();
+    }
+
+    /* ------------------ Lexer side ------------------ */
+
+    private void produce() {
+        FastLexer lexer = new FastLexer(text);
+        try {
+            LexicalUnit unit;
+            do {
+                for (int attempt = 0; published - consumed == RING_SIZE && !closed; ++attempt) {
+                    if (attempt < SPINS) {
+                        Thread.onSpinWait();
+                    } else {
+                        lexerParked = true;
+                        if (published - consumed == RING_SIZE && !closed) {
+                            LockSupport.park(this);
+                        }
+                        lexerParked = false;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                TokenBuffer batch = ring[(int) (published & (RING_SIZE - 1))];
+                batch.reset(text, names, lines);
+                try {
+                    do {
+                        unit = lexer.addNextToken(batch);
+                    } while (unit != LexicalUnit.EOS && batch.size() < BATCH_SIZE);
+                } finally {
+                    ++published; // with the tokens lexed before an error, if any
+                    wakeParser();
+                }
+            } while (unit != LexicalUnit.EOS);
+        } catch (RuntimeException | Error e) {
+            error = e;
+        } finally {
+            done = true;
+            wakeParser();
+        }
+    }
+
+    /* ------------------ Parser side ------------------ */
+
+    /**
+     * Type of the next token, without building its symbol.
+     */
+    public LexicalUnit peekType() {
+        return batch().getType(index);
+    }
+
+    /**
+     * Symbol of the next token. It stays the next token.
+     */
+    public Symbol peek() {
+        return batch().getSymbol(index);
+    }
+
+    /**
+     * Symbol of the next token. The cursor moves to the following token,
+     * except on the final EOS token which is returned again on every call.
+     */
+    public Symbol next() {
+        TokenBuffer batch = batch();
+        Symbol symbol = batch.getSymbol(index);
+        if (batch.getType(index) != LexicalUnit.EOS) {
+            ++index;
+        }
+        return symbol;
+    }
+
+    /*
+        The batch holding the next token, waiting for the lexer if needed.
+        Batches that were read are given back to the lexer.
+    */
+    private TokenBuffer batch() {
+        while (current == null || index == current.size()) {
+            if (current != null) {
+                current = null;
+                ++consumed;
+                wakeLexer();
+            }
+            if (consumed == published) {
+                waitForBatch();
+            }
+            current = ring[(int) (consumed & (RING_SIZE - 1))];
+            index = 0;
+        }
+        return current;
+    }
+
+    /*
+        Waits until the lexer publishes a batch.
+        If it stopped without publishing one more, its error is thrown.
+    */
+    private void waitForBatch() {
+        if (closed) {
+            throw new IllegalStateException("Tokens are read from a closed pipe");
+        }
+        for (int attempt = 0; consumed == published; ++attempt) {
+            if (done && consumed == published) {
+                Throwable error = this.error;
+                if (error instanceof RuntimeException) {
+                    throw (RuntimeException) error;
+                } else if (error instanceof Error) {
+                    throw (Error) error;
+                }
+                throw new IllegalStateException("Tokens are read past the end of the input");
+            }
+            if (attempt < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                parser = Thread.currentThread();
+                parserParked = true;
+                if (consumed == published && !done) {
+                    LockSupport.park(this);
+                }
+                parserParked = false;
+            }
+        }
+    }
+
+    /*
+        Wake up the lexer if it is parked, after the parser read a batch or closed the pipe.
+        A waiting side sets its flag before checking the counters again, and the flag is read
+        here before the thread, so the change cannot be missed.
+    */
+    private void wakeLexer() {
+        if (lexerParked) {
+            LockSupport.unpark(lexer);
+        }
+    }
+
+    /* Wake up the parser if it is parked, after the lexer published a batch or stopped */
+    private void wakeParser() {
+        if (parserParked) {
+            LockSupport.unpark(parser);
+        }
+    }
+}
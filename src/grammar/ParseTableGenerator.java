@@ -0,0 +1,187 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates ParseTable.java, the LL(1) parse table of the Fortress grammar.
+ * The FIRST and FOLLOW sets of the variables are computed from src/grammar/Fortress_grammar.txt,
+ * and each rule is put in the table under the lexical units it can start with,
+ * or the ones that can follow its variable when it can be empty.
+ * Generation fails if two rules fall in the same entry (the grammar is not LL(1)),
+ * or if the table does not agree with the hand-written ActionTable.
+ * Usage: java ParseTableGenerator output-file, from the root of the project.
+ */
+public class ParseTableGenerator {
+
+    private static final Variable[] VARIABLES = Variable.values();
+    private static final LexicalUnit[] UNITS = LexicalUnit.values();
+    private static final short NO_RULE = -1;
+
+    private final Grammar grammar = new Grammar();
+    private final Map<Variable, Set<LexicalUnit>> first = new EnumMap<Variable, Set<LexicalUnit>>(Variable.class);
+    private final Map<Variable, Set<LexicalUnit>> follow = new EnumMap<Variable, Set<LexicalUnit>>(Variable.class);
+    private final short[][] table = new short[VARIABLES.length][UNITS.length];
+    private int errors = 0;
+
+    public static void main(String[] args) throws IOException {
+        ParseTableGenerator generator = new ParseTableGenerator();
+        generator.computeFirst();
+        generator.computeFollow();
+        generator.fillTable();
+        generator.checkActionTable();
+        if (generator.errors > 0) {
+            System.err.println(generator.errors + " error(s), " + args[0] + " is not generated");
+            System.exit(1);
+        }
+        generator.write(args[0]);
+    }
+
+    /*
+        FIRST set of a sequence of grammar units, with EPSILON if they can all be empty.
+    */
+    private Set<LexicalUnit> first(GrammarUnit[] units, int from) {
+        Set<LexicalUnit> set = EnumSet.noneOf(LexicalUnit.class);
+        for (int i = from; i < units.length; ++i) {
+            if (!units[i].isVariable()) {
+                if (units[i].getType() != LexicalUnit.EPSILON) {
+                    set.add(units[i].getType());
+                    return set;
+                }
+                continue;
+            }
+            Set<LexicalUnit> unitFirst = first.get(units[i].getVariable());
+            set.addAll(unitFirst);
+            set.remove(LexicalUnit.EPSILON);
+            if (!unitFirst.contains(LexicalUnit.EPSILON)) {
+                return set;
+            }
+        }
+        set.add(LexicalUnit.EPSILON);
+        return set;
+    }
+
+    private void computeFirst() {
+        for (Variable variable : VARIABLES) {
+            first.put(variable, EnumSet.noneOf(LexicalUnit.class));
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < grammar.size(); ++i) {
+                Rule rule = grammar.getRule(i);
+                changed |= first.get(rule.getLeftHandSide().getVariable()).addAll(first(rule.getRight(), 0));
+            }
+        }
+    }
+
+    private void computeFollow() {
+        for (Variable variable : VARIABLES) {
+            follow.put(variable, EnumSet.noneOf(LexicalUnit.class));
+        }
+        follow.get(grammar.getRule(0).getLeftHandSide().getVariable()).add(LexicalUnit.EOS);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < grammar.size(); ++i) {
+                Rule rule = grammar.getRule(i);
+                GrammarUnit[] right = rule.getRight();
+                for (int j = 0; j < right.length; ++j) {
+                    if (!right[j].isVariable()) {
+                        continue;
+                    }
+                    Set<LexicalUnit> rest = first(right, j + 1);
+                    Set<LexicalUnit> set = follow.get(right[j].getVariable());
+                    if (rest.remove(LexicalUnit.EPSILON)) {
+                        changed |= set.addAll(follow.get(rule.getLeftHandSide().getVariable()));
+                    }
+                    changed |= set.addAll(rest);
+                }
+            }
+        }
+    }
+
+    private void fillTable() {
+        for (short[] row : table) {
+            Arrays.fill(row, NO_RULE);
+        }
+        for (int i = 0; i < grammar.size(); ++i) {
+            Rule rule = grammar.getRule(i);
+            Variable variable = rule.getLeftHandSide().getVariable();
+            Set<LexicalUnit> lookahead = first(rule.getRight(), 0);
+            if (lookahead.remove(LexicalUnit.EPSILON)) {
+                lookahead.addAll(follow.get(variable));
+            }
+            for (LexicalUnit unit : lookahead) {
+                short previous = table[variable.ordinal()][unit.ordinal()];
+                if (previous != NO_RULE) {
+                    System.err.println("LL(1) conflict: " + variable + " on " + unit
+                            + " between " + ruleName(previous) + " and " + ruleName(i));
+                    ++errors;
+                }
+                table[variable.ordinal()][unit.ordinal()] = (short) i;
+            }
+        }
+    }
+
+    private void checkActionTable() {
+        ActionTable actionTable = new ActionTable(grammar);
+        for (Variable variable : VARIABLES) {
+            for (LexicalUnit unit : UNITS) {
+                Rule rule = actionTable.getCorrespondingRule(unit, new GrammarUnit(variable));
+                int expected = (rule == null) ? NO_RULE : rule.idx();
+                int generated = table[variable.ordinal()][unit.ordinal()];
+                if (expected != generated) {
+                    System.err.println("ActionTable disagrees: " + variable + " on " + unit
+                            + " gives " + ruleName(expected) + " instead of " + ruleName(generated));
+                    ++errors;
+                }
+            }
+        }
+    }
+
+    /*
+        Rules are numbered from 1 in messages, as in the left derivation printed by the parser.
+    */
+    private static String ruleName(int idx) {
+        return (idx == NO_RULE) ? "no rule" : "rule " + (idx + 1);
+    }
+
+    private void write(String path) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+            out.println("/**");
+            out.println(" * LL(1) parse table of the Fortress grammar.");
+            out.println(" * Generated by ParseTableGenerator from src/grammar/Fortress_grammar.txt, do not edit.");
+            out.println(" */");
+            out.println("public final class ParseTable {");
+            out.println();
+            out.println("    /**");
+            out.println("     * Entry of the table when no rule applies: the input has a syntax error.");
+            out.println("     */");
+            out.println("    public static final short NO_RULE = " + NO_RULE + ";");
+            out.println();
+            out.println("    /**");
+            out.println("     * Index of the rule to apply, by variable to expand and by lexical unit of the next token.");
+            out.println("     */");
+            out.println("    public static final short[][] RULES = {");
+            for (Variable variable : VARIABLES) {
+                StringBuilder row = new StringBuilder();
+                for (LexicalUnit unit : UNITS) {
+                    if (row.length() > 0) {
+                        row.append(", ");
+                    }
+                    row.append(table[variable.ordinal()][unit.ordinal()]);
+                }
+                out.println("        /* " + variable + " */ {" + row + "},");
+            }
+            out.println("    };");
+            out.println();
+            out.println("    private ParseTable() {}");
+            out.println("}");
+        }
+    }
+}
@@ -0,0 +1,313 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates RecursiveDescentParser.java, a parser of the Fortress grammar coded directly
+ * from src/grammar/Fortress_grammar.txt and the parse table: one method per variable,
+ * with a switch on the ordinal of the next token to select the rule, and the terminals
+ * of the rule matched in line. The terminal a rule is selected on is not checked again.
+ * A rule ending with its own variable, such as the rules of <Code>, is a loop of the method
+ * and not a recursive call, so the depth of the recursion only depends on the nesting of the blocks.
+ * Each <ExprArith> is parsed by an ExpressionParser, as in Parser.buildAst, so the rules
+ * of the expressions get no method.
+ * Usage: java ParserGenerator output-file, from the root of the project, once ParseTable.java is generated.
+ */
+public class ParserGenerator {
+
+    private static final String GRAMMAR_FILE = "src/grammar/Fortress_grammar.txt";
+    private static final Variable[] VARIABLES = Variable.values();
+    private static final LexicalUnit[] UNITS = LexicalUnit.values();
+
+    private final Grammar grammar = new Grammar();
+    private final Map<Variable, String> names = new EnumMap<Variable, String>(Variable.class);
+    private final Set<Variable> called = EnumSet.noneOf(Variable.class);
+    private PrintWriter out;
+
+    public static void main(String[] args) throws IOException {
+        ParserGenerator generator = new ParserGenerator();
+        generator.readNames();
+        generator.write(args[0]);
+    }
+
+    /*
+        Names of the variables as written in the grammar file, and the variables
+        which can be reached from the start rule and need a method.
+        The rules of <ExprArith> are not followed, as an ExpressionParser takes them over.
+    */
+    private void readNames() throws IOException {
+        FortressTypeMatcher typeMatcher = new FortressTypeMatcher();
+        try (BufferedReader reader = new BufferedReader(new FileReader(GRAMMAR_FILE))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String left = line.split(";")[0];
+                names.put(typeMatcher.getVariableType(left), left);
+            }
+        }
+        List<Variable> pending = new ArrayList<Variable>();
+        addCalled(grammar.getRule(0), pending);
+        while (!pending.isEmpty()) {
+            Variable variable = pending.remove(pending.size() - 1);
+            if (variable == Variable.EXPRARITH) {
+                continue;
+            }
+            for (int i = 0; i < grammar.size(); ++i) {
+                if (grammar.getRule(i).getLeftHandSide().getVariable() == variable) {
+                    addCalled(grammar.getRule(i), pending);
+                }
+            }
+        }
+    }
+
+    private void addCalled(Rule rule, List<Variable> pending) {
+        for (GrammarUnit unit : rule.getRight()) {
+            if (unit.isVariable() && called.add(unit.getVariable())) {
+                pending.add(unit.getVariable());
+            }
+        }
+    }
+
+    /*
+        <ExprArith> gives parseExprArith, and a prime in a name gives Prime.
+    */
+    private String method(Variable variable) {
+        String name = names.get(variable);
+        return "parse" + name.substring(1, name.length() - 1).replace("'", "Prime");
+    }
+
+    /*
+        The rules of <Code> have no value, as in Parser.buildAst: they are not reduced.
+    */
+    private static boolean reduced(Variable variable) {
+        return variable != Variable.CODE;
+    }
+
+    private static boolean isTailRecursive(Rule rule) {
+        GrammarUnit[] right = rule.getRight();
+        GrammarUnit last = right[right.length - 1];
+        return last.isVariable() && last.getVariable() == rule.getLeftHandSide().getVariable();
+    }
+
+    private void write(String path) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(path))) {
+            out = writer;
+            writeHeader();
+            for (Variable variable : VARIABLES) {
+                if (called.contains(variable)) {
+                    writeMethod(variable);
+                }
+            }
+            writeHelpers();
+            out.println("}");
+        }
+    }
+
+    private void writeHeader() {
+        Rule start = grammar.getRule(0);
+        out.println("import java.util.Arrays;");
+        out.println();
+        out.println("/**");
+        out.println(" * Recursive descent parser of the Fortress grammar, with one method per variable.");
+        out.println(" * Generated by ParserGenerator from src/grammar/Fortress_grammar.txt, do not edit.");
+        out.println(" * It gives the builder the same tokens, rules and blocks as Parser.buildAst,");
+        out.println(" * and records the same left derivation. Chains of rules ending with their own variable");
+        out.println(" * are loops, so only nested blocks use the thread stack, and each " + names.get(Variable.EXPRARITH));
+        out.println(" * is parsed by an ExpressionParser, without recursion.");
+        out.println(" */");
+        out.println("public final class RecursiveDescentParser {");
+        out.println();
+        out.println("    private final TokenBuffer tokens;");
+        out.println("    private final AstBuilder builder;");
+        out.println("    private final ExpressionParser expressions = new ExpressionParser();");
+        out.println("    private final Grammar grammar = new Grammar();");
+        out.println("    private int[] derivation = new int[1024]; // indexes of the rules, in order");
+        out.println("    private int derived = 0;");
+        out.println("    private int[] deferred = new int[64]; // rules of a loop, reduced when it ends");
+        out.println("    private int deferredTop = 0;");
+        out.println();
+        out.println("    /**");
+        out.println("     * @param tokens: the lexed input, read from its cursor");
+        out.println("     * @param builder: the builder of the instructions");
+        out.println("     */");
+        out.println("    public RecursiveDescentParser(TokenBuffer tokens, AstBuilder builder) {");
+        out.println("        this.tokens = tokens;");
+        out.println("        this.builder = builder;");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println("     * Parse the whole input.");
+        out.println("     * A syntax error throws the same error as the table-driven parser.");
+        out.println("     * @return whether the whole input was read");
+        out.println("     */");
+        out.println("    public boolean parse() {");
+        out.println("        derive(" + start.idx() + ");");
+        writeRightHandSide(start, "        ", false);
+        out.println("        reduce(" + start.idx() + ");");
+        out.println("        return tokens.peekOrdinal() == " + LexicalUnit.EOS.ordinal() + "; // EOS");
+        out.println("    }");
+        out.println();
+        out.println("    /**");
+        out.println("     * Indexes of the rules of the left derivation, in order.");
+        out.println("     */");
+        out.println("    public int[] getDerivation() {");
+        out.println("        return Arrays.copyOf(derivation, derived);");
+        out.println("    }");
+    }
+
+    /*
+        The units of a rule after the one it is selected on, if that one is a terminal already checked.
+        A last unit which is the variable of the rule is left to the loop of the method.
+    */
+    private void writeRightHandSide(Rule rule, String indent, boolean selected) {
+        Variable left = rule.getLeftHandSide().getVariable();
+        GrammarUnit[] right = rule.getRight();
+        int end = isTailRecursive(rule) ? right.length - 1 : right.length;
+        for (int i = 0; i < end; ++i) {
+            GrammarUnit unit = right[i];
+            if (unit.isVariable()) {
+                Variable variable = unit.getVariable();
+                if (variable == Variable.CODE && left != Variable.CODE) {
+                    out.println(indent + "builder.beginBlock();");
+                    out.println(indent + method(variable) + "();");
+                    out.println(indent + "builder.endBlock();");
+                } else {
+                    out.println(indent + method(variable) + "();");
+                }
+            } else if (unit.getType() != LexicalUnit.EPSILON) {
+                if (!(i == 0 && selected)) {
+                    out.println(indent + "if (tokens.peekOrdinal() != " + unit.getType().ordinal() + ") {");
+                    out.println(indent + "    throw mismatch();");
+                    out.println(indent + "}");
+                }
+                out.println(indent + "builder.shift(tokens.next()); // " + unit.getType());
+            }
+        }
+    }
+
+    private void writeMethod(Variable variable) {
+        if (variable == Variable.EXPRARITH) {
+            writeExpressionParser();
+            return;
+        }
+        List<Rule> rules = new ArrayList<Rule>();
+        boolean loop = false;
+        for (int i = 0; i < grammar.size(); ++i) {
+            Rule rule = grammar.getRule(i);
+            if (rule.getLeftHandSide().getVariable() == variable) {
+                rules.add(rule);
+                loop |= !rule.isEpsilon() && isTailRecursive(rule);
+            }
+        }
+        boolean deferred = loop && reduced(variable);
+        String indent = loop ? "                    " : "                ";
+        out.println();
+        out.println("    private void " + method(variable) + "() { // " + names.get(variable));
+        if (deferred) {
+            out.println("        int base = deferredTop;");
+        }
+        if (loop) {
+            out.println("        while (true) {");
+        }
+        out.println(indent.substring(8) + "switch (tokens.peekOrdinal()) {");
+        short[] row = ParseTable.RULES[variable.ordinal()];
+        for (Rule rule : rules) {
+            StringBuilder labels = new StringBuilder();
+            StringBuilder comment = new StringBuilder();
+            for (LexicalUnit unit : UNITS) {
+                if (row[unit.ordinal()] == rule.idx()) {
+                    labels.append("case ").append(unit.ordinal()).append(": ");
+                    comment.append(comment.length() == 0 ? "// " : ", ").append(unit);
+                }
+            }
+            if (labels.length() == 0) {
+                continue;
+            }
+            out.println(indent.substring(4) + labels + comment);
+            out.println(indent + "derive(" + rule.idx() + ");");
+            writeRightHandSide(rule, indent, !rule.isEpsilon() && !rule.getRight()[0].isVariable());
+            if (!rule.isEpsilon() && isTailRecursive(rule)) {
+                if (reduced(variable)) {
+                    out.println(indent + "defer(" + rule.idx() + ");");
+                }
+                out.println(indent + "continue;");
+            } else {
+                if (reduced(variable)) {
+                    out.println(indent + "reduce(" + rule.idx() + ");");
+                }
+                out.println(indent + (loop ? "break;" : "return;"));
+            }
+        }
+        out.println(indent.substring(4) + "default:");
+        out.println(indent + "throw noRule();");
+        out.println(indent.substring(8) + "}");
+        if (loop) {
+            out.println("            break;");
+            out.println("        }");
+        }
+        if (deferred) {
+            out.println("        reduceDeferred(base);");
+        }
+        out.println("    }");
+    }
+
+    /*
+        The method of <ExprArith>, which gives its tokens to the ExpressionParser.
+    */
+    private void writeExpressionParser() {
+        out.println();
+        out.println("    private void " + method(Variable.EXPRARITH) + "() { // " + names.get(Variable.EXPRARITH));
+        out.println("        while (expressions.accepts(tokens.peekType())) {");
+        out.println("            expressions.shift(tokens.next());");
+        out.println("        }");
+        out.println("        builder.expression(expressions.finish());");
+        out.println("    }");
+    }
+
+    private void writeHelpers() {
+        out.println();
+        out.println("    private void derive(int rule) {");
+        out.println("        if (derived == derivation.length) {");
+        out.println("            derivation = Arrays.copyOf(derivation, derived * 2);");
+        out.println("        }");
+        out.println("        derivation[derived++] = rule;");
+        out.println("    }");
+        out.println();
+        out.println("    private void reduce(int rule) {");
+        out.println("        builder.reduce(grammar.getRule(rule));");
+        out.println("    }");
+        out.println();
+        out.println("    /*");
+        out.println("        A rule ending with its own variable is reduced after the rule of that variable,");
+        out.println("        when the loop which replaces the recursion ends.");
+        out.println("    */");
+        out.println("    private void defer(int rule) {");
+        out.println("        if (deferredTop == deferred.length) {");
+        out.println("            deferred = Arrays.copyOf(deferred, deferredTop * 2);");
+        out.println("        }");
+        out.println("        deferred[deferredTop++] = rule;");
+        out.println("    }");
+        out.println();
+        out.println("    private void reduceDeferred(int base) {");
+        out.println("        while (deferredTop > base) {");
+        out.println("            reduce(deferred[--deferredTop]);");
+        out.println("        }");
+        out.println("    }");
+        out.println();
+        out.println("    private Error mismatch() {");
+        out.println("        tokens.next();");
+        out.println("        return new Error(\"Inputs are not matching !\");");
+        out.println("    }");
+        out.println();
+        out.println("    private static Error noRule() {");
+        out.println("        return new Error(\"No rule in action table\");");
+        out.println("    }");
+    }
+}
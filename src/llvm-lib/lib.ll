@@ -17,10 +17,3 @@ define i32 @readInt() #0 {
   ret i32 %3
 }
 declare i32 @scanf(i8*, ...) #1
-
-define i32 @assign(i32 %x) {
-  %1 = alloca i32, align 4
-  store i32 %x, i32* %1, align 4
-  %2 = load i32, i32* %1, align 4
-  ret i32 %2
-}
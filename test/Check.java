@@ -0,0 +1,647 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Checks of the compiler on small inputs, each comparing two ways of doing the same work,
+ * or the code of a program and the values it prints with the expected ones.
+ * Usage: java -cp bin Check
+ * It runs from the root of the repository, on the programs of the test directory and on generated ones,
+ * and exits with 1 if a check fails. The benchmarks only time the same work on larger inputs.
+ */
+public class Check {
+
+    interface Task {
+        void run() throws Exception;
+    }
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        List<SourceText> inputs = inputs();
+        SourceText large = program(60000, 42); // more than one chunk of the parallel lexer, more than one range of the parallel parser
+
+        check("FastLexer, Lexer", () -> {
+            for (SourceText text : inputs) {
+                checkSameTokens(lex(text), fastLex(text));
+            }
+        });
+        check("ParallelLexer, FastLexer", () -> {
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                TokenBuffer tokens = new TokenBuffer();
+                tokens.reset(large, new NameTable());
+                new ParallelLexer(large, pool).tokenize(tokens);
+                checkSameTokens(fastLex(large), tokens);
+            } finally {
+                pool.shutdown();
+            }
+        });
+        check("IncrementalLexer, FastLexer", () -> {
+            for (SourceText text : inputs) {
+                TokenBuffer previous = fastLex(text);
+                int offset = text.indexOf('\n', text.length() / 2) + 1;
+                String inserted = "edited := edited + 1 ,\n";
+                IncrementalLexer lexer = new IncrementalLexer();
+                checkSameTokens(fastLex(text.replace(offset, 0, inserted)), lexer.relex(previous, offset, 0, inserted));
+                checkSameTokens(previous, lexer.relex(lexer.relex(previous, offset, 0, inserted), offset, inserted.length(), ""));
+            }
+        });
+        check("CompactTree, ParseTree", () -> {
+            for (SourceText text : inputs) {
+                Parser parser = new Parser(fastLex(text));
+                parser.buildParseTree();
+                CompactTree tree = new CompactTree();
+                new Parser(fastLex(text)).buildCompactTree(tree);
+                checkSameTree(parser.getParseTree(), tree);
+            }
+        });
+        check("RecursiveDescentParser, Parser", () -> {
+            for (SourceText text : inputs) {
+                Parser parser = new Parser(fastLex(text));
+                if (!parser.buildAst(new AstBuilder())) {
+                    throw new IllegalStateException("The input was not parsed entirely");
+                }
+                RecursiveDescentParser generated = new RecursiveDescentParser(fastLex(text), new AstBuilder());
+                generated.parse();
+                checkSameDerivation(parser.getRules(), generated.getDerivation());
+            }
+        });
+        check("ParallelParser, Parser", () -> {
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                TokenBuffer tokens = fastLex(large);
+                Instruction expected = new Parser(tokens).createAst().getRoot();
+                tokens.rewind();
+                checkSameInstructions(expected, new ParallelParser(tokens, pool).createAst().getRoot());
+            } finally {
+                pool.shutdown();
+            }
+        });
+        check("AstBuilder, ParseTree", () -> {
+            for (SourceText text : inputs) {
+                checkSameCode(compile(text, true), compile(text, false));
+            }
+        });
+        check("deep nesting, main thread", () -> {
+            SourceText text = deep(10000);
+            checkSameCode(compile(text, true), compile(text, false));
+        });
+        check("million statements, main thread", () -> {
+            int count = 1000000;
+            StringBuilder program = new StringBuilder("BEGIN Long\nv := 0 ,\n");
+            List<Integer> expected = new ArrayList<Integer>();
+            int value = 0;
+            for (int i = 0; i < count; ++i) {
+                if (i % 3 == 0) {
+                    program.append("PRINT(v) ,\n");
+                    expected.add(value);
+                } else {
+                    program.append("v := v + ").append(i % 100).append(" ,\n");
+                    value += i % 100;
+                }
+            }
+            program.append("END\n");
+            checkPrinted(expected, run(compile(SourceText.read(new StringReader(program.toString())), 2)));
+        });
+        check("ParallelParser code, Parser", () -> {
+            ForkJoinPool pool = new ForkJoinPool(4);
+            PrintStream out = System.out;
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(code));
+            try {
+                new ParallelParser(fastLex(large), pool).parse();
+            } finally {
+                System.setOut(out);
+                pool.shutdown();
+            }
+            checkSameCode(compile(large), code.toString());
+        });
+        check("concurrent compilations", () -> {
+            List<SourceText> programs = new ArrayList<SourceText>();
+            List<String> expected = new ArrayList<String>();
+            List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+            for (int i = 0; i < 400; ++i) { // all submitted together, each one different
+                SourceText program = program(20 + i % 50, i);
+                programs.add(program);
+                expected.add(compile(program));
+                tasks.add(() -> compile(program));
+            }
+            ForkJoinPool pool = new ForkJoinPool(32);
+            try {
+                List<Future<String>> results = pool.invokeAll(tasks);
+                for (int i = 0; i < programs.size(); ++i) {
+                    checkSameCode(expected.get(i), results.get(i).get());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        });
+        check("IncrementalParser, Parser", () -> {
+            for (SourceText text : inputs) {
+                IncrementalParser parser = new IncrementalParser(fastLex(text));
+                checkSameCode(compile(text), parser.compile());
+                int middle = text.indexOf('\n', text.length() / 2) + 1;
+                int number = middle;
+                while (number < text.length() && (!Character.isDigit(text.charAt(number)) || text.charAt(number - 1) != ' ')) {
+                    ++number;
+                }
+                if (number < text.length()) {
+                    edit(parser, number, 1, text.charAt(number) == '9' ? "8" : "9");
+                }
+                edit(parser, middle, 0, "edited := edited + 1 ,\n");
+                edit(parser, middle, 0, "IF (edited > 1) THEN\n  edited := 0 ,\nEND ,\n"); // the labels after it move
+                int nested = middle; // an assignment in a block, indented twice
+                while (nested > 0 && nested + 5 <= text.length() && !text.subSequence(nested, nested + 5).toString().equals("    v")) {
+                    nested = text.indexOf('\n', nested) + 1;
+                }
+                if (nested > 0 && nested + 5 <= text.length()) {
+                    edit(parser, nested, 0, "    edited := 1 ,\n");
+                }
+            }
+        });
+        check("symbol table slots", () -> {
+            int count = 1000;
+            StringBuilder program = new StringBuilder("BEGIN Variables\n");
+            for (int i = 0; i < count; ++i) {
+                program.append("v").append(i).append(" := ").append(i).append(" ,\n");
+            }
+            for (int i = 0; i < count; ++i) {
+                program.append("w").append(i).append(" := v").append(i).append(" + v").append((i * 7) % count).append(" ,\n");
+                program.append("PRINT(w").append(i).append(") ,\n");
+            }
+            program.append("END\n");
+            Parser parser = new Parser(fastLex(SourceText.read(new StringReader(program.toString()))));
+            parser.parse(new PrintStream(new ByteArrayOutputStream()));
+            SymbolTable symbols = parser.getContext().getSymbolTable();
+            if (symbols.size() != 2 * count) {
+                throw new IllegalStateException("Expected " + 2 * count + " slots, got " + symbols.size());
+            }
+            for (int slot = 0; slot < symbols.size(); ++slot) {
+                int line = (slot < count) ? slot + 2 : 2 + count + 2 * (slot - count);
+                if (!symbols.isRead(slot) || !symbols.isWritten(slot) || symbols.getFirstDefinition(slot) != line) {
+                    throw new IllegalStateException("Slot " + slot + " was not recorded");
+                }
+            }
+        });
+        check("operator precedence", () -> {
+            String[] expressions = {"a - b + c", "a / b * c", "a - (b + c)", "a / 2 / 5", "--a", "-(a * b)", "-a * -b + c"};
+            List<Integer> expected = List.of(19, 12, 15, 2, 20, -60, 62);
+            StringBuilder program = new StringBuilder("BEGIN Precedence\nREAD(a) ,\nREAD(b) ,\nREAD(c) ,\n");
+            for (String expression : expressions) {
+                program.append("x := ").append(expression).append(" ,\nPRINT(x) ,\n");
+            }
+            program.append("END\n");
+            SourceText text = SourceText.read(new StringReader(program.toString()));
+            checkPrinted(expected, run(compile(text, false), 20, 3, 2));
+            checkPrinted(expected, run(compile(text, true), 20, 3, 2));
+            checkPrinted(expected, run(compile(text, 2), 20, 3, 2));
+        });
+        check("printed values, -O0 and -O2", () -> {
+            for (Path file : sources()) {
+                SourceText text = SourceText.read(Files.newBufferedReader(file));
+                for (int input : new int[] {5, 1, 0, -3, 12}) {
+                    checkPrinted(run(compile(text, 0), input), run(compile(text, 2), input));
+                }
+            }
+        });
+        for (Path file : expectedCode()) {
+            check(file.toString(), () -> {
+                String name = file.getFileName().toString();
+                Path source = file.resolveSibling(name.substring(0, name.length() - ".O0.ll".length()) + ".fs");
+                int level = name.charAt(name.length() - ".ll".length() - 1) - '0';
+                String code = compile(SourceText.read(Files.newBufferedReader(source)), level);
+                checkSameCode(new String(Files.readAllBytes(file)), code);
+            });
+        }
+
+        if (failures > 0) {
+            System.out.println(failures + (failures == 1 ? " check" : " checks") + " failed");
+            System.exit(1);
+        }
+    }
+
+    /*
+        Runs a check and reports it, counting it as failed if it throws.
+    */
+    private static void check(String label, Task task) {
+        try {
+            task.run();
+            System.out.printf("%-32s ok%n", label);
+        } catch (Exception | Error e) {
+            ++failures;
+            System.out.printf("%-32s FAILED: %s%n", label, e);
+        }
+    }
+
+    /*
+        The programs of the test directory, then a generated one.
+    */
+    private static List<SourceText> inputs() throws IOException {
+        List<SourceText> inputs = new ArrayList<SourceText>();
+        for (Path file : sources()) {
+            inputs.add(SourceText.read(Files.newBufferedReader(file)));
+        }
+        inputs.add(program(2000, 1));
+        return inputs;
+    }
+
+    /*
+        The programs of the test directory, each reading a single value.
+    */
+    private static List<Path> sources() throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> directory = Files.newDirectoryStream(Paths.get("test"), "*.fs")) {
+            for (Path file : directory) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /*
+        The files of the test directory holding the code expected of a program at an optimization level:
+        Name.O2.ll for Name.fs compiled with -O2.
+    */
+    private static List<Path> expectedCode() throws IOException {
+        List<Path> files = new ArrayList<Path>();
+        try (DirectoryStream<Path> directory = Files.newDirectoryStream(Paths.get("test"), "*.O[0-2].ll")) {
+            for (Path file : directory) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static TokenBuffer lex(SourceText text) throws IOException {
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new Lexer(text.reader()).tokenize(tokens);
+        return tokens;
+    }
+
+    private static TokenBuffer fastLex(SourceText text) {
+        TokenBuffer tokens = new TokenBuffer();
+        tokens.reset(text, new NameTable());
+        new FastLexer(text).tokenize(tokens);
+        return tokens;
+    }
+
+    /**
+     * Check that two buffers hold the same tokens, at the same offsets, with the same values.
+     */
+    private static void checkSameTokens(TokenBuffer expected, TokenBuffer actual) {
+        if (expected.size() != actual.size()) {
+            throw new IllegalStateException("Expected " + expected.size() + " tokens, got " + actual.size());
+        }
+        for (int i = 0; i < expected.size(); ++i) {
+            if (expected.getType(i) != actual.getType(i) || expected.getStart(i) != actual.getStart(i)
+                    || expected.getLength(i) != actual.getLength(i) || !expected.getText(i).equals(actual.getText(i))) {
+                throw new IllegalStateException("Token " + i + " differs: expected " + expected.getSymbol(i)
+                        + ", got " + actual.getSymbol(i));
+            }
+        }
+    }
+
+    private static String compile(SourceText text) throws IOException {
+        return compile(text, false);
+    }
+
+    /*
+        The code of a whole compilation of a source, as the compiler prints it with -O0, -O1 or -O2.
+    */
+    private static String compile(SourceText text, int level) throws IOException {
+        Parser parser = new Parser(fastLex(text));
+        if (level > 0) {
+            parser.setPassManager(PassManager.forLevel(level));
+        }
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        parser.parse(new PrintStream(code));
+        return code.toString();
+    }
+
+    /*
+        The code of a whole compilation of a source, as Parser.parse prints it,
+        with the instructions built from the parse tree or directly by the parser.
+    */
+    private static String compile(SourceText text, boolean keepParseTree) throws IOException {
+        Parser parser = new Parser(fastLex(text));
+        parser.setKeepParseTree(keepParseTree);
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        parser.parse(new PrintStream(code));
+        return code.toString();
+    }
+
+    /*
+        Edits the source of an incremental parser and checks its code against a whole compilation,
+        then undoes the edit.
+    */
+    private static void edit(IncrementalParser parser, int offset, int removed, String inserted) throws IOException {
+        SourceText text = parser.getTokens().getText();
+        String original = text.subSequence(offset, offset + removed).toString();
+        checkSameCode(compile(text.replace(offset, removed, inserted)), parser.edit(offset, removed, inserted));
+        checkSameCode(compile(text), parser.edit(offset, inserted.length(), original));
+    }
+
+    private static void checkSameCode(String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("The code differs from the expected one");
+        }
+    }
+
+    private static void checkPrinted(List<Integer> expected, List<Integer> actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("Expected the values " + expected + ", got " + actual);
+        }
+    }
+
+    /*
+        The values printed by the code of a program, given the values it reads.
+        Only the instructions the compiler prints in @main are known. The phi nodes of a block
+        take their values together, from the block the branch came from.
+    */
+    private static List<Integer> run(String code, int... inputs) {
+        String main = code.substring(code.indexOf("define i32 @main() {"));
+        List<String[]> lines = new ArrayList<String[]>();
+        Map<String, Integer> labels = new HashMap<String, Integer>();
+        for (String line : main.substring(main.indexOf('\n') + 1, main.indexOf("\n}")).split("\n")) {
+            line = line.replaceAll("[,\\[\\]()]", " ").trim();
+            if (line.endsWith(":")) {
+                labels.put(line.substring(0, line.length() - 1), lines.size());
+            } else if (!line.isEmpty()) {
+                lines.add(line.split("\\s+"));
+            }
+        }
+        Map<String, Integer> values = new HashMap<String, Integer>(); // registers and variables, with their %
+        List<Integer> printed = new ArrayList<Integer>();
+        int read = 0;
+        String block = "entry";
+        int next = 0;
+        while (true) {
+            String[] words = lines.get(next++);
+            switch (words[0]) {
+                case "ret":
+                    return printed;
+                case "store": // store i32 value i32* %variable
+                    values.put(words[4], value(values, words[2]));
+                    continue;
+                case "call": // call void @println i32 value
+                    printed.add(value(values, words[4]));
+                    continue;
+                case "br": { // br label %target, or br i1 condition label %then label %else
+                    String target = (words.length == 3) ? words[2] : (value(values, words[2]) != 0) ? words[4] : words[6];
+                    next = labels.get(target.substring(1));
+                    Map<String, Integer> phis = new HashMap<String, Integer>();
+                    for (; lines.get(next)[2].equals("phi"); ++next) { // %x = phi i32 [ value %block ] ...
+                        String[] phi = lines.get(next);
+                        for (int i = 4; i < phi.length; i += 2) {
+                            if (phi[i + 1].equals("%" + block)) {
+                                phis.put(phi[0], value(values, phi[i]));
+                            }
+                        }
+                    }
+                    values.putAll(phis);
+                    block = target.substring(1);
+                    continue;
+                }
+                default:
+                    break;
+            }
+            String result = words[0]; // %x = ...
+            switch (words[2]) {
+                case "alloca":
+                    values.putIfAbsent(result, 0);
+                    break;
+                case "load": // load i32 i32* %variable
+                    values.put(result, value(values, words[5]));
+                    break;
+                case "call": // call i32 @readInt
+                    values.put(result, inputs[read++]);
+                    break;
+                case "icmp": { // icmp predicate i32 left right
+                    int left = value(values, words[5]);
+                    int right = value(values, words[6]);
+                    boolean holds = words[3].equals("eq") ? left == right : words[3].equals("slt") ? left < right : left > right;
+                    values.put(result, holds ? 1 : 0);
+                    break;
+                }
+                default: { // operator i32 left right
+                    int left = value(values, words[4]);
+                    int right = value(values, words[5]);
+                    switch (words[2]) {
+                        case "add":
+                            values.put(result, left + right);
+                            break;
+                        case "sub":
+                            values.put(result, left - right);
+                            break;
+                        case "mul":
+                            values.put(result, left * right);
+                            break;
+                        case "sdiv":
+                            values.put(result, left / right);
+                            break;
+                        default:
+                            throw new IllegalStateException("Unknown instruction: " + String.join(" ", words));
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int value(Map<String, Integer> values, String operand) {
+        return operand.startsWith("%") ? values.get(operand) : Integer.parseInt(operand);
+    }
+
+    /*
+        Both trees have the same shape and labels.
+    */
+    private static void checkSameTree(ParseTree expected, CompactTree actual) {
+        ArrayDeque<ParseTree> trees = new ArrayDeque<ParseTree>();
+        ArrayDeque<Integer> nodes = new ArrayDeque<Integer>();
+        trees.push(expected);
+        nodes.push(actual.root());
+        int count = 0;
+        while (!trees.isEmpty()) {
+            ParseTree tree = trees.pop();
+            int node = nodes.pop();
+            ++count;
+            GrammarUnit label = tree.getLabel();
+            boolean same = tree.numChildren() == actual.numChildren(node) && label.isVariable() == actual.isVariable(node)
+                    && (label.isVariable() ? label.getVariable() == actual.getVariable(node) : label.getType() == actual.getType(node))
+                    && (!label.hasValue() || tree.getString().equals(actual.getString(node)));
+            if (!same) {
+                throw new IllegalStateException("Trees differ at node " + count + ": " + label);
+            }
+            for (int i = 0; i < tree.numChildren(); ++i) {
+                trees.push(tree.get(i));
+                nodes.push(actual.get(node, i));
+            }
+        }
+    }
+
+    private static void checkSameDerivation(List<Rule> expected, int[] derivation) {
+        if (derivation.length != expected.size()) {
+            throw new IllegalStateException("Left derivations of " + expected.size() + " and " + derivation.length + " rules");
+        }
+        for (int i = 0; i < derivation.length; ++i) {
+            if (derivation[i] != expected.get(i).idx()) {
+                throw new IllegalStateException("Left derivations differ at rule " + i);
+            }
+        }
+    }
+
+    /*
+        Both instructions have the same class, trees and branches.
+    */
+    private static void checkSameInstructions(Instruction expected, Instruction actual) {
+        ArrayDeque<Instruction> pending = new ArrayDeque<Instruction>();
+        pending.push(expected);
+        pending.push(actual);
+        while (!pending.isEmpty()) {
+            Instruction right = pending.pop();
+            Instruction left = pending.pop();
+            if (left.getClass() != right.getClass() || left.getThenList().size() != right.getThenList().size()
+                    || left.getElseList().size() != right.getElseList().size()
+                    || !preorder(left.getTree()).equals(preorder(right.getTree()))) {
+                throw new IllegalStateException("Instructions differ: " + left.getTree() + " and " + right.getTree());
+            }
+            for (int i = 0; i < left.getThenList().size(); ++i) {
+                pending.push(left.getThen(i));
+                pending.push(right.getThen(i));
+            }
+            for (int i = 0; i < left.getElseList().size(); ++i) {
+                pending.push(left.getElse(i));
+                pending.push(right.getElse(i));
+            }
+        }
+    }
+
+    /*
+        The labels of a tree and the number of children of each node, in preorder.
+    */
+    private static String preorder(ParseTree tree) {
+        StringBuilder text = new StringBuilder();
+        ArrayDeque<ParseTree> pending = new ArrayDeque<ParseTree>();
+        if (tree != null) {
+            pending.push(tree);
+        }
+        while (!pending.isEmpty()) {
+            ParseTree node = pending.pop();
+            text.append(node.getLabel()).append('/').append(node.numChildren()).append(' ');
+            for (int i = node.numChildren() - 1; i >= 0; --i) {
+                pending.push(node.get(i));
+            }
+        }
+        return text.toString();
+    }
+
+    /*
+        A program of loops and conditions nested in each other, too deep for the thread stack
+        if the parser and the passes over the trees were recursive.
+    */
+    private static SourceText deep(int levels) throws IOException {
+        StringBuilder program = new StringBuilder("BEGIN Deep\nv := 0 ,\n");
+        for (int i = 0; i < levels; ++i) {
+            program.append(i % 2 == 0 ? "WHILE (v < " + i + ") DO\n" : "IF (v > " + i + ") THEN\n");
+        }
+        program.append("v := v + 1 ,\n");
+        for (int i = levels - 1; i >= 0; --i) {
+            program.append(i % 2 == 0 ? "END ,\n" : "ELSE PRINT(v) , END ,\n");
+        }
+        program.append("END\n");
+        return SourceText.read(new StringReader(program.toString()));
+    }
+
+    /**
+     * Generate a program made of assignments, conditions, loops, reads, prints and comments.
+     * @param statements: number of top-level statements
+     * @param seed: the seed of the random choices
+     */
+    private static SourceText program(int statements, long seed) throws IOException {
+        Random random = new Random(seed);
+        StringBuilder program = new StringBuilder("BEGIN Check\n");
+        for (int i = 0; i < statements; ++i) {
+            statement(program, random, 1);
+        }
+        program.append("END\n");
+        return SourceText.read(new StringReader(program.toString()));
+    }
+
+    private static void statement(StringBuilder program, Random random, int depth) {
+        String indent = "  ".repeat(depth);
+        int kind = depth > 3 ? 0 : random.nextInt(10);
+        String variable = "v" + random.nextInt(20);
+        if (kind < 6) {
+            String expression = expression(random);
+            if (random.nextInt(6) == 0) {
+                expression = "(" + expression + ")";
+            }
+            program.append(indent).append(variable).append(" := ").append(expression).append(" ,");
+            if (random.nextInt(8) == 0) {
+                program.append(" :: update ").append(variable);
+            }
+            program.append('\n');
+        } else if (kind == 6) {
+            program.append(indent).append("%% block comment\n").append(indent).append("   over two lines %%\n");
+            program.append(indent).append("PRINT(").append(variable).append(") ,\n");
+        } else if (kind == 7) {
+            program.append(indent).append("READ(").append(variable).append(") ,\n");
+        } else {
+            String keyword = (kind == 8) ? "IF" : "WHILE";
+            program.append(indent).append(keyword).append(" (").append(expression(random))
+                    .append(random.nextBoolean() ? " < " : " > ").append(expression(random))
+                    .append(kind == 8 ? ") THEN\n" : ") DO\n");
+            for (int i = random.nextInt(3); i >= 0; --i) {
+                statement(program, random, depth + 1);
+            }
+            if (kind == 8 && random.nextBoolean()) {
+                program.append(indent).append("ELSE\n");
+                statement(program, random, depth + 1);
+            }
+            program.append(indent).append("END ,\n");
+        }
+    }
+
+    private static String expression(Random random) {
+        StringBuilder expression = new StringBuilder();
+        for (int i = random.nextInt(4); i >= 0; --i) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    expression.append(random.nextInt(1000));
+                    break;
+                case 1:
+                    expression.append("-v").append(random.nextInt(20));
+                    break;
+                case 2:
+                    expression.append("(v").append(random.nextInt(20)).append(" - ").append(random.nextInt(10)).append(")");
+                    break;
+                default:
+                    expression.append("v").append(random.nextInt(20));
+                    break;
+            }
+            if (i > 0) {
+                expression.append(" ").append("+-*".charAt(random.nextInt(3))).append(" ");
+            }
+        }
+        return expression.toString();
+    }
+}
@@ -0,0 +1,58 @@
+@.strR = private unnamed_addr constant [3 x i8] c"%d\00", align 1
+@.strP = private unnamed_addr constant [4 x i8] c"%d\0A\00", align 1
+
+define void @println(i32 %x) {
+  %1 = alloca i32, align 4
+  store i32 %x, i32* %1, align 4
+  %2 = load i32, i32* %1, align 4
+  %3 = call i32 (i8*, ...) @printf(i8* getelementptr inbounds ([4 x i8], [4 x i8]* @.strP, i32 0, i32 0), i32 %2)
+  ret void
+}
+declare i32 @printf(i8*, ...)
+
+define i32 @readInt() #0 {
+  %1 = alloca i32, align 4
+  %2 = call i32 (i8*, ...) @scanf(i8* getelementptr inbounds ([3 x i8], [3 x i8]* @.strR, i32 0, i32 0), i32* %1)
+  %3 = load i32, i32* %1, align 4
+  ret i32 %3
+}
+declare i32 @scanf(i8*, ...) #1
+
+define i32 @main() {
+entry:
+%number = alloca i32
+store i32 0, i32* %number
+%result = alloca i32
+store i32 0, i32* %result
+%0 = call i32 @readInt()
+store i32 %0, i32* %number
+store i32 1, i32* %result
+%1 = load i32, i32* %number
+%cond_0 = icmp sgt i32 %1, -1
+br i1 %cond_0, label %then_0, label %else_0
+then_0:
+br label %eval_cond_1
+eval_cond_1:
+%2 = load i32, i32* %number
+%cond_1 = icmp sgt i32 %2, 0
+br i1 %cond_1, label %do_1, label %end_1
+do_1:
+%3 = load i32, i32* %result
+%4 = load i32, i32* %number
+%5 = mul i32 %3, %4
+store i32 %5, i32* %result
+%6 = load i32, i32* %number
+%7 = sub i32 %6, 1
+store i32 %7, i32* %number
+br label %eval_cond_1
+end_1:
+br label %end_0
+else_0:
+store i32 -1, i32* %result
+br label %end_0
+end_0:
+%8 = load i32, i32* %result
+call void @println(i32 %8)
+
+ret i32 0
+}
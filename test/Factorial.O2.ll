@@ -0,0 +1,46 @@
+@.strR = private unnamed_addr constant [3 x i8] c"%d\00", align 1
+@.strP = private unnamed_addr constant [4 x i8] c"%d\0A\00", align 1
+
+define void @println(i32 %x) {
+  %1 = alloca i32, align 4
+  store i32 %x, i32* %1, align 4
+  %2 = load i32, i32* %1, align 4
+  %3 = call i32 (i8*, ...) @printf(i8* getelementptr inbounds ([4 x i8], [4 x i8]* @.strP, i32 0, i32 0), i32 %2)
+  ret void
+}
+declare i32 @printf(i8*, ...)
+
+define i32 @readInt() #0 {
+  %1 = alloca i32, align 4
+  %2 = call i32 (i8*, ...) @scanf(i8* getelementptr inbounds ([3 x i8], [3 x i8]* @.strR, i32 0, i32 0), i32* %1)
+  %3 = load i32, i32* %1, align 4
+  ret i32 %3
+}
+declare i32 @scanf(i8*, ...) #1
+
+define i32 @main() {
+entry:
+%0 = call i32 @readInt()
+%cond_0 = icmp sgt i32 %0, -1
+br i1 %cond_0, label %then_0, label %else_0
+then_0:
+br label %eval_cond_1
+eval_cond_1:
+%1 = phi i32 [ %0, %then_0 ], [ %4, %do_1 ]
+%2 = phi i32 [ 1, %then_0 ], [ %3, %do_1 ]
+%cond_1 = icmp sgt i32 %1, 0
+br i1 %cond_1, label %do_1, label %end_1
+do_1:
+%3 = mul i32 %2, %1
+%4 = sub i32 %1, 1
+br label %eval_cond_1
+end_1:
+br label %end_0
+else_0:
+br label %end_0
+end_0:
+%5 = phi i32 [ %2, %end_1 ], [ -1, %else_0 ]
+call void @println(i32 %5)
+
+ret i32 0
+}
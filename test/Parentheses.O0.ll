@@ -0,0 +1,106 @@
+@.strR = private unnamed_addr constant [3 x i8] c"%d\00", align 1
+@.strP = private unnamed_addr constant [4 x i8] c"%d\0A\00", align 1
+
+define void @println(i32 %x) {
+  %1 = alloca i32, align 4
+  store i32 %x, i32* %1, align 4
+  %2 = load i32, i32* %1, align 4
+  %3 = call i32 (i8*, ...) @printf(i8* getelementptr inbounds ([4 x i8], [4 x i8]* @.strP, i32 0, i32 0), i32 %2)
+  ret void
+}
+declare i32 @printf(i8*, ...)
+
+define i32 @readInt() #0 {
+  %1 = alloca i32, align 4
+  %2 = call i32 (i8*, ...) @scanf(i8* getelementptr inbounds ([3 x i8], [3 x i8]* @.strR, i32 0, i32 0), i32* %1)
+  %3 = load i32, i32* %1, align 4
+  ret i32 %3
+}
+declare i32 @scanf(i8*, ...) #1
+
+define i32 @main() {
+entry:
+%b = alloca i32
+store i32 0, i32* %b
+%v = alloca i32
+store i32 0, i32* %v
+%w = alloca i32
+store i32 0, i32* %w
+%z = alloca i32
+store i32 0, i32* %z
+%0 = call i32 @readInt()
+store i32 %0, i32* %v
+store i32 7, i32* %b
+%1 = load i32, i32* %v
+%2 = add i32 %1, 1
+store i32 %2, i32* %v
+%3 = load i32, i32* %v
+call void @println(i32 %3)
+
+%4 = load i32, i32* %v
+%5 = add i32 %4, 1
+%6 = mul i32 %5, 2
+store i32 %6, i32* %w
+%7 = load i32, i32* %w
+call void @println(i32 %7)
+
+%8 = load i32, i32* %b
+%9 = mul i32 -5, %8
+%10 = sub i32 0, %9
+store i32 %10, i32* %z
+%11 = load i32, i32* %z
+call void @println(i32 %11)
+
+%12 = load i32, i32* %v
+%13 = sub i32 %12, 3
+%14 = sub i32 0, %13
+store i32 %14, i32* %z
+%15 = load i32, i32* %z
+call void @println(i32 %15)
+
+%16 = load i32, i32* %v
+store i32 %16, i32* %z
+%17 = load i32, i32* %z
+call void @println(i32 %17)
+
+%18 = load i32, i32* %v
+%19 = add i32 %18, 1
+%20 = load i32, i32* %v
+%21 = mul i32 2, %20
+%22 = sub i32 %21, 3
+%cond_0 = icmp eq i32 %19, %22
+br i1 %cond_0, label %then_0, label %else_0
+then_0:
+%23 = load i32, i32* %v
+call void @println(i32 %23)
+
+br label %end_0
+else_0:
+%24 = load i32, i32* %b
+%25 = load i32, i32* %v
+%26 = mul i32 %25, 2
+%27 = sub i32 %24, %26
+store i32 %27, i32* %z
+%28 = load i32, i32* %z
+call void @println(i32 %28)
+
+br label %end_0
+end_0:
+br label %eval_cond_1
+eval_cond_1:
+%29 = load i32, i32* %v
+%30 = mul i32 %29, 1
+%31 = load i32, i32* %b
+%cond_1 = icmp slt i32 %30, %31
+br i1 %cond_1, label %do_1, label %end_1
+do_1:
+%32 = load i32, i32* %v
+%33 = add i32 %32, 2
+store i32 %33, i32* %v
+br label %eval_cond_1
+end_1:
+%34 = load i32, i32* %v
+call void @println(i32 %34)
+
+ret i32 0
+}
@@ -0,0 +1,68 @@
+@.strR = private unnamed_addr constant [3 x i8] c"%d\00", align 1
+@.strP = private unnamed_addr constant [4 x i8] c"%d\0A\00", align 1
+
+define void @println(i32 %x) {
+  %1 = alloca i32, align 4
+  store i32 %x, i32* %1, align 4
+  %2 = load i32, i32* %1, align 4
+  %3 = call i32 (i8*, ...) @printf(i8* getelementptr inbounds ([4 x i8], [4 x i8]* @.strP, i32 0, i32 0), i32 %2)
+  ret void
+}
+declare i32 @printf(i8*, ...)
+
+define i32 @readInt() #0 {
+  %1 = alloca i32, align 4
+  %2 = call i32 (i8*, ...) @scanf(i8* getelementptr inbounds ([3 x i8], [3 x i8]* @.strR, i32 0, i32 0), i32* %1)
+  %3 = load i32, i32* %1, align 4
+  ret i32 %3
+}
+declare i32 @scanf(i8*, ...) #1
+
+define i32 @main() {
+entry:
+%0 = call i32 @readInt()
+%1 = add i32 %0, 1
+call void @println(i32 %1)
+
+%2 = add i32 %1, 1
+%3 = mul i32 %2, 2
+call void @println(i32 %3)
+
+call void @println(i32 35)
+
+%4 = sub i32 %1, 3
+%5 = sub i32 0, %4
+call void @println(i32 %5)
+
+call void @println(i32 %1)
+
+%6 = add i32 %1, 1
+%7 = mul i32 2, %1
+%8 = sub i32 %7, 3
+%cond_0 = icmp eq i32 %6, %8
+br i1 %cond_0, label %then_0, label %else_0
+then_0:
+call void @println(i32 %1)
+
+br label %end_0
+else_0:
+%9 = mul i32 %1, 2
+%10 = sub i32 7, %9
+call void @println(i32 %10)
+
+br label %end_0
+end_0:
+br label %eval_cond_1
+eval_cond_1:
+%11 = phi i32 [ %1, %end_0 ], [ %13, %do_1 ]
+%12 = mul i32 %11, 1
+%cond_1 = icmp slt i32 %12, 7
+br i1 %cond_1, label %do_1, label %end_1
+do_1:
+%13 = add i32 %11, 2
+br label %eval_cond_1
+end_1:
+call void @println(i32 %11)
+
+ret i32 0
+}
@@ -0,0 +1,24 @@
+BEGIN Parentheses
+  READ(v) ,
+  b := 7 ,
+  v := (v + 1) ,
+  PRINT(v) ,
+  w := ((v + 1) * 2) ,
+  PRINT(w) ,
+  z := -(-5 * b) ,
+  PRINT(z) ,
+  z := -(v - 3) ,
+  PRINT(z) ,
+  z := (v) ,
+  PRINT(z) ,
+  IF ((v + 1) = (2 * v - 3)) THEN
+    PRINT(v) ,
+  ELSE
+    z := (b - (v * 2)) ,
+    PRINT(z) ,
+  END ,
+  WHILE ((v * 1) < (b)) DO
+    v := (v + 2) ,
+  END ,
+  PRINT(v) ,
+END